@@ -0,0 +1,45 @@
+package io.jenkins.plugins.kubernetes;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.ExtensionList;
+import hudson.ExtensionPoint;
+import hudson.model.Label;
+import java.util.List;
+import org.csanchez.jenkins.plugins.kubernetes.KubernetesCloud;
+
+/**
+ * Decides in which order {@link NoDelayProvisionerStrategy} asks the kubernetes clouds to provision agents.
+ * The implementation with the highest ordinal is used.
+ */
+public abstract class CloudRanking implements ExtensionPoint {
+    /**
+     * Returns all registered implementations of {@link CloudRanking}.
+     * @return all registered implementations of {@link CloudRanking}.
+     */
+    public static ExtensionList<CloudRanking> all() {
+        return ExtensionList.lookup(CloudRanking.class);
+    }
+
+    /**
+     * Returns the ranking in use.
+     * @return the ranking in use.
+     */
+    @NonNull
+    public static CloudRanking get() {
+        ExtensionList<CloudRanking> all = all();
+        return all.isEmpty() ? new WeightedCloudRanking() : all.get(0);
+    }
+
+    /**
+     * Orders the clouds, the first ones being asked first.
+     *
+     * @param clouds the clouds able to provision the label
+     * @param label the label to provision
+     * @param workload the number of executors needed
+     * @return the clouds in the order they should be tried
+     */
+    @NonNull
+    public abstract List<KubernetesCloud> rank(
+            @NonNull List<KubernetesCloud> clouds, @CheckForNull Label label, int workload);
+}
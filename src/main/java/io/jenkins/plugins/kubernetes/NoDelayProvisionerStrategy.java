@@ -10,7 +10,6 @@ import hudson.slaves.CloudProvisioningListener;
 import hudson.slaves.NodeProvisioner;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
@@ -33,6 +32,9 @@ public class NoDelayProvisionerStrategy extends NodeProvisioner.Strategy {
     private static final Logger LOGGER = Logger.getLogger(NoDelayProvisionerStrategy.class.getName());
     private static final boolean DISABLE_NODELAY_PROVISING =
             Boolean.valueOf(System.getProperty("io.jenkins.plugins.kubernetes.disableNoDelayProvisioning"));
+    /**
+     * Try the clouds in the configured order instead of the one decided by {@link CloudRanking}.
+     */
     private static final boolean DISABLE_CLOUD_SHUFFLE =
             Boolean.getBoolean(NoDelayProvisionerStrategy.class.getName() + ".disableCloudShuffle");
 
@@ -57,17 +59,17 @@ public class NoDelayProvisionerStrategy extends NodeProvisioner.Strategy {
                 Level.FINE, "Available capacity={0}, currentDemand={1}", new Object[] {availableCapacity, currentDemand
                 });
         if (availableCapacity < currentDemand) {
-            List<Cloud> jenkinsClouds = new ArrayList<>(Jenkins.get().clouds);
+            List<KubernetesCloud> jenkinsClouds = new ArrayList<>(Jenkins.get().clouds.getAll(KubernetesCloud.class));
             if (!DISABLE_CLOUD_SHUFFLE) {
-                Collections.shuffle(jenkinsClouds);
+                jenkinsClouds = CloudRanking.get().rank(jenkinsClouds, label, currentDemand - availableCapacity);
             }
 
-            Cloud.CloudState cloudState = new Cloud.CloudState(label, strategyState.getAdditionalPlannedCapacity());
-
+            // keep going through the clouds until the demand is met, as each cloud may be limited
             searchClouds:
-            for (Cloud cloud : jenkinsClouds) {
+            for (KubernetesCloud cloud : jenkinsClouds) {
                 int workloadToProvision = currentDemand - availableCapacity;
-                if (!(cloud instanceof KubernetesCloud)) continue;
+                if (workloadToProvision <= 0) break;
+                Cloud.CloudState cloudState = new Cloud.CloudState(label, strategyState.getAdditionalPlannedCapacity());
                 if (!cloud.canProvision(cloudState)) continue;
                 for (CloudProvisioningListener cl : CloudProvisioningListener.all()) {
                     if (cl.canProvision(cloud, cloudState, workloadToProvision) != null) {
@@ -76,14 +78,13 @@ public class NoDelayProvisionerStrategy extends NodeProvisioner.Strategy {
                 }
 
                 Collection<NodeProvisioner.PlannedNode> plannedNodes = cloud.provision(cloudState, workloadToProvision);
-                LOGGER.log(Level.FINE, "Planned {0} new nodes", plannedNodes.size());
+                LOGGER.log(Level.FINE, "Planned {0} new nodes on {1}", new Object[] {plannedNodes.size(), cloud.name});
                 fireOnStarted(cloud, strategyState.getLabel(), plannedNodes);
                 strategyState.recordPendingLaunches(plannedNodes);
                 availableCapacity += plannedNodes.size();
                 LOGGER.log(Level.FINE, "After provisioning, available capacity={0}, currentDemand={1}", new Object[] {
                     availableCapacity, currentDemand
                 });
-                break;
             }
         }
         if (availableCapacity > previousCapacity && label != null) {
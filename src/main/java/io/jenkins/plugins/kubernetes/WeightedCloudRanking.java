@@ -0,0 +1,82 @@
+package io.jenkins.plugins.kubernetes;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Label;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.csanchez.jenkins.plugins.kubernetes.KubernetesCloud;
+import org.csanchez.jenkins.plugins.kubernetes.KubernetesProvisioningLimits;
+import org.csanchez.jenkins.plugins.kubernetes.LaunchStatistics;
+
+/**
+ * Default {@link CloudRanking}: a random order where each cloud is more likely to come first
+ * the more free capacity it has, and less likely the more its recent launches failed or the slower they were.
+ * Clouds without free capacity come last.
+ */
+@Extension(ordinal = -100)
+public class WeightedCloudRanking extends CloudRanking {
+
+    private static final Logger LOGGER = Logger.getLogger(WeightedCloudRanking.class.getName());
+
+    /**
+     * Launch time at which the weight of a cloud is halved.
+     */
+    private static final long REFERENCE_LAUNCH_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    @NonNull
+    @Override
+    public List<KubernetesCloud> rank(@NonNull List<KubernetesCloud> clouds, @CheckForNull Label label, int workload) {
+        KubernetesProvisioningLimits limits = KubernetesProvisioningLimits.get();
+        LaunchStatistics statistics = LaunchStatistics.get();
+        Map<KubernetesCloud, Double> weights = new IdentityHashMap<>();
+        for (KubernetesCloud cloud : clouds) {
+            double weight = weight(
+                    limits.getRemainingCapacity(cloud),
+                    workload,
+                    statistics.getFailureRate(cloud.name),
+                    statistics.getLaunchMillis(cloud.name));
+            LOGGER.log(Level.FINE, "Weight of cloud {0} for label \"{1}\": {2}", new Object[] {
+                cloud.name, label, weight
+            });
+            weights.put(cloud, weight);
+        }
+        return order(clouds, weights, ThreadLocalRandom.current());
+    }
+
+    /**
+     * Free capacity beyond the workload does not make a cloud more suitable, otherwise an unlimited cloud would
+     * always come first.
+     */
+    static double weight(int remainingCapacity, int workload, double failureRate, long launchMillis) {
+        double capacity = Math.min(remainingCapacity, Math.max(1, workload));
+        double health = (1 - failureRate) * (1 - failureRate);
+        double speed = 1 / (1 + (double) launchMillis / REFERENCE_LAUNCH_MILLIS);
+        return capacity * health * speed;
+    }
+
+    /**
+     * Weighted random sampling without replacement: each cloud gets a key exponentially distributed with its weight
+     * as rate, the smallest keys coming first.
+     */
+    static List<KubernetesCloud> order(
+            List<KubernetesCloud> clouds, Map<KubernetesCloud, Double> weights, Random random) {
+        Map<KubernetesCloud, Double> keys = new IdentityHashMap<>();
+        for (KubernetesCloud cloud : clouds) {
+            double weight = weights.get(cloud);
+            keys.put(cloud, weight > 0 ? -Math.log(1 - random.nextDouble()) / weight : Double.POSITIVE_INFINITY);
+        }
+        List<KubernetesCloud> ranked = new ArrayList<>(clouds);
+        ranked.sort(Comparator.comparingDouble(keys::get));
+        return ranked;
+    }
+}
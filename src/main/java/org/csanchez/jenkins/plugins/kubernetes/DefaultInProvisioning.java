@@ -1,19 +1,59 @@
 package org.csanchez.jenkins.plugins.kubernetes;
 
 import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.Main;
+import hudson.model.AsyncPeriodicWork;
 import hudson.model.Computer;
 import hudson.model.Label;
 import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.slaves.ComputerListener;
+import hudson.slaves.OfflineCause;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
+import jenkins.model.Jenkins;
+import jenkins.model.NodeListener;
+import jenkins.util.SystemProperties;
 
+/**
+ * Tracks the agents in provisioning as they are created, launched and removed, so that provisioning does not go
+ * through the nodes of the label on each round.
+ * <p>
+ * The agents of a label are collected the first time the label is asked for, then kept up to date on each change.
+ * A periodic check recomputes the agents in provisioning from all nodes, and forgets the labels collected so far.
+ */
 @Extension
 public class DefaultInProvisioning extends InProvisioning {
     private static final Logger LOGGER = Logger.getLogger(DefaultInProvisioning.class.getName());
 
+    private static final long RECURRENCE_PERIOD = SystemProperties.getLong(
+            DefaultInProvisioning.class.getName() + ".recurrencePeriod", Main.isUnitTest ? 5L : 600L);
+
+    private final AtomicBoolean init = new AtomicBoolean();
+
+    /** agents in provisioning, by name */
+    private final Map<String, KubernetesSlave> agents = new ConcurrentHashMap<>();
+
+    /** names of the agents in provisioning, for each label asked for */
+    private final Map<Label, Set<String>> byLabel = new ConcurrentHashMap<>();
+
+    /**
+     * @return the singleton instance
+     */
+    public static DefaultInProvisioning get() {
+        return ExtensionList.lookupSingleton(DefaultInProvisioning.class);
+    }
+
     private static boolean isNotAcceptingTasks(Node n) {
         Computer computer = n.toComputer();
         return computer != null
@@ -25,13 +65,139 @@ public class DefaultInProvisioning extends InProvisioning {
     @Override
     public Set<String> getInProvisioning(@CheckForNull Label label) {
         if (label != null) {
-            return label.getNodes().stream()
-                    .filter(KubernetesSlave.class::isInstance)
-                    .filter(DefaultInProvisioning::isNotAcceptingTasks)
-                    .map(Node::getNodeName)
-                    .collect(Collectors.toSet());
+            if (init.compareAndSet(false, true)) {
+                check();
+            }
+            Set<String> names = byLabel.get(label);
+            if (names == null) {
+                names = collect(label);
+            }
+            return Collections.unmodifiableSet(names);
         } else {
             return Collections.emptySet();
         }
     }
+
+    private synchronized Set<String> collect(Label label) {
+        return byLabel.computeIfAbsent(label, l -> {
+            Set<String> names = ConcurrentHashMap.newKeySet();
+            for (KubernetesSlave agent : agents.values()) {
+                if (l.matches(agent.getAssignedLabels())) {
+                    names.add(agent.getNodeName());
+                }
+            }
+            return names;
+        });
+    }
+
+    /**
+     * Takes into account a change in the provisioning state of the agent.
+     */
+    void update(@NonNull KubernetesSlave agent) {
+        if (isNotAcceptingTasks(agent)) {
+            add(agent);
+        } else {
+            remove(agent.getNodeName());
+        }
+    }
+
+    private synchronized void add(KubernetesSlave agent) {
+        String name = agent.getNodeName();
+        agents.put(name, agent);
+        byLabel.forEach((label, names) -> {
+            if (label.matches(agent.getAssignedLabels())) {
+                names.add(name);
+            } else {
+                names.remove(name);
+            }
+        });
+    }
+
+    private synchronized void remove(String name) {
+        if (agents.remove(name) != null) {
+            byLabel.values().forEach(names -> names.remove(name));
+        }
+    }
+
+    /**
+     * Recomputes the agents in provisioning from all nodes.
+     */
+    synchronized void check() {
+        Map<String, KubernetesSlave> actual = new HashMap<>();
+        for (Node node : Jenkins.get().getNodes()) {
+            if (node instanceof KubernetesSlave && isNotAcceptingTasks(node)) {
+                actual.put(node.getNodeName(), (KubernetesSlave) node);
+            }
+        }
+        if (!actual.keySet().equals(agents.keySet())) {
+            LOGGER.log(Level.FINE, "Agents in provisioning were {0}, actually {1}", new Object[] {
+                agents.keySet(), actual.keySet()
+            });
+        }
+        agents.clear();
+        agents.putAll(actual);
+        byLabel.clear();
+    }
+
+    @Extension
+    public static class NodeListenerImpl extends NodeListener {
+        @Override
+        protected void onCreated(@NonNull Node node) {
+            if (node instanceof KubernetesSlave) {
+                get().update((KubernetesSlave) node);
+            }
+        }
+
+        @Override
+        protected void onUpdated(@NonNull Node oldOne, @NonNull Node newOne) {
+            onDeleted(oldOne);
+            onCreated(newOne);
+        }
+
+        @Override
+        protected void onDeleted(@NonNull Node node) {
+            if (node instanceof KubernetesSlave) {
+                get().remove(node.getNodeName());
+            }
+        }
+    }
+
+    @Extension
+    public static class ComputerListenerImpl extends ComputerListener {
+        @Override
+        public void onOnline(Computer c, TaskListener listener) {
+            update(c);
+        }
+
+        @Override
+        public void onOffline(@NonNull Computer c, @CheckForNull OfflineCause cause) {
+            update(c);
+        }
+
+        private static void update(Computer c) {
+            if (c instanceof KubernetesComputer) {
+                KubernetesSlave node = ((KubernetesComputer) c).getNode();
+                if (node != null) {
+                    get().update(node);
+                }
+            }
+        }
+    }
+
+    @Extension
+    public static final class PeriodicCheck extends AsyncPeriodicWork {
+        public PeriodicCheck() {
+            super("Check of Kubernetes agents in provisioning");
+        }
+
+        @Override
+        protected void execute(TaskListener listener) {
+            get().check();
+        }
+
+        @Override
+        public long getRecurrencePeriod() {
+            return TimeUnit.SECONDS.toMillis(RECURRENCE_PERIOD);
+        }
+    }
 }
@@ -11,20 +11,34 @@ import hudson.model.AbstractDescribableImpl;
 import hudson.model.AsyncPeriodicWork;
 import hudson.model.Descriptor;
 import hudson.model.TaskListener;
+import hudson.util.DaemonThreadFactory;
 import hudson.util.FormValidation;
+import hudson.util.NamingThreadFactory;
+import io.fabric8.kubernetes.api.model.ListOptionsBuilder;
 import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodList;
+import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.informers.SharedIndexInformer;
 import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import jenkins.metrics.api.Metrics;
 import jenkins.model.Jenkins;
 import jenkins.util.SystemProperties;
 import org.jenkinsci.plugins.kubernetes.auth.KubernetesAuthException;
@@ -49,6 +63,18 @@ public class GarbageCollection extends AbstractDescribableImpl<GarbageCollection
             GarbageCollection.class.getName() + ".recurrencePeriod",
             Main.isUnitTest ? 5 : TimeUnit.MINUTES.toSeconds(1));
 
+    /**
+     * Maximum number of pods fetched by a single list call.
+     */
+    private static final long PAGE_SIZE =
+            SystemProperties.getLong(GarbageCollection.class.getName() + ".pageSize", 500L);
+
+    /**
+     * Maximum number of concurrent pod deletions.
+     */
+    private static final int DELETE_THREADS =
+            SystemProperties.getInteger(GarbageCollection.class.getName() + ".deleteThreads", 4);
+
     @DataBoundConstructor
     public GarbageCollection() {}
 
@@ -146,55 +172,14 @@ public class GarbageCollection extends AbstractDescribableImpl<GarbageCollection
         private static void garbageCollect() {
             for (var cloud : Jenkins.get().clouds.getAll(KubernetesCloud.class)) {
                 Optional.ofNullable(cloud.getGarbageCollection()).ifPresent(gc -> {
+                    var start = System.currentTimeMillis();
                     try {
                         var client = cloud.connect();
                         var namespaces = new HashSet<String>();
                         namespaces.add(client.getNamespace());
                         namespaces.addAll(gc.getNamespaceSet());
                         for (var ns : namespaces) {
-                            client
-                                    .pods()
-                                    .inNamespace(ns)
-                                    // Only look at pods created by this controller
-                                    .withLabel(LABEL_KUBERNETES_CONTROLLER, sanitizeLabel(cloud.getJenkinsUrlOrNull()))
-                                    .list()
-                                    .getItems()
-                                    .stream()
-                                    .filter(pod -> {
-                                        var lastRefresh = pod.getMetadata()
-                                                .getAnnotations()
-                                                .get(ANNOTATION_LAST_REFRESH);
-                                        if (lastRefresh != null) {
-                                            try {
-                                                var refreshTime = Long.parseLong(lastRefresh);
-                                                var now = Instant.now();
-                                                LOGGER.log(
-                                                        Level.FINE,
-                                                        () -> getQualifiedName(pod) + " refresh diff = "
-                                                                + (now.toEpochMilli() - refreshTime) + ", timeout is "
-                                                                + gc.getDurationTimeout()
-                                                                        .toMillis());
-                                                return Duration.between(Instant.ofEpochMilli(refreshTime), now)
-                                                                .compareTo(gc.getDurationTimeout())
-                                                        > 0;
-                                            } catch (NumberFormatException e) {
-                                                LOGGER.log(
-                                                        Level.WARNING,
-                                                        e,
-                                                        () -> "Unable to parse last refresh for pod "
-                                                                + getQualifiedName(pod) + ", ignoring");
-                                                return false;
-                                            }
-                                        } else {
-                                            LOGGER.log(
-                                                    Level.FINE, () -> "Ignoring legacy pod " + getQualifiedName(pod));
-                                            return false;
-                                        }
-                                    })
-                                    .forEach(pod -> {
-                                        LOGGER.log(Level.INFO, () -> "Deleting orphan pod " + getQualifiedName(pod));
-                                        client.resource(pod).delete();
-                                    });
+                            garbageCollect(cloud, gc, client, ns);
                         }
                     } catch (KubernetesClientException e) {
                         LOGGER.log(Level.WARNING, "Unexpected error while calling Kubernetes API", e);
@@ -202,11 +187,118 @@ public class GarbageCollection extends AbstractDescribableImpl<GarbageCollection
                         LOGGER.log(Level.WARNING, "Error authenticating to Kubernetes", e);
                     } catch (IOException e) {
                         LOGGER.log(Level.WARNING, "Error while getting Kubernetes client", e);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        LOGGER.log(Level.WARNING, "Interrupted while deleting orphan pods", e);
+                    } finally {
+                        Metrics.metricRegistry()
+                                .timer(MetricNames.GC_DURATION)
+                                .update(System.currentTimeMillis() - start, TimeUnit.MILLISECONDS);
                     }
                 });
             }
         }
 
+        /**
+         * Reads the pods of the namespace from the shared pod informer if enabled, otherwise lists them one page
+         * at a time, deleting the orphans of each page before fetching the next one.
+         */
+        static void garbageCollect(
+                KubernetesCloud cloud, GarbageCollection gc, KubernetesClient client, String ns)
+                throws InterruptedException {
+            String controller = sanitizeLabel(cloud.getJenkinsUrlOrNull());
+            if (KubernetesCloud.SHARED_POD_INFORMERS && controller != null) {
+                SharedIndexInformer<Pod> informer = cloud.registerPodInformer(ns);
+                if (informer != null && informer.hasSynced()) {
+                    var pods = informer.getIndexer().byIndex(KubernetesCloud.CONTROLLER_INDEX, controller);
+                    var now = Instant.now();
+                    Metrics.metricRegistry().counter(MetricNames.GC_PODS_SCANNED).inc(pods.size());
+                    delete(client, pods.stream().filter(pod -> isOrphan(pod, gc, now)).collect(Collectors.toList()));
+                    return;
+                }
+            }
+            String continueToken = null;
+            do {
+                PodList page = client.pods()
+                        .inNamespace(ns)
+                        // Only look at pods created by this controller
+                        .withLabel(LABEL_KUBERNETES_CONTROLLER, controller)
+                        .list(new ListOptionsBuilder()
+                                .withLimit(PAGE_SIZE)
+                                .withContinue(continueToken)
+                                .build());
+                var now = Instant.now();
+                var orphans = page.getItems().stream()
+                        .filter(pod -> isOrphan(pod, gc, now))
+                        .collect(Collectors.toList());
+                Metrics.metricRegistry().counter(MetricNames.GC_PODS_SCANNED).inc(page.getItems().size());
+                delete(client, orphans);
+                continueToken = page.getMetadata() == null ? null : Util.fixEmpty(page.getMetadata().getContinue());
+            } while (continueToken != null);
+        }
+
+        private static boolean isOrphan(Pod pod, GarbageCollection gc, Instant now) {
+            var annotations = pod.getMetadata().getAnnotations();
+            var lastRefresh = annotations == null ? null : annotations.get(ANNOTATION_LAST_REFRESH);
+            if (lastRefresh != null) {
+                try {
+                    var refreshTime = Long.parseLong(lastRefresh);
+                    LOGGER.log(
+                            Level.FINE,
+                            () -> getQualifiedName(pod) + " refresh diff = " + (now.toEpochMilli() - refreshTime)
+                                    + ", timeout is " + gc.getDurationTimeout().toMillis());
+                    return Duration.between(Instant.ofEpochMilli(refreshTime), now)
+                                    .compareTo(gc.getDurationTimeout())
+                            > 0;
+                } catch (NumberFormatException e) {
+                    LOGGER.log(
+                            Level.WARNING,
+                            e,
+                            () -> "Unable to parse last refresh for pod " + getQualifiedName(pod) + ", ignoring");
+                    return false;
+                }
+            } else {
+                LOGGER.log(Level.FINE, () -> "Ignoring legacy pod " + getQualifiedName(pod));
+                return false;
+            }
+        }
+
+        /**
+         * Deletes the given pods, at most {@link #DELETE_THREADS} at a time.
+         * Each pod carries its own timeout annotation, so they cannot be selected by label for a collection delete.
+         */
+        private static void delete(KubernetesClient client, List<Pod> orphans) throws InterruptedException {
+            if (orphans.isEmpty()) {
+                return;
+            }
+            var deletions = new ArrayList<Future<?>>(orphans.size());
+            for (var pod : orphans) {
+                deletions.add(deleteExecutor().submit(() -> {
+                    LOGGER.log(Level.INFO, () -> "Deleting orphan pod " + getQualifiedName(pod));
+                    client.resource(pod).delete();
+                }));
+            }
+            for (var deletion : deletions) {
+                try {
+                    deletion.get();
+                    Metrics.metricRegistry().counter(MetricNames.GC_PODS_DELETED).inc();
+                } catch (ExecutionException e) {
+                    Metrics.metricRegistry().counter(MetricNames.GC_PODS_DELETE_FAILED).inc();
+                    LOGGER.log(Level.WARNING, "Failed to delete orphan pod", e.getCause());
+                }
+            }
+        }
+
+        private static ExecutorService deleteExecutor() {
+            return DeleteExecutorHolder.EXECUTOR;
+        }
+
+        private static final class DeleteExecutorHolder {
+            private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(
+                    DELETE_THREADS,
+                    new NamingThreadFactory(new DaemonThreadFactory(), GarbageCollection.class.getSimpleName()));
+        }
+
         private static String getQualifiedName(@NonNull Pod pod) {
             var metadata = pod.getMetadata();
             return metadata.getNamespace() + "/" + metadata.getName();
@@ -21,7 +21,11 @@ public abstract class InProvisioning implements ExtensionPoint {
      */
     @NonNull
     public static Set<String> getAllInProvisioning(@CheckForNull Label label) {
-        return all().stream().flatMap(c -> c.getInProvisioning(label).stream()).collect(toSet());
+        ExtensionList<InProvisioning> all = all();
+        if (all.size() == 1) {
+            return all.get(0).getInProvisioning(label);
+        }
+        return all.stream().flatMap(c -> c.getInProvisioning(label).stream()).collect(toSet());
     }
 
     public static ExtensionList<InProvisioning> all() {
@@ -12,6 +12,7 @@ import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
 import hudson.Extension;
+import hudson.ExtensionList;
 import hudson.Main;
 import hudson.TcpSlaveAgentListener;
 import hudson.Util;
@@ -33,7 +34,9 @@ import hudson.util.FormApply;
 import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
 import hudson.util.XStream2;
+import io.fabric8.kubernetes.api.model.LimitRange;
 import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.ResourceQuota;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClientException;
 import io.fabric8.kubernetes.client.VersionInfo;
@@ -80,6 +83,7 @@ import org.apache.commons.lang.StringUtils;
 import org.csanchez.jenkins.plugins.kubernetes.pipeline.PodTemplateMap;
 import org.csanchez.jenkins.plugins.kubernetes.pod.retention.Default;
 import org.csanchez.jenkins.plugins.kubernetes.pod.retention.PodRetention;
+import org.csanchez.jenkins.plugins.kubernetes.watch.PodLaunchEventHandler;
 import org.csanchez.jenkins.plugins.kubernetes.watch.PodStatusEventHandler;
 import org.jenkinsci.plugins.kubernetes.auth.KubernetesAuth;
 import org.jenkinsci.plugins.kubernetes.auth.KubernetesAuthException;
@@ -122,6 +126,20 @@ public class KubernetesCloud extends Cloud implements PodTemplateGroup {
 
     public static final int DEFAULT_CONNECT_TIMEOUT_SECONDS = 5;
 
+    /**
+     * Name of the {@link #registerPodInformer(String) pod informer} index by controller label.
+     * @see PodTemplateBuilder#LABEL_KUBERNETES_CONTROLLER
+     */
+    public static final String CONTROLLER_INDEX = "controller";
+
+    /**
+     * Serve pod state from the shared namespace pod informers instead of listing or getting pods from the API server:
+     * garbage collection, initial reaping of agents, agent launch and {@link KubernetesSlave#getPod()}.
+     * Implies registering an informer for each namespace garbage collection or agents use.
+     */
+    public static final boolean SHARED_POD_INFORMERS =
+            SystemProperties.getBoolean(KubernetesCloud.class.getName() + ".sharedPodInformers", false);
+
     private String defaultsProviderTemplate;
 
     @NonNull
@@ -183,6 +201,24 @@ public class KubernetesCloud extends Cloud implements PodTemplateGroup {
      */
     private transient volatile Map<String, SharedIndexInformer<Pod>> informers = new ConcurrentHashMap<>();
 
+    /**
+     * namespace -> resource quota informer
+     */
+    private transient volatile Map<String, SharedIndexInformer<ResourceQuota>> quotaInformers;
+
+    /**
+     * namespace -> limit range informer
+     */
+    private transient volatile Map<String, SharedIndexInformer<LimitRange>> limitRangeInformers;
+
+    /**
+     * kind/namespace -> failure to register the informer, retried with a backoff
+     */
+    private transient volatile Map<String, InformerFailure> informerFailures;
+
+    @CheckForNull
+    private transient volatile PodTemplateIndex templateIndex;
+
     @DataBoundConstructor
     public KubernetesCloud(String name) {
         super(name);
@@ -278,12 +314,23 @@ public class KubernetesCloud extends Cloud implements PodTemplateGroup {
      */
     @NonNull
     public List<PodTemplate> getAllTemplates() {
-        return PodTemplateSource.getAll(this);
+        return new ArrayList<>(getTemplateIndex().getAll());
+    }
+
+    /**
+     * Returns the lookup index of all pod templates, rebuilding it if any {@link PodTemplateSource} changed.
+     */
+    @NonNull
+    private PodTemplateIndex getTemplateIndex() {
+        PodTemplateIndex index = PodTemplateIndex.of(this, templateIndex);
+        templateIndex = index;
+        return index;
     }
 
     @DataBoundSetter
     public void setTemplates(@NonNull List<PodTemplate> templates) {
         this.templates = new ArrayList<>(templates);
+        this.templateIndex = null;
     }
 
     public String getServerUrl() {
@@ -698,12 +745,38 @@ public class KubernetesCloud extends Cloud implements PodTemplateGroup {
                 label, toBeProvisioned, plannedCapacity
             });
 
+            // spill over the remaining workload to the next matching templates when one reaches its limit
             for (PodTemplate podTemplate : getTemplatesFor(label)) {
+                if (toBeProvisioned <= 0) {
+                    break;
+                }
+                // idle agents kept for identical templates are already counted in the limits
+                List<NodeProvisioner.PlannedNode> warmNodes = WarmPool.get().adopt(this, podTemplate, toBeProvisioned);
+                plannedNodes.addAll(warmNodes);
+                toBeProvisioned -= warmNodes.size();
+                if (toBeProvisioned <= 0) {
+                    break;
+                }
+                if (KubernetesProvisioningLimits.get().getRemainingCapacity(this) == 0) {
+                    LOGGER.log(Level.FINE, "Cloud {0} reached its limit, {1} agents left to provision", new Object[] {
+                        name, toBeProvisioned
+                    });
+                    break;
+                }
                 LOGGER.log(Level.FINE, "Template for label \"{0}\": {1}", new Object[] {label, podTemplate.getName()});
                 // check overall concurrency limit using the default label(s) on all templates
                 int numExecutors = 1;
                 PodTemplate unwrappedTemplate = getUnwrappedTemplate(podTemplate);
-                while (toBeProvisioned > 0 && limitRegistrationResults.register(podTemplate, numExecutors)) {
+                String namespace = StringUtils.defaultIfBlank(unwrappedTemplate.getNamespace(), getNamespace());
+                int permitted = PodCreationBreaker.get().permits(this, namespace, toBeProvisioned);
+                int admitted = QuotaAdmission.get().admit(this, unwrappedTemplate, namespace, permitted);
+                if (admitted == 0) {
+                    PodCreationBreaker.get().giveBack(this, namespace, permitted);
+                    LOGGER.log(Level.FINE, "Provisioning held back in {0}/{1}", new Object[] {name, namespace});
+                    continue;
+                }
+                int planned = 0;
+                while (planned < admitted && limitRegistrationResults.register(podTemplate, numExecutors)) {
                     plannedNodes.add(PlannedNodeBuilderFactory.createInstance()
                             .cloud(this)
                             .template(unwrappedTemplate)
@@ -711,16 +784,14 @@ public class KubernetesCloud extends Cloud implements PodTemplateGroup {
                             .numExecutors(1)
                             .build());
                     toBeProvisioned--;
+                    planned++;
                 }
-                if (!plannedNodes.isEmpty()) {
-                    // Return early when a matching template was found and nodes were planned
+                QuotaAdmission.get().reserve(this, unwrappedTemplate, namespace, planned);
+                PodCreationBreaker.get().giveBack(this, namespace, permitted - planned);
+                if (planned > 0) {
                     LOGGER.log(Level.FINEST, "Planned {0} Kubernetes agents with template \"{1}\"", new Object[] {
-                        plannedNodes.size(), podTemplate.getName()
+                        planned, podTemplate.getName()
                     });
-                    Metrics.metricRegistry()
-                            .counter(MetricNames.PROVISION_NODES)
-                            .inc(plannedNodes.size());
-                    return plannedNodes;
                 }
             }
             Metrics.metricRegistry().counter(MetricNames.PROVISION_NODES).inc(plannedNodes.size());
@@ -842,7 +913,7 @@ public class KubernetesCloud extends Cloud implements PodTemplateGroup {
      */
     @CheckForNull
     public PodTemplate getTemplate(@CheckForNull Label label) {
-        return PodTemplateUtils.getTemplateByLabel(label, getAllTemplates());
+        return PodTemplateUtils.getTemplateByLabel(label, getTemplateIndex().getMatching(label));
     }
 
     @SuppressWarnings("unused ") // stapler
@@ -853,10 +924,7 @@ public class KubernetesCloud extends Cloud implements PodTemplateGroup {
 
     @CheckForNull
     public PodTemplate getTemplateById(@NonNull String id) {
-        return getAllTemplates().stream()
-                .filter(t -> id.equals(t.getId()))
-                .findFirst()
-                .orElse(null);
+        return getTemplateIndex().getById(id);
     }
 
     /**
@@ -865,7 +933,9 @@ public class KubernetesCloud extends Cloud implements PodTemplateGroup {
      * @return the unwrapped pod template
      */
     public PodTemplate getUnwrappedTemplate(PodTemplate podTemplate) {
-        return PodTemplateUtils.unwrap(podTemplate, getDefaultsProviderTemplate(), getAllTemplates());
+        PodTemplateIndex index = getTemplateIndex();
+        return PodTemplateUnwrapCache.unwrap(
+                podTemplate, getDefaultsProviderTemplate(), index::getByName, index.getAll());
     }
 
     /**
@@ -885,7 +955,13 @@ public class KubernetesCloud extends Cloud implements PodTemplateGroup {
      * @return list of matching templates
      */
     public List<PodTemplate> getTemplatesFor(@CheckForNull Label label) {
-        return PodTemplateFilter.applyAll(this, getAllTemplates(), label);
+        PodTemplateIndex index = getTemplateIndex();
+        // templates not matching the label would be discarded by the label filter, skip them when it runs first
+        ExtensionList<PodTemplateFilter> filters = PodTemplateFilter.all();
+        List<PodTemplate> candidates = !filters.isEmpty() && filters.get(0) instanceof PodTemplateLabelFilter
+                ? index.getMatching(label)
+                : index.getAll();
+        return PodTemplateFilter.applyAll(this, candidates, label);
     }
 
     /**
@@ -1412,6 +1488,19 @@ public class KubernetesCloud extends Cloud implements PodTemplateGroup {
     }
 
     public void registerPodInformer(KubernetesSlave node) {
+        registerPodInformer(node.getNamespace());
+    }
+
+    /**
+     * Registers the informer watching the agent pods of this cloud in the given namespace, if not registered yet.
+     * Besides namespace/name, pods are indexed by {@link #CONTROLLER_INDEX}.
+     * With {@link #SHARED_POD_INFORMERS}, the informer selects all the pods of this controller rather than those with
+     * the pod labels of this cloud, as garbage collection must also see the pods created with former pod labels.
+     * @param namespace namespace to watch
+     * @return the informer, or null if the cloud could not be connected to
+     */
+    @CheckForNull
+    public SharedIndexInformer<Pod> registerPodInformer(@NonNull String namespace) {
         // even having readResolve initializing informers is not enough, there are some special cases where XStream will
         // not call it, so let us make sure it is initialized before using
         if (informers == null) {
@@ -1421,7 +1510,7 @@ public class KubernetesCloud extends Cloud implements PodTemplateGroup {
                 }
             }
         }
-        informers.computeIfAbsent(node.getNamespace(), (n) -> {
+        return informers.computeIfAbsent(namespace, (n) -> {
             KubernetesClient client;
             try {
                 client = connect();
@@ -1432,22 +1521,220 @@ public class KubernetesCloud extends Cloud implements PodTemplateGroup {
                         e);
                 return null;
             }
-            Map<String, String> labelsFilter = new HashMap<>(getPodLabelsMap());
+            Map<String, String> labelsFilter = new HashMap<>();
             String jenkinsUrlLabel = sanitizeLabel(getJenkinsUrlOrNull());
+            if (!SHARED_POD_INFORMERS || jenkinsUrlLabel == null) {
+                labelsFilter.putAll(getPodLabelsMap());
+            }
             if (jenkinsUrlLabel != null) {
                 labelsFilter.put(PodTemplateBuilder.LABEL_KUBERNETES_CONTROLLER, jenkinsUrlLabel);
             }
             SharedIndexInformer<Pod> inform = client.pods()
-                    .inNamespace(node.getNamespace())
+                    .inNamespace(n)
                     .withLabels(labelsFilter)
-                    .inform(new PodStatusEventHandler(), TimeUnit.SECONDS.toMillis(30));
+                    .runnableInformer(TimeUnit.SECONDS.toMillis(30));
+            inform.addIndexers(Map.of(CONTROLLER_INDEX, KubernetesCloud::controllerOf));
+            inform.addEventHandler(new PodStatusEventHandler());
+            inform.addEventHandler(new PodLaunchEventHandler());
+            inform.run();
             LOGGER.info(String.format(
                     "Registered informer to watch pod events on namespace [%s], with labels [%s] on cloud [%s]",
-                    namespace, labelsFilter, name));
+                    n, labelsFilter, name));
+            return inform;
+        });
+    }
+
+    /**
+     * Registers the informer watching the resource quotas of the given namespace, if not registered yet.
+     * @param namespace namespace to watch
+     * @return the informer, or null if the resource quotas cannot be watched
+     */
+    @CheckForNull
+    public SharedIndexInformer<ResourceQuota> registerResourceQuotaInformer(@NonNull String namespace) {
+        if (quotaInformers == null) {
+            synchronized (this) {
+                if (quotaInformers == null) {
+                    quotaInformers = new ConcurrentHashMap<>();
+                }
+            }
+        }
+        return registerInformer(quotaInformers, "resource quotas", namespace, n -> {
+            SharedIndexInformer<ResourceQuota> inform =
+                    connect().resourceQuotas().inNamespace(n).runnableInformer(0);
+            inform.addEventHandler(new PodCreationBreaker.QuotaEventHandler(name, n));
             return inform;
         });
     }
 
+    /**
+     * Get the resource quota informer registered for the given namespace, if it has completed its initial listing.
+     * @param namespace namespace the informer watches
+     * @return the informer, or null if none was registered or it is not synced yet
+     */
+    @CheckForNull
+    public SharedIndexInformer<ResourceQuota> getSyncedResourceQuotaInformer(@NonNull String namespace) {
+        Map<String, SharedIndexInformer<ResourceQuota>> informers = this.quotaInformers;
+        SharedIndexInformer<ResourceQuota> informer = informers == null ? null : informers.get(namespace);
+        return informer != null && informer.hasSynced() ? informer : null;
+    }
+
+    /**
+     * Registers the informer watching the limit ranges of the given namespace, if not registered yet.
+     * @param namespace namespace to watch
+     * @return the informer, or null if the limit ranges cannot be watched
+     */
+    @CheckForNull
+    public SharedIndexInformer<LimitRange> registerLimitRangeInformer(@NonNull String namespace) {
+        if (limitRangeInformers == null) {
+            synchronized (this) {
+                if (limitRangeInformers == null) {
+                    limitRangeInformers = new ConcurrentHashMap<>();
+                }
+            }
+        }
+        return registerInformer(limitRangeInformers, "limit ranges", namespace, n -> {
+            SharedIndexInformer<LimitRange> inform =
+                    connect().limitRanges().inNamespace(n).runnableInformer(0);
+            inform.addEventHandler(new QuotaAdmission.LimitRangeEventHandler());
+            return inform;
+        });
+    }
+
+    /**
+     * Registers and runs an informer for the given namespace, if not registered yet.
+     * After a failure, typically missing permissions, registration is only retried after a growing delay, and the
+     * failure only logged as a warning the first time.
+     * @param informers the informers registered, by namespace
+     * @param kind the kind of resources watched, for logging
+     * @param namespace namespace to watch
+     * @param factory creates the informer, not running yet
+     * @return the informer, or null if it could not be registered
+     */
+    @CheckForNull
+    private <T> SharedIndexInformer<T> registerInformer(
+            Map<String, SharedIndexInformer<T>> informers,
+            String kind,
+            String namespace,
+            InformerFactory<T> factory) {
+        SharedIndexInformer<T> registered = informers.get(namespace);
+        if (registered != null) {
+            return registered;
+        }
+        if (informerFailures == null) {
+            synchronized (this) {
+                if (informerFailures == null) {
+                    informerFailures = new ConcurrentHashMap<>();
+                }
+            }
+        }
+        String key = kind + "/" + namespace;
+        InformerFailure failure = informerFailures.get(key);
+        if (failure != null && !failure.canRetry()) {
+            return null;
+        }
+        return informers.computeIfAbsent(namespace, (n) -> {
+            SharedIndexInformer<T> inform = null;
+            try {
+                inform = factory.create(n);
+                inform.run();
+                informerFailures.remove(key);
+                LOGGER.info(String.format(
+                        "Registered informer to watch %s on namespace [%s] on cloud [%s]", kind, n, name));
+                return inform;
+            } catch (KubernetesAuthException | IOException | KubernetesClientException e) {
+                if (inform != null) {
+                    inform.stop();
+                }
+                InformerFailure f = informerFailures.compute(key, (k, previous) -> new InformerFailure(previous));
+                LOGGER.log(
+                        f.attempts == 1 ? Level.WARNING : Level.FINE,
+                        String.format(
+                                "Cannot watch %s on namespace %s of cloud %s, retrying in %d seconds",
+                                kind, n, name, TimeUnit.NANOSECONDS.toSeconds(f.delay)),
+                        f.attempts == 1 ? e : null);
+                return null;
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface InformerFactory<T> {
+        SharedIndexInformer<T> create(String namespace) throws KubernetesAuthException, IOException;
+    }
+
+    /**
+     * Consecutive failures to register an informer.
+     */
+    private static final class InformerFailure {
+        private static final long INITIAL_DELAY = TimeUnit.MINUTES.toNanos(1);
+        private static final long MAX_DELAY = TimeUnit.MINUTES.toNanos(30);
+
+        private final int attempts;
+        private final long delay;
+        private final long retryAt;
+
+        InformerFailure(@CheckForNull InformerFailure previous) {
+            attempts = previous == null ? 1 : previous.attempts + 1;
+            delay = previous == null ? INITIAL_DELAY : Math.min(MAX_DELAY, previous.delay * 2);
+            retryAt = System.nanoTime() + delay;
+        }
+
+        boolean canRetry() {
+            return System.nanoTime() - retryAt >= 0;
+        }
+    }
+
+    /**
+     * Get the limit range informer registered for the given namespace, if it has completed its initial listing.
+     * @param namespace namespace the informer watches
+     * @return the informer, or null if none was registered or it is not synced yet
+     */
+    @CheckForNull
+    public SharedIndexInformer<LimitRange> getSyncedLimitRangeInformer(@NonNull String namespace) {
+        Map<String, SharedIndexInformer<LimitRange>> informers = this.limitRangeInformers;
+        SharedIndexInformer<LimitRange> informer = informers == null ? null : informers.get(namespace);
+        return informer != null && informer.hasSynced() ? informer : null;
+    }
+
+    /**
+     * @param namespace a namespace, null for the default namespace of the client
+     * @return the namespace, or null if the default namespace of the client cannot be known
+     */
+    @CheckForNull
+    String namespaceOrDefault(@CheckForNull String namespace) {
+        if (namespace != null) {
+            return namespace;
+        }
+        try {
+            return connect().getNamespace();
+        } catch (KubernetesAuthException | IOException | KubernetesClientException e) {
+            LOGGER.log(Level.FINE, "Cannot resolve the default namespace of " + name, e);
+            return null;
+        }
+    }
+
+    private static List<String> controllerOf(Pod pod) {
+        Map<String, String> labels = pod.getMetadata().getLabels();
+        String controller = labels == null ? null : labels.get(PodTemplateBuilder.LABEL_KUBERNETES_CONTROLLER);
+        return controller == null ? List.of() : List.of(controller);
+    }
+
+    /**
+     * Get the pod informer registered for the given namespace, if it has completed its initial listing.
+     * @param namespace namespace the informer watches
+     * @return the informer, or null if none was registered or it is not synced yet
+     * @see #registerPodInformer(KubernetesSlave)
+     */
+    @CheckForNull
+    public SharedIndexInformer<Pod> getSyncedPodInformer(@CheckForNull String namespace) {
+        Map<String, SharedIndexInformer<Pod>> informers = this.informers;
+        if (informers == null || namespace == null) {
+            return null;
+        }
+        SharedIndexInformer<Pod> informer = informers.get(namespace);
+        return informer != null && informer.hasSynced() ? informer : null;
+    }
+
     @Extension
     public static class PodTemplateSourceImpl extends PodTemplateSource {
         @NonNull
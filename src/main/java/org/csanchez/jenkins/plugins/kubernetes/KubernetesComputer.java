@@ -8,6 +8,7 @@ import hudson.model.TaskListener;
 import hudson.security.ACL;
 import hudson.security.Permission;
 import hudson.slaves.AbstractCloudComputer;
+import hudson.slaves.OfflineCause;
 import io.fabric8.kubernetes.api.model.Container;
 import io.fabric8.kubernetes.api.model.ContainerStatus;
 import io.fabric8.kubernetes.api.model.Event;
@@ -61,6 +62,7 @@ public class KubernetesComputer extends AbstractCloudComputer<KubernetesSlave> {
     public void taskCompleted(Executor executor, Queue.Task task, long durationMS) {
         Queue.Executable exec = executor.getCurrentExecutable();
         LOGGER.log(Level.FINE, " Computer {0} completed task {1}", new Object[] {this, exec});
+        recordDuration(durationMS);
 
         // May take the agent offline and remove it, in which case getNode()
         // above would return null and we'd not find our DockerSlave anymore.
@@ -69,11 +71,19 @@ public class KubernetesComputer extends AbstractCloudComputer<KubernetesSlave> {
 
     @Override
     public void taskCompletedWithProblems(Executor executor, Queue.Task task, long durationMS, Throwable problems) {
+        recordDuration(durationMS);
         super.taskCompletedWithProblems(executor, task, durationMS, problems);
         Queue.Executable exec = executor.getCurrentExecutable();
         LOGGER.log(Level.FINE, " Computer {0} completed task {1} with problems", new Object[] {this, exec});
     }
 
+    private void recordDuration(long durationMS) {
+        KubernetesSlave node = getNode();
+        if (node != null) {
+            QueueForecast.get().recordDuration(node.getTemplateId(), durationMS);
+        }
+    }
+
     @Exported
     public List<Container> getContainers() throws KubernetesAuthException, IOException {
         if (!Jenkins.get().hasPermission(Computer.EXTENDED_READ)) {
@@ -227,6 +237,7 @@ public class KubernetesComputer extends AbstractCloudComputer<KubernetesSlave> {
 
     public void setLaunching(boolean launching) {
         this.launching = launching;
+        updateInProvisioning();
     }
 
     /**
@@ -237,11 +248,30 @@ public class KubernetesComputer extends AbstractCloudComputer<KubernetesSlave> {
         return launching;
     }
 
+    /**
+     * Records that the agent is being launched asynchronously, so that the launcher returning before the agent
+     * connects back is not reported as a launch failure.
+     */
+    void setLaunchInProgress() {
+        offlineCause = OfflineCause.create(Messages._KubernetesComputer_LaunchInProgress());
+    }
+
     @Override
     public void setAcceptingTasks(boolean acceptingTasks) {
         super.setAcceptingTasks(acceptingTasks);
         if (acceptingTasks) {
             launching = false;
         }
+        updateInProvisioning();
+    }
+
+    /**
+     * Called when the provisioning state of the agent may have changed.
+     */
+    void updateInProvisioning() {
+        KubernetesSlave node = getNode();
+        if (node != null) {
+            DefaultInProvisioning.get().update(node);
+        }
     }
 }
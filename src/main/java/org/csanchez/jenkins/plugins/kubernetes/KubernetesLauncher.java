@@ -42,6 +42,9 @@ import io.fabric8.kubernetes.api.model.ObjectMeta;
 import io.fabric8.kubernetes.api.model.Pod;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.KubernetesClientTimeoutException;
+import io.fabric8.kubernetes.client.informers.SharedIndexInformer;
+import io.fabric8.kubernetes.client.readiness.Readiness;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -49,6 +52,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -58,6 +62,7 @@ import jenkins.util.SystemProperties;
 import org.apache.commons.lang.StringUtils;
 import org.csanchez.jenkins.plugins.kubernetes.pod.decorator.PodDecoratorException;
 import org.csanchez.jenkins.plugins.kubernetes.pod.retention.Reaper;
+import org.csanchez.jenkins.plugins.kubernetes.watch.PodLaunchEventHandler;
 import org.kohsuke.stapler.DataBoundConstructor;
 
 /**
@@ -77,12 +82,39 @@ public class KubernetesLauncher extends JNLPLauncher {
     private static final boolean DISABLE_DIAGNOSTIC_LOGS =
             SystemProperties.getBoolean(KubernetesLauncher.class.getName() + ".disableDiagnosticLogs", false);
 
+    /**
+     * Read the pod state from the shared namespace pod informer while waiting for the agent to connect,
+     * waking up on pod events instead of polling the API server every second.
+     * Implies registering the informer even if diagnostic logs are disabled.
+     */
+    private static final boolean INFORMER_LAUNCH =
+            SystemProperties.getBoolean(KubernetesLauncher.class.getName() + ".informerLaunch", false);
+
+    /**
+     * Launch agents through {@link PodLaunchPipeline}, returning as soon as the launch is scheduled instead of
+     * blocking the launch thread until the agent connects.
+     * Implies {@link #INFORMER_LAUNCH}, so that checks do not poll the API server.
+     */
+    private static final boolean ASYNC_LAUNCH =
+            SystemProperties.getBoolean(KubernetesLauncher.class.getName() + ".asyncLaunch", false);
+
     /**
      * Provisioning exception if any.
      */
     @CheckForNull
     private transient Throwable problem;
 
+    /**
+     * Launch in progress, when launching asynchronously.
+     */
+    @CheckForNull
+    private transient volatile CompletableFuture<Void> pendingLaunch;
+
+    /**
+     * Start of the current launch, to report the launch time to {@link LaunchStatistics}.
+     */
+    private transient volatile long launchStart;
+
     @DataBoundConstructor
     public KubernetesLauncher(String tunnel, String vmargs) {
         super(tunnel, vmargs);
@@ -116,114 +148,53 @@ public class KubernetesLauncher extends JNLPLauncher {
             computer.setAcceptingTasks(true);
             return;
         }
+        if (ASYNC_LAUNCH) {
+            CompletableFuture<Void> pending = pendingLaunch;
+            if (pending != null && !pending.isDone()) {
+                LOGGER.log(FINE, "Agent launch already in progress: {0}", node.getNodeName());
+                return;
+            }
+            // SlaveComputer._connect reports a launch failure if the launcher returns without a channel nor an offline
+            // cause, so an offline cause must be set while the agent is still connecting
+            kubernetesComputer.setLaunchInProgress();
+            launchStart = System.nanoTime();
+            pendingLaunch = new PodLaunchPipeline(this, kubernetesComputer, node, listener).start();
+            return;
+        }
 
         String cloudName = node.getCloudName();
+        launchStart = System.nanoTime();
 
         try {
             PodTemplate template = node.getTemplate();
             KubernetesCloud cloud = node.getKubernetesCloud();
             KubernetesClient client = cloud.connect();
-            Pod pod;
-            try {
-                pod = template.build(node);
-            } catch (PodDecoratorException e) {
-                Run<?, ?> run = template.getRun();
-                if (run != null) {
-                    template.getListener().getLogger().println("Failed to build pod definition : " + e.getMessage());
-                    PodUtils.cancelQueueItemFor(run.getUrl(), template.getLabel(), e.getMessage(), null);
-                }
-                e.printStackTrace(listener.fatalError("Failed to build pod definition"));
-                setProblem(e);
-                terminateOrLog(node);
+            Pod pod = buildPod(node, template, client, listener);
+            if (pod == null) {
                 return;
             }
-            node.assignPod(pod);
-
             String podName = pod.getMetadata().getName();
+            String namespace = node.getNamespace();
 
-            String namespace = Arrays.asList( //
-                            pod.getMetadata().getNamespace(), template.getNamespace(), client.getNamespace()) //
-                    .stream()
-                    .filter(s -> StringUtils.isNotBlank(s))
-                    .findFirst()
-                    .orElse(null);
-            node.setNamespace(namespace);
-
-            // register a namespace informer (if not registered yet) to show relevant pod events in build logs
-            if (!DISABLE_DIAGNOSTIC_LOGS) {
-                cloud.registerPodInformer(node);
-            }
+            SharedIndexInformer<Pod> informer = registerPodInformer(cloud, node);
+            pod = createPod(client, informer, node, pod, listener);
+            kubernetesComputer.setLaunching(true);
+            createVolumes(client, template, pod);
 
-            // if the controller was interrupted after creating the pod but before it connected back, then
-            // the pod might already exist and the creating logic must be skipped.
-            Pod existingPod =
-                    client.pods().inNamespace(namespace).withName(podName).get();
-            if (existingPod == null) {
-                LOGGER.log(FINE, () -> "Creating Pod: " + cloudName + " " + namespace + "/" + podName);
+            if (informer != null) {
+                AgentConnectWait wait =
+                        agentConnectWait(informer, node, template, namespace, podName, listener, client);
+                PodLaunchEventHandler.register(namespace, podName);
                 try {
-                    pod = client.pods().inNamespace(namespace).create(pod);
-                } catch (KubernetesClientException e) {
-                    Metrics.metricRegistry()
-                            .counter(MetricNames.CREATION_FAILED)
-                            .inc();
-                    int httpCode = e.getCode();
-                    if (400 <= httpCode && httpCode < 500) { // 4xx
-                        if (httpCode == 403 && e.getMessage().contains("is forbidden: exceeded quota")) {
-                            node.getRunListener()
-                                    .getLogger()
-                                    .printf(
-                                            "WARNING: Unable to create pod: %s %s/%s because kubernetes resource quota exceeded. %n%s%nRetrying...%n%n",
-                                            cloudName,
-                                            namespace,
-                                            pod.getMetadata().getName(),
-                                            e.getMessage());
-                        } else if (httpCode == 409
-                                && e.getMessage().contains("Operation cannot be fulfilled on resourcequotas")) {
-                            // See: https://github.com/kubernetes/kubernetes/issues/67761 ; A retry usually works.
-                            node.getRunListener()
-                                    .getLogger()
-                                    .printf(
-                                            "WARNING: Unable to create pod: %s %s/%s because kubernetes resource quota update conflict. %n%s%nRetrying...%n%n",
-                                            cloudName,
-                                            namespace,
-                                            pod.getMetadata().getName(),
-                                            e.getMessage());
-                        } else {
-                            node.getRunListener()
-                                    .getLogger()
-                                    .printf(
-                                            "ERROR: Unable to create pod %s %s/%s.%n%s%n",
-                                            cloudName,
-                                            namespace,
-                                            pod.getMetadata().getName(),
-                                            e.getMessage());
-                            PodUtils.cancelQueueItemFor(pod, e.getMessage());
-                        }
-                    } else if (500 <= httpCode && httpCode < 600) { // 5xx
-                        LOGGER.log(FINE, "Kubernetes returned HTTP code {0} {1}. Retrying...", new Object[] {
-                            e.getCode(), e.getStatus()
-                        });
-                    } else {
-                        LOGGER.log(WARNING, "Kubernetes returned unhandled HTTP code {0} {1}", new Object[] {
-                            e.getCode(), e.getStatus()
-                        });
+                    while (!wait.check()) {
+                        PodLaunchEventHandler.await(namespace, podName, wait.nextCheckDelay(), TimeUnit.MILLISECONDS);
                     }
-                    throw e;
+                } finally {
+                    PodLaunchEventHandler.unregister(namespace, podName);
                 }
-                LOGGER.log(INFO, () -> "Created Pod: " + cloudName + " " + namespace + "/" + podName);
-                listener.getLogger().printf("Created Pod: %s %s/%s%n", cloudName, namespace, podName);
-                Metrics.metricRegistry().counter(MetricNames.PODS_CREATED).inc();
-
-                node.getRunListener().getLogger().printf("Created Pod: %s %s/%s%n", cloudName, namespace, podName);
-            } else {
-                LOGGER.log(INFO, () -> "Pod already exists: " + cloudName + " " + namespace + "/" + podName);
-                listener.getLogger().printf("Pod already exists: %s %s/%s%n", cloudName, namespace, podName);
+                onAgentConnected(computer, node);
+                return;
             }
-            kubernetesComputer.setLaunching(true);
-
-            ObjectMeta podMetadata = pod.getMetadata();
-            template.getWorkspaceVolume().createVolume(client, podMetadata);
-            template.getVolumes().forEach(volume -> volume.createVolume(client, podMetadata));
 
             client.pods()
                     .inNamespace(namespace)
@@ -258,38 +229,8 @@ public class KubernetesLauncher extends JNLPLauncher {
                     Metrics.metricRegistry().counter(MetricNames.LAUNCH_FAILED).inc();
                     throw new IllegalStateException("Pod no longer exists: " + podName);
                 }
+                containerStatuses = checkPodStatus(pod, podName, namespace, node, listener, client);
                 status = pod.getStatus().getPhase();
-                if (POD_TERMINATED_STATES.contains(status)) {
-                    Metrics.metricRegistry().counter(MetricNames.LAUNCH_FAILED).inc();
-                    Metrics.metricRegistry()
-                            .counter(MetricNames.metricNameForPodStatus(status))
-                            .inc();
-                    logLastLines(containerStatuses, podName, namespace, node, null, client);
-                    throw new IllegalStateException("Pod '" + podName + "' is terminated. Status: " + status);
-                }
-
-                containerStatuses = pod.getStatus().getContainerStatuses();
-                List<ContainerStatus> terminatedContainers = new ArrayList<>();
-                for (ContainerStatus info : containerStatuses) {
-                    if (info != null) {
-                        if (info.getState().getTerminated() != null) {
-                            // Container has errored
-                            LOGGER.log(INFO, "Container is terminated {0} [{2}]: {1}", new Object[] {
-                                podName, info.getState().getTerminated(), info.getName()
-                            });
-                            listener.getLogger()
-                                    .printf(
-                                            "Container is terminated %1$s [%3$s]: %2$s%n",
-                                            podName, info.getState().getTerminated(), info.getName());
-                            Metrics.metricRegistry()
-                                    .counter(MetricNames.LAUNCH_FAILED)
-                                    .inc();
-                            terminatedContainers.add(info);
-                        }
-                    }
-                }
-
-                checkTerminatedContainers(terminatedContainers, podName, namespace, node, client);
 
                 if (lastReportTimestamp + REPORT_INTERVAL < System.currentTimeMillis()) {
                     LOGGER.log(INFO, "Waiting for agent to connect ({1}/{2}): {0}", new Object[] {
@@ -312,28 +253,365 @@ public class KubernetesLauncher extends JNLPLauncher {
                         "Agent is not connected after " + waitedForSlave + " seconds, status: " + status);
             }
 
-            computer.setAcceptingTasks(true);
-            launched = true;
-            try {
-                // We need to persist the "launched" setting...
-                node.save();
-            } catch (IOException e) {
-                LOGGER.log(Level.WARNING, "Could not save() agent: " + e.getMessage(), e);
-            }
-            Metrics.metricRegistry().counter(MetricNames.PODS_LAUNCHED).inc();
+            onAgentConnected(computer, node);
         } catch (Throwable ex) {
-            setProblem(ex);
-            Functions.printStackTrace(ex, node.getRunListener().error("Failed to launch " + node.getPodName()));
-            LOGGER.log(
-                    Level.WARNING,
-                    String.format("Error in provisioning; agent=%s, template=%s", node, node.getTemplateId()),
-                    ex);
-            LOGGER.log(Level.FINER, "Removing Jenkins node: {0}", node.getNodeName());
-            terminateOrLog(node);
+            onLaunchFailure(node, ex);
             throw new RuntimeException(ex);
         }
     }
 
+    /**
+     * Builds the pod definition for the given agent and resolves its namespace.
+     * @return the pod, or null if the pod definition could not be built, in which case the node has been terminated
+     */
+    @CheckForNull
+    Pod buildPod(KubernetesSlave node, PodTemplate template, KubernetesClient client, TaskListener listener) {
+        Pod pod;
+        try {
+            pod = template.build(node);
+        } catch (PodDecoratorException e) {
+            Run<?, ?> run = template.getRun();
+            if (run != null) {
+                template.getListener().getLogger().println("Failed to build pod definition : " + e.getMessage());
+                PodUtils.cancelQueueItemFor(run.getUrl(), template.getLabel(), e.getMessage(), null);
+            }
+            e.printStackTrace(listener.fatalError("Failed to build pod definition"));
+            setProblem(e);
+            terminateOrLog(node);
+            return null;
+        }
+        node.assignPod(pod);
+
+        String namespace = Arrays.asList( //
+                        pod.getMetadata().getNamespace(), template.getNamespace(), client.getNamespace()) //
+                .stream()
+                .filter(s -> StringUtils.isNotBlank(s))
+                .findFirst()
+                .orElse(null);
+        node.setNamespace(namespace);
+        return pod;
+    }
+
+    /**
+     * Registers the namespace pod informer if needed.
+     * @return the informer to read the pod state from while launching, or null to query the API server
+     */
+    @CheckForNull
+    SharedIndexInformer<Pod> registerPodInformer(KubernetesCloud cloud, KubernetesSlave node) {
+        // register a namespace informer (if not registered yet) to show relevant pod events in build logs
+        boolean informerLaunch = INFORMER_LAUNCH || ASYNC_LAUNCH || KubernetesCloud.SHARED_POD_INFORMERS;
+        if (!DISABLE_DIAGNOSTIC_LOGS || informerLaunch) {
+            cloud.registerPodInformer(node);
+        }
+        return informerLaunch ? cloud.getSyncedPodInformer(node.getNamespace()) : null;
+    }
+
+    /**
+     * Creates the agent pod, unless it already exists.
+     * @return the created or existing pod
+     */
+    Pod createPod(
+            KubernetesClient client,
+            @CheckForNull SharedIndexInformer<Pod> informer,
+            KubernetesSlave node,
+            Pod pod,
+            TaskListener listener) {
+        String cloudName = node.getCloudName();
+        String namespace = node.getNamespace();
+        String podName = pod.getMetadata().getName();
+
+        // if the controller was interrupted after creating the pod but before it connected back, then
+        // the pod might already exist and the creating logic must be skipped.
+        Pod existingPod = informer != null
+                ? informer.getStore().getByKey(namespace + "/" + podName)
+                : client.pods().inNamespace(namespace).withName(podName).get();
+        if (existingPod == null) {
+            LOGGER.log(FINE, () -> "Creating Pod: " + cloudName + " " + namespace + "/" + podName);
+            try {
+                pod = client.pods().inNamespace(namespace).create(pod);
+            } catch (KubernetesClientException e) {
+                Metrics.metricRegistry().counter(MetricNames.CREATION_FAILED).inc();
+                int httpCode = e.getCode();
+                if (400 <= httpCode && httpCode < 500) { // 4xx
+                    if (httpCode == 403 && e.getMessage().contains("is forbidden: exceeded quota")) {
+                        recordSaturation(node, true);
+                        node.getRunListener()
+                                .getLogger()
+                                .printf(
+                                        "WARNING: Unable to create pod: %s %s/%s because kubernetes resource quota exceeded. %n%s%nRetrying...%n%n",
+                                        cloudName,
+                                        namespace,
+                                        pod.getMetadata().getName(),
+                                        e.getMessage());
+                    } else if (httpCode == 409
+                            && e.getMessage().contains("Operation cannot be fulfilled on resourcequotas")) {
+                        recordSaturation(node, true);
+                        // See: https://github.com/kubernetes/kubernetes/issues/67761 ; A retry usually works.
+                        node.getRunListener()
+                                .getLogger()
+                                .printf(
+                                        "WARNING: Unable to create pod: %s %s/%s because kubernetes resource quota update conflict. %n%s%nRetrying...%n%n",
+                                        cloudName,
+                                        namespace,
+                                        pod.getMetadata().getName(),
+                                        e.getMessage());
+                    } else {
+                        node.getRunListener()
+                                .getLogger()
+                                .printf(
+                                        "ERROR: Unable to create pod %s %s/%s.%n%s%n",
+                                        cloudName,
+                                        namespace,
+                                        pod.getMetadata().getName(),
+                                        e.getMessage());
+                        PodUtils.cancelQueueItemFor(pod, e.getMessage());
+                    }
+                } else if (500 <= httpCode && httpCode < 600) { // 5xx
+                    recordSaturation(node, false);
+                    LOGGER.log(FINE, "Kubernetes returned HTTP code {0} {1}. Retrying...", new Object[] {
+                        e.getCode(), e.getStatus()
+                    });
+                } else {
+                    LOGGER.log(WARNING, "Kubernetes returned unhandled HTTP code {0} {1}", new Object[] {
+                        e.getCode(), e.getStatus()
+                    });
+                }
+                throw e;
+            } finally {
+                QuotaAdmission.get().release(cloudName, namespace, node.getTemplateId());
+            }
+            LOGGER.log(INFO, () -> "Created Pod: " + cloudName + " " + namespace + "/" + podName);
+            listener.getLogger().printf("Created Pod: %s %s/%s%n", cloudName, namespace, podName);
+            Metrics.metricRegistry().counter(MetricNames.PODS_CREATED).inc();
+            PodCreationBreaker.get().recordSuccess(cloudName, namespace);
+
+            node.getRunListener().getLogger().printf("Created Pod: %s %s/%s%n", cloudName, namespace, podName);
+        } else {
+            LOGGER.log(INFO, () -> "Pod already exists: " + cloudName + " " + namespace + "/" + podName);
+            listener.getLogger().printf("Pod already exists: %s %s/%s%n", cloudName, namespace, podName);
+        }
+        return pod;
+    }
+
+    private static void recordSaturation(KubernetesSlave node, boolean quota) {
+        String namespace = node.getNamespace();
+        if (namespace != null && node.getCloud() instanceof KubernetesCloud cloud) {
+            PodCreationBreaker.get().recordFailure(cloud, namespace, quota);
+        }
+    }
+
+    void createVolumes(KubernetesClient client, PodTemplate template, Pod pod) {
+        ObjectMeta podMetadata = pod.getMetadata();
+        template.getWorkspaceVolume().createVolume(client, podMetadata);
+        template.getVolumes().forEach(volume -> volume.createVolume(client, podMetadata));
+    }
+
+    void onLaunchFailure(KubernetesSlave node, Throwable ex) {
+        setProblem(ex);
+        LaunchStatistics.get().recordFailure(node.getCloudName());
+        Functions.printStackTrace(ex, node.getRunListener().error("Failed to launch " + node.getPodName()));
+        LOGGER.log(
+                Level.WARNING,
+                String.format("Error in provisioning; agent=%s, template=%s", node, node.getTemplateId()),
+                ex);
+        LOGGER.log(Level.FINER, "Removing Jenkins node: {0}", node.getNodeName());
+        terminateOrLog(node);
+    }
+
+    void onAgentConnected(SlaveComputer computer, KubernetesSlave node) {
+        computer.setAcceptingTasks(true);
+        launched = true;
+        ((KubernetesComputer) computer).updateInProvisioning();
+        try {
+            // We need to persist the "launched" setting...
+            node.save();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not save() agent: " + e.getMessage(), e);
+        }
+        Metrics.metricRegistry().counter(MetricNames.PODS_LAUNCHED).inc();
+        LaunchStatistics.get()
+                .recordSuccess(node.getCloudName(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - launchStart));
+    }
+
+    AgentConnectWait agentConnectWait(
+            @CheckForNull SharedIndexInformer<Pod> informer,
+            KubernetesSlave node,
+            PodTemplate template,
+            String namespace,
+            String podName,
+            TaskListener listener,
+            KubernetesClient client) {
+        return new AgentConnectWait(informer, node, template, namespace, podName, listener, client);
+    }
+
+    /**
+     * Tracks a created pod until its agent connects, using the same timeouts as the polling mode:
+     * first for the pod to be ready, then for the agent to connect.
+     * Each {@link #check()} is non-blocking, so it can be driven by a waiting thread woken up by pod events
+     * as well as by {@link PodLaunchPipeline}.
+     */
+    class AgentConnectWait {
+        @CheckForNull
+        private final SharedIndexInformer<Pod> informer;
+
+        private final KubernetesSlave node;
+        private final String namespace;
+        private final String podName;
+        private final TaskListener listener;
+        private final KubernetesClient client;
+        private final int waitForSlaveToConnect;
+        private final long timeout;
+        private long waitStart;
+        private long deadline;
+        private long lastReportTimestamp;
+        private boolean ready;
+        private List<ContainerStatus> containerStatuses;
+        private String status;
+
+        /**
+         * @param informer informer to read the pod state from, or null to query the API server on each check
+         */
+        AgentConnectWait(
+                @CheckForNull SharedIndexInformer<Pod> informer,
+                KubernetesSlave node,
+                PodTemplate template,
+                String namespace,
+                String podName,
+                TaskListener listener,
+                KubernetesClient client) {
+            this.informer = informer;
+            this.node = node;
+            this.namespace = namespace;
+            this.podName = podName;
+            this.listener = listener;
+            this.client = client;
+            this.waitForSlaveToConnect = template.getSlaveConnectTimeout();
+            this.timeout = TimeUnit.SECONDS.toMillis(waitForSlaveToConnect);
+            this.waitStart = System.currentTimeMillis();
+            this.deadline = waitStart + timeout;
+            this.lastReportTimestamp = waitStart;
+        }
+
+        /**
+         * @return true if the pod has been seen ready
+         */
+        boolean isReady() {
+            return ready;
+        }
+
+        /**
+         * @return how long to wait at most before the next check, in milliseconds
+         */
+        long nextCheckDelay() {
+            long interval = informer != null ? REPORT_INTERVAL : TimeUnit.SECONDS.toMillis(1);
+            return Math.max(0, Math.min(deadline - System.currentTimeMillis(), interval));
+        }
+
+        /**
+         * @return true once the agent is online
+         * @throws IllegalStateException if the pod or the node is gone, the pod failed, or the agent did not connect in time
+         */
+        boolean check() {
+            SlaveComputer slaveComputer = node.getComputer();
+            if (slaveComputer == null) {
+                Metrics.metricRegistry().counter(MetricNames.LAUNCH_FAILED).inc();
+                throw new IllegalStateException("Node was deleted, computer is null");
+            }
+            if (slaveComputer.isOnline()) {
+                return true;
+            }
+
+            Pod pod = informer != null ? informer.getStore().getByKey(namespace + "/" + podName) : null;
+            if (pod == null) {
+                // the informer may not have seen the pod yet
+                pod = client.pods().inNamespace(namespace).withName(podName).get();
+            }
+            if (pod == null) {
+                Metrics.metricRegistry().counter(MetricNames.LAUNCH_FAILED).inc();
+                throw new IllegalStateException("Pod no longer exists: " + podName);
+            }
+            containerStatuses = checkPodStatus(pod, podName, namespace, node, listener, client);
+            status = pod.getStatus().getPhase();
+
+            long now = System.currentTimeMillis();
+            if (!ready && Readiness.isPodReady(pod)) {
+                ready = true;
+                LOGGER.log(INFO, "Pod is running: {0} {1}/{2}", new Object[] {node.getCloudName(), namespace, podName
+                });
+                waitStart = now;
+                deadline = now + timeout;
+                lastReportTimestamp = now;
+            }
+            if (now >= deadline) {
+                if (!ready) {
+                    throw new KubernetesClientTimeoutException(pod, waitForSlaveToConnect, TimeUnit.SECONDS);
+                }
+                Metrics.metricRegistry().counter(MetricNames.LAUNCH_FAILED).inc();
+                Metrics.metricRegistry().counter(MetricNames.FAILED_TIMEOUT).inc();
+                logLastLines(containerStatuses, podName, namespace, node, null, client);
+                throw new IllegalStateException("Agent is not connected after "
+                        + TimeUnit.MILLISECONDS.toSeconds(now - waitStart) + " seconds, status: " + status);
+            }
+
+            if (ready && lastReportTimestamp + REPORT_INTERVAL < now) {
+                long waitedForSlave = TimeUnit.MILLISECONDS.toSeconds(now - waitStart);
+                LOGGER.log(INFO, "Waiting for agent to connect ({1}/{2}): {0}", new Object[] {
+                    podName, waitedForSlave, waitForSlaveToConnect
+                });
+                listener.getLogger()
+                        .printf(
+                                "Waiting for agent to connect (%2$s/%3$s): %1$s%n",
+                                podName, waitedForSlave, waitForSlaveToConnect);
+                lastReportTimestamp = now;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Fails the launch if the pod or any of its containers is terminated.
+     * @return the current container statuses
+     */
+    private List<ContainerStatus> checkPodStatus(
+            Pod pod,
+            String podName,
+            String namespace,
+            KubernetesSlave node,
+            TaskListener listener,
+            KubernetesClient client) {
+        String status = pod.getStatus().getPhase();
+        List<ContainerStatus> containerStatuses = pod.getStatus().getContainerStatuses();
+        if (POD_TERMINATED_STATES.contains(status)) {
+            Metrics.metricRegistry().counter(MetricNames.LAUNCH_FAILED).inc();
+            Metrics.metricRegistry()
+                    .counter(MetricNames.metricNameForPodStatus(status))
+                    .inc();
+            logLastLines(containerStatuses, podName, namespace, node, null, client);
+            throw new IllegalStateException("Pod '" + podName + "' is terminated. Status: " + status);
+        }
+
+        List<ContainerStatus> terminatedContainers = new ArrayList<>();
+        for (ContainerStatus info : containerStatuses) {
+            if (info != null) {
+                if (info.getState().getTerminated() != null) {
+                    // Container has errored
+                    LOGGER.log(INFO, "Container is terminated {0} [{2}]: {1}", new Object[] {
+                        podName, info.getState().getTerminated(), info.getName()
+                    });
+                    listener.getLogger()
+                            .printf(
+                                    "Container is terminated %1$s [%3$s]: %2$s%n",
+                                    podName, info.getState().getTerminated(), info.getName());
+                    Metrics.metricRegistry().counter(MetricNames.LAUNCH_FAILED).inc();
+                    terminatedContainers.add(info);
+                }
+            }
+        }
+
+        checkTerminatedContainers(terminatedContainers, podName, namespace, node, client);
+        return containerStatuses;
+    }
+
     private static void terminateOrLog(KubernetesSlave node) {
         try {
             node.terminate();
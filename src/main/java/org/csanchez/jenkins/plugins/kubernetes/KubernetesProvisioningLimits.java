@@ -8,6 +8,7 @@ import hudson.model.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import jenkins.metrics.api.Metrics;
@@ -28,12 +29,12 @@ public final class KubernetesProvisioningLimits {
     /**
      * Tracks current number of kubernetes agents per pod template
      */
-    private final ConcurrentMap<String, Integer> podTemplateCounts = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicInteger> podTemplateCounts = new ConcurrentHashMap<>();
 
     /**
      * Tracks current number of kubernetes agents per kubernetes cloud
      */
-    private final ConcurrentMap<String, Integer> cloudCounts = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicInteger> cloudCounts = new ConcurrentHashMap<>();
 
     /**
      * Initialize limits counter
@@ -41,21 +42,13 @@ public final class KubernetesProvisioningLimits {
      */
     private boolean initInstance() {
         if (init.compareAndSet(false, true)) {
-            Queue.withLock(() -> {
-                synchronized (this) {
-                    Jenkins.get().getNodes().stream()
-                            .filter(KubernetesSlave.class::isInstance)
-                            .map(KubernetesSlave.class::cast)
-                            .forEach(node -> {
-                                cloudCounts.put(
-                                        node.getCloudName(),
-                                        getGlobalCount(node.getCloudName()) + node.getNumExecutors());
-                                podTemplateCounts.put(
-                                        node.getTemplateId(),
-                                        getPodTemplateCount(node.getTemplateId()) + node.getNumExecutors());
-                            });
-                }
-            });
+            Queue.withLock(() -> Jenkins.get().getNodes().stream()
+                    .filter(KubernetesSlave.class::isInstance)
+                    .map(KubernetesSlave.class::cast)
+                    .forEach(node -> {
+                        counter(cloudCounts, node.getCloudName()).addAndGet(node.getNumExecutors());
+                        counter(podTemplateCounts, node.getTemplateId()).addAndGet(node.getNumExecutors());
+                    }));
 
             return false;
         } else {
@@ -71,48 +64,46 @@ public final class KubernetesProvisioningLimits {
     }
 
     /**
-     * Register executors
+     * Register executors.
+     * Counters are updated with compare-and-set loops, without any global lock.
+     * The cloud slot is reserved first and released if the pod template limit is reached,
+     * so neither limit is ever exceeded, although a concurrent registration may transiently see the cloud as full.
      * @param cloud the kubernetes cloud the executors will be on
      * @param podTemplate the pod template used to schedule the agent
      * @param numExecutors the number of executors (pretty much always 1)
      */
     public boolean register(@NonNull KubernetesCloud cloud, @NonNull PodTemplate podTemplate, int numExecutors) {
         initInstance();
-        synchronized (this) {
-            int newGlobalCount = getGlobalCount(cloud.name) + numExecutors;
-            if (newGlobalCount <= cloud.getContainerCap()) {
-                int newPodTemplateCount = getPodTemplateCount(podTemplate.getId()) + numExecutors;
-                if (newPodTemplateCount <= podTemplate.getInstanceCap()) {
-                    cloudCounts.put(cloud.name, newGlobalCount);
-                    LOGGER.log(
-                            Level.FINEST,
-                            () -> cloud.name + " global limit: " + newGlobalCount + "/" + cloud.getContainerCap());
-
-                    podTemplateCounts.put(podTemplate.getId(), newPodTemplateCount);
-                    LOGGER.log(
-                            Level.FINEST,
-                            () -> podTemplate.getName() + " template limit: " + newPodTemplateCount + "/"
-                                    + podTemplate.getInstanceCap());
-                    return true;
-                } else {
-                    LOGGER.log(
-                            Level.FINEST,
-                            () -> podTemplate.getName() + " template limit reached: "
-                                    + getPodTemplateCount(podTemplate.getId()) + "/" + podTemplate.getInstanceCap()
-                                    + ". Cannot add " + numExecutors + " more!");
-                    Metrics.metricRegistry()
-                            .counter(MetricNames.REACHED_POD_CAP)
-                            .inc();
-                }
-            } else {
-                LOGGER.log(
-                        Level.FINEST,
-                        () -> cloud.name + " global limit reached: " + getGlobalCount(cloud.name) + "/"
-                                + cloud.getContainerCap() + ". Cannot add " + numExecutors + " more!");
-                Metrics.metricRegistry().counter(MetricNames.REACHED_GLOBAL_CAP).inc();
-            }
+        AtomicInteger cloudCount = counter(cloudCounts, cloud.name);
+        int newGlobalCount = tryAdd(cloudCount, numExecutors, cloud.getContainerCap());
+        if (newGlobalCount < 0) {
+            LOGGER.log(
+                    Level.FINEST,
+                    () -> cloud.name + " global limit reached: " + getGlobalCount(cloud.name) + "/"
+                            + cloud.getContainerCap() + ". Cannot add " + numExecutors + " more!");
+            Metrics.metricRegistry().counter(MetricNames.REACHED_GLOBAL_CAP).inc();
             return false;
         }
+        int newPodTemplateCount =
+                tryAdd(counter(podTemplateCounts, podTemplate.getId()), numExecutors, podTemplate.getInstanceCap());
+        if (newPodTemplateCount < 0) {
+            // give back the cloud slot reserved above
+            cloudCount.addAndGet(-numExecutors);
+            LOGGER.log(
+                    Level.FINEST,
+                    () -> podTemplate.getName() + " template limit reached: "
+                            + getPodTemplateCount(podTemplate.getId()) + "/" + podTemplate.getInstanceCap()
+                            + ". Cannot add " + numExecutors + " more!");
+            Metrics.metricRegistry().counter(MetricNames.REACHED_POD_CAP).inc();
+            return false;
+        }
+        LOGGER.log(
+                Level.FINEST, () -> cloud.name + " global limit: " + newGlobalCount + "/" + cloud.getContainerCap());
+        LOGGER.log(
+                Level.FINEST,
+                () -> podTemplate.getName() + " template limit: " + newPodTemplateCount + "/"
+                        + podTemplate.getInstanceCap());
+        return true;
     }
 
     /**
@@ -123,46 +114,88 @@ public final class KubernetesProvisioningLimits {
      */
     public void unregister(@NonNull KubernetesCloud cloud, @NonNull PodTemplate podTemplate, int numExecutors) {
         if (initInstance()) {
-            synchronized (this) {
-                int newGlobalCount = getGlobalCount(cloud.name) - numExecutors;
-                if (newGlobalCount < 0) {
-                    LOGGER.log(
-                            Level.WARNING,
-                            "Global count for " + cloud.name
-                                    + " went below zero. There is likely a bug in kubernetes-plugin");
-                }
-                cloudCounts.put(cloud.name, Math.max(0, newGlobalCount));
+            int newGlobalCount = release(counter(cloudCounts, cloud.name), numExecutors);
+            if (newGlobalCount < 0) {
                 LOGGER.log(
-                        Level.FINEST,
-                        () -> cloud.name + " global limit: " + Math.max(0, newGlobalCount) + "/"
-                                + cloud.getContainerCap());
-
-                int newPodTemplateCount = getPodTemplateCount(podTemplate.getId()) - numExecutors;
-                if (newPodTemplateCount < 0) {
-                    LOGGER.log(
-                            Level.WARNING,
-                            "Pod template count for " + podTemplate.getName()
-                                    + " went below zero. There is likely a bug in kubernetes-plugin");
-                }
-                podTemplateCounts.put(podTemplate.getId(), Math.max(0, newPodTemplateCount));
+                        Level.WARNING,
+                        "Global count for " + cloud.name
+                                + " went below zero. There is likely a bug in kubernetes-plugin");
+            }
+            LOGGER.log(
+                    Level.FINEST,
+                    () -> cloud.name + " global limit: " + Math.max(0, newGlobalCount) + "/"
+                            + cloud.getContainerCap());
+
+            int newPodTemplateCount = release(counter(podTemplateCounts, podTemplate.getId()), numExecutors);
+            if (newPodTemplateCount < 0) {
                 LOGGER.log(
-                        Level.FINEST,
-                        () -> podTemplate.getName() + " template limit: " + Math.max(0, newPodTemplateCount) + "/"
-                                + podTemplate.getInstanceCap());
+                        Level.WARNING,
+                        "Pod template count for " + podTemplate.getName()
+                                + " went below zero. There is likely a bug in kubernetes-plugin");
+            }
+            LOGGER.log(
+                    Level.FINEST,
+                    () -> podTemplate.getName() + " template limit: " + Math.max(0, newPodTemplateCount) + "/"
+                            + podTemplate.getInstanceCap());
+        }
+    }
+
+    private static AtomicInteger counter(ConcurrentMap<String, AtomicInteger> counts, String key) {
+        return counts.computeIfAbsent(key, k -> new AtomicInteger());
+    }
+
+    /**
+     * Atomically adds to the counter, unless the result would exceed the cap.
+     * @return the new value, or -1 if the cap would be exceeded
+     */
+    private static int tryAdd(AtomicInteger counter, int delta, int cap) {
+        while (true) {
+            int current = counter.get();
+            long next = (long) current + delta;
+            if (next > cap) {
+                return -1;
+            }
+            if (counter.compareAndSet(current, (int) next)) {
+                return (int) next;
             }
         }
     }
 
+    /**
+     * Atomically subtracts from the counter, without going below zero.
+     * @return the new value before being capped at zero
+     */
+    private static int release(AtomicInteger counter, int delta) {
+        while (true) {
+            int current = counter.get();
+            int next = current - delta;
+            if (counter.compareAndSet(current, Math.max(0, next))) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * @param cloud the kubernetes cloud
+     * @return how many more executors can be registered on the cloud before reaching its container cap
+     */
+    public int getRemainingCapacity(@NonNull KubernetesCloud cloud) {
+        initInstance();
+        return Math.max(0, cloud.getContainerCap() - getGlobalCount(cloud.name));
+    }
+
     @NonNull
     @Restricted(NoExternalUse.class)
     int getGlobalCount(String cloudName) {
-        return cloudCounts.getOrDefault(cloudName, 0);
+        AtomicInteger count = cloudCounts.get(cloudName);
+        return count == null ? 0 : count.get();
     }
 
     @NonNull
     @Restricted(NoExternalUse.class)
     int getPodTemplateCount(String podTemplate) {
-        return podTemplateCounts.getOrDefault(podTemplate, 0);
+        AtomicInteger count = podTemplateCounts.get(podTemplate);
+        return count == null ? 0 : count.get();
     }
 
     @Extension
@@ -30,6 +30,7 @@ import io.fabric8.kubernetes.api.model.Container;
 import io.fabric8.kubernetes.api.model.Pod;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.informers.SharedIndexInformer;
 import io.fabric8.kubernetes.client.utils.Serialization;
 import java.io.IOException;
 import java.time.Instant;
@@ -282,9 +283,14 @@ public class KubernetesSlave extends AbstractCloudSlave {
         if (p == null) {
             // if jenkins restarts the transient pod reference may not be available
             try {
-                p = getKubernetesCloud()
-                        .getPodResource(getNamespace(), getPodName())
-                        .get();
+                KubernetesCloud cloud = getKubernetesCloud();
+                if (KubernetesCloud.SHARED_POD_INFORMERS) {
+                    SharedIndexInformer<Pod> informer = cloud.getSyncedPodInformer(getNamespace());
+                    p = informer != null ? informer.getStore().getByKey(getNamespace() + "/" + getPodName()) : null;
+                }
+                if (p == null) {
+                    p = cloud.getPodResource(getNamespace(), getPodName()).get();
+                }
                 if (p != null) {
                     assignPod(p);
                     return Optional.of(p);
@@ -0,0 +1,42 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.model.Node;
+import java.util.Objects;
+import jenkins.model.Jenkins;
+
+/**
+ * Looks up {@link KubernetesSlave} by pod, to dispatch pod events without going through all Jenkins nodes.
+ * <p>
+ * The pod of an agent is named after its node, so the node map of Jenkins already indexes agents by pod name.
+ * The namespace is only checked afterwards, as it is only known once the agent is launched.
+ */
+@Extension
+public class KubernetesSlaveIndex {
+
+    public static KubernetesSlaveIndex get() {
+        return ExtensionList.lookupSingleton(KubernetesSlaveIndex.class);
+    }
+
+    /**
+     * Finds the agent running in the given pod.
+     * @param namespace pod namespace
+     * @param podName pod name
+     * @return the agent, or null if the pod does not belong to any agent of this Jenkins instance
+     */
+    @CheckForNull
+    public KubernetesSlave getAgent(@CheckForNull String namespace, @CheckForNull String podName) {
+        if (podName == null) {
+            return null;
+        }
+        Node node = Jenkins.get().getNode(podName);
+        if (node instanceof KubernetesSlave agent
+                && podName.equals(agent.getPodName())
+                && Objects.equals(agent.getNamespace(), namespace)) {
+            return agent;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,111 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import jenkins.util.SystemProperties;
+
+/**
+ * Tracks the recent outcome of agent launches per kubernetes cloud.
+ * Outcomes decay exponentially with time, so that a cloud which stopped failing is no longer penalized.
+ */
+@Extension
+public final class LaunchStatistics {
+
+    /**
+     * Time after which the weight of a launch outcome is halved.
+     */
+    private static final long HALF_LIFE_NANOS = TimeUnit.SECONDS.toNanos(
+            SystemProperties.getLong(LaunchStatistics.class.getName() + ".halfLifeSeconds", 300L));
+
+    private final ConcurrentMap<String, Outcomes> outcomes = new ConcurrentHashMap<>();
+
+    /**
+     * @return the singleton instance
+     */
+    public static LaunchStatistics get() {
+        return ExtensionList.lookupSingleton(LaunchStatistics.class);
+    }
+
+    /**
+     * Records an agent that connected.
+     * @param cloudName the cloud the agent was launched on
+     * @param launchMillis the time it took from the start of the launch
+     */
+    public void recordSuccess(@CheckForNull String cloudName, long launchMillis) {
+        if (cloudName == null) {
+            return;
+        }
+        outcomes.computeIfAbsent(cloudName, k -> new Outcomes()).record(false, launchMillis, System.nanoTime());
+    }
+
+    /**
+     * Records an agent that failed to launch.
+     * @param cloudName the cloud the agent was launched on
+     */
+    public void recordFailure(@CheckForNull String cloudName) {
+        if (cloudName == null) {
+            return;
+        }
+        outcomes.computeIfAbsent(cloudName, k -> new Outcomes()).record(true, -1, System.nanoTime());
+    }
+
+    /**
+     * @return the recent proportion of failed launches, between 0 and 1, 0 if there were none lately
+     */
+    public double getFailureRate(@NonNull String cloudName) {
+        Outcomes o = outcomes.get(cloudName);
+        return o == null ? 0 : o.failureRate(System.nanoTime());
+    }
+
+    /**
+     * @return the smoothed launch time of the agents that connected, or 0 if unknown
+     */
+    public long getLaunchMillis(@NonNull String cloudName) {
+        Outcomes o = outcomes.get(cloudName);
+        return o == null ? 0 : o.launchMillis();
+    }
+
+    static final class Outcomes {
+        private double failures;
+        private double total;
+        private long launchMillis;
+        private long updated;
+
+        synchronized void record(boolean failure, long millis, long now) {
+            decay(now);
+            total++;
+            if (failure) {
+                failures++;
+            } else {
+                launchMillis = launchMillis == 0 ? millis : (launchMillis * 7 + millis) / 8;
+            }
+        }
+
+        /**
+         * Uses one successful launch as a prior, so that a single failure does not exclude a cloud
+         * and the rate goes back to 0 as failures decay.
+         */
+        synchronized double failureRate(long now) {
+            decay(now);
+            return failures / (total + 1);
+        }
+
+        synchronized long launchMillis() {
+            return launchMillis;
+        }
+
+        private void decay(long now) {
+            if (updated != 0) {
+                double factor = Math.pow(0.5, (double) (now - updated) / HALF_LIFE_NANOS);
+                failures *= factor;
+                total *= factor;
+            }
+            updated = now;
+        }
+    }
+}
@@ -15,9 +15,37 @@ public class MetricNames {
     public static final String PROVISION_NODES = PREFIX + ".provision.nodes";
     public static final String PROVISION_FAILED = PREFIX + ".provision.failed";
     public static final String PODS_LAUNCHED = PREFIX + ".pods.launched";
+    public static final String YAML_CACHE_HITS = PREFIX + ".pods.yaml.cache.hits";
+    public static final String YAML_CACHE_MISSES = PREFIX + ".pods.yaml.cache.misses";
+    public static final String GC_DURATION = PREFIX + ".gc.duration";
+    public static final String GC_PODS_SCANNED = PREFIX + ".gc.pods.scanned";
+    public static final String GC_PODS_DELETED = PREFIX + ".gc.pods.deleted";
+    public static final String GC_PODS_DELETE_FAILED = PREFIX + ".gc.pods.delete.failed";
+    public static final String EXEC_CONNECT_DURATION = PREFIX + ".exec.connect.duration";
+    public static final String EXEC_CONNECT_RETRIES = PREFIX + ".exec.connect.retries";
+    public static final String EXEC_CONNECT_FAILURES = PREFIX + ".exec.connect.failures";
+    public static final String EXEC_POOL_HITS = PREFIX + ".exec.pool.hits";
+    public static final String EXEC_POOL_MISSES = PREFIX + ".exec.pool.misses";
+    public static final String WARM_POOL_LAUNCHED = PREFIX + ".warm.launched";
+    public static final String WARM_POOL_ADOPTED = PREFIX + ".warm.adopted";
+    public static final String FORECAST_PREDICTED = PREFIX + ".forecast.arrivals.predicted";
+    public static final String FORECAST_ACTUAL = PREFIX + ".forecast.arrivals.actual";
+    public static final String FORECAST_ERROR = PREFIX + ".forecast.arrivals.error";
+    public static final String FORECAST_AGENTS_USED = PREFIX + ".forecast.agents.used";
+    public static final String FORECAST_AGENTS_WASTED = PREFIX + ".forecast.agents.wasted";
+    public static final String BREAKER_OPENED = PREFIX + ".breaker.opened";
+    public static final String BREAKER_REJECTED = PREFIX + ".breaker.rejected";
 
     public static String metricNameForPodStatus(String status) {
         String formattedStatus = status == null ? "null" : status.toLowerCase(Locale.getDefault());
         return PREFIX + ".pods.launch.status." + formattedStatus;
     }
+
+    public static String metricNameForLaunchStage(String stage) {
+        return PREFIX + ".pods.launch.stage." + stage.toLowerCase(Locale.ROOT);
+    }
+
+    public static String metricNameForBreaker(String cloudName, String namespace) {
+        return PREFIX + ".breaker.state." + cloudName + "." + namespace;
+    }
 }
@@ -0,0 +1,325 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import io.fabric8.kubernetes.api.model.Quantity;
+import io.fabric8.kubernetes.api.model.ResourceQuota;
+import io.fabric8.kubernetes.api.model.ResourceQuotaSpec;
+import io.fabric8.kubernetes.api.model.ResourceQuotaStatus;
+import io.fabric8.kubernetes.client.informers.ResourceEventHandler;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.metrics.api.Metrics;
+import jenkins.util.SystemProperties;
+import jenkins.util.Timer;
+
+/**
+ * Holds back provisioning in a namespace of a cloud while pod creation keeps failing there because the namespace is
+ * saturated: resource quota exceeded or conflicting, or the API server failing.
+ * <p>
+ * After a few consecutive failures the breaker opens and no agent is provisioned in the namespace.
+ * Once its backoff has elapsed, or as soon as a resource quota of the namespace is raised or frees up resources it
+ * had exhausted, a single agent is provisioned to probe the namespace. The breaker closes if the probe pod gets
+ * created, otherwise it opens again for twice as long, up to a maximum.
+ * <p>
+ * The state of each breaker is exported as a gauge: 0 when closed, 1 when half-open and 2 when open.
+ */
+@Extension
+public final class PodCreationBreaker {
+
+    private static final Logger LOGGER = Logger.getLogger(PodCreationBreaker.class.getName());
+
+    /**
+     * Consecutive failures opening the breaker.
+     */
+    private static final int FAILURE_THRESHOLD =
+            SystemProperties.getInteger(PodCreationBreaker.class.getName() + ".failureThreshold", 3);
+
+    private static final long INITIAL_BACKOFF = TimeUnit.SECONDS.toNanos(
+            SystemProperties.getLong(PodCreationBreaker.class.getName() + ".initialBackoffSeconds", 10L));
+
+    private static final long MAX_BACKOFF = TimeUnit.SECONDS.toNanos(
+            SystemProperties.getLong(PodCreationBreaker.class.getName() + ".maxBackoffSeconds", 300L));
+
+    /** cloud name -> namespace -> breaker */
+    private final ConcurrentMap<String, ConcurrentMap<String, Breaker>> breakers = new ConcurrentHashMap<>();
+
+    /**
+     * @return the singleton instance
+     */
+    public static PodCreationBreaker get() {
+        return ExtensionList.lookupSingleton(PodCreationBreaker.class);
+    }
+
+    /**
+     * Records a pod creation failure due to the saturation of the namespace.
+     * @param cloud the cloud the pod was created on
+     * @param namespace the namespace of the pod
+     * @param quota whether the failure is due to a resource quota, whose changes are then watched
+     */
+    void recordFailure(@NonNull KubernetesCloud cloud, @NonNull String namespace, boolean quota) {
+        Breaker breaker = breaker(cloud.name, namespace);
+        if (breaker.recordFailure(System.nanoTime())) {
+            LOGGER.log(
+                    Level.WARNING,
+                    "Holding back provisioning in {0}/{1} after repeated pod creation failures",
+                    new Object[] {cloud.name, namespace});
+            Metrics.metricRegistry().counter(MetricNames.BREAKER_OPENED).inc();
+            if (quota) {
+                Timer.get().submit(() -> cloud.registerResourceQuotaInformer(namespace));
+            }
+        }
+    }
+
+    /**
+     * Records a pod created, closing the breaker of its namespace.
+     */
+    void recordSuccess(@CheckForNull String cloudName, @CheckForNull String namespace) {
+        if (cloudName == null || namespace == null) {
+            return;
+        }
+        Map<String, Breaker> cloudBreakers = breakers.get(cloudName);
+        Breaker breaker = cloudBreakers == null ? null : cloudBreakers.get(namespace);
+        if (breaker != null && breaker.recordSuccess()) {
+            LOGGER.log(Level.INFO, "Resuming provisioning in {0}/{1}", new Object[] {cloudName, namespace});
+        }
+    }
+
+    /**
+     * Lets a probe through as soon as possible, e.g. when the resource quotas of the namespace changed.
+     */
+    void halfOpen(@NonNull String cloudName, @NonNull String namespace) {
+        Map<String, Breaker> cloudBreakers = breakers.get(cloudName);
+        Breaker breaker = cloudBreakers == null ? null : cloudBreakers.get(namespace);
+        if (breaker != null) {
+            breaker.halfOpen(System.nanoTime());
+        }
+    }
+
+    /**
+     * @param cloud the cloud to provision agents on
+     * @param namespace the namespace of the agents, null for the default namespace of the cloud client
+     * @param wanted the number of agents to provision
+     * @return how many of them may be provisioned
+     */
+    int permits(@NonNull KubernetesCloud cloud, @CheckForNull String namespace, int wanted) {
+        Map<String, Breaker> cloudBreakers = breakers.get(cloud.name);
+        if (cloudBreakers == null) {
+            return wanted;
+        }
+        namespace = cloud.namespaceOrDefault(namespace);
+        if (namespace == null) {
+            return wanted;
+        }
+        Breaker breaker = cloudBreakers.get(namespace);
+        if (breaker == null) {
+            return wanted;
+        }
+        int permits = breaker.permits(System.nanoTime(), wanted);
+        if (permits < wanted) {
+            Metrics.metricRegistry().counter(MetricNames.BREAKER_REJECTED).inc(wanted - permits);
+        }
+        return permits;
+    }
+
+    /**
+     * Gives back permits that were not used, e.g. because the resource quotas or the limits of the cloud did not
+     * admit the agents, so that the probe of a half-open breaker is not spent without a pod being created.
+     * @param cloud the cloud passed to {@link #permits(KubernetesCloud, String, int)}
+     * @param namespace the namespace passed to {@link #permits(KubernetesCloud, String, int)}
+     * @param unused the number of permits granted but not used
+     */
+    void giveBack(@NonNull KubernetesCloud cloud, @CheckForNull String namespace, int unused) {
+        if (unused <= 0) {
+            return;
+        }
+        Map<String, Breaker> cloudBreakers = breakers.get(cloud.name);
+        namespace = cloud.namespaceOrDefault(namespace);
+        Breaker breaker = cloudBreakers == null || namespace == null ? null : cloudBreakers.get(namespace);
+        if (breaker != null) {
+            breaker.giveBack();
+        }
+    }
+
+    private Breaker breaker(String cloudName, String namespace) {
+        return breakers.computeIfAbsent(cloudName, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(namespace, k -> {
+                    Breaker breaker = new Breaker();
+                    Metrics.metricRegistry()
+                            .gauge(MetricNames.metricNameForBreaker(cloudName, namespace), () -> breaker::state);
+                    return breaker;
+                });
+    }
+
+    /**
+     * Circuit breaker of a namespace.
+     */
+    static final class Breaker {
+        static final int CLOSED = 0;
+        static final int HALF_OPEN = 1;
+        static final int OPEN = 2;
+
+        private int state = CLOSED;
+        /** consecutive failures while closed */
+        private int failures;
+        /** consecutive times the breaker opened without a success */
+        private int trips;
+        private long backoff;
+        private long openedAt;
+        private long openUntil;
+        /** when the last probe was let through while half-open, 0 if none */
+        private long probeAt;
+
+        /**
+         * @return whether the breaker opened
+         */
+        synchronized boolean recordFailure(long now) {
+            switch (state) {
+                case CLOSED:
+                    if (++failures < FAILURE_THRESHOLD) {
+                        return false;
+                    }
+                    break;
+                case HALF_OPEN:
+                    break;
+                default:
+                    // pods planned before the breaker opened
+                    return false;
+            }
+            trips++;
+            long base = Math.min(MAX_BACKOFF, INITIAL_BACKOFF << Math.min(trips - 1, 20));
+            // jitter so that the namespaces of a cloud are not probed all at once
+            backoff = (long) (base * (0.8 + 0.4 * ThreadLocalRandom.current().nextDouble()));
+            openedAt = now;
+            openUntil = now + backoff;
+            state = OPEN;
+            failures = 0;
+            return true;
+        }
+
+        /**
+         * @return whether the breaker closed
+         */
+        synchronized boolean recordSuccess() {
+            boolean closed = state != CLOSED;
+            state = CLOSED;
+            failures = 0;
+            trips = 0;
+            probeAt = 0;
+            return closed;
+        }
+
+        /**
+         * Half-opens the breaker early, but not before the initial backoff to bound the probes of a busy namespace.
+         */
+        synchronized void halfOpen(long now) {
+            if (state == OPEN && now - openedAt >= Math.min(backoff, INITIAL_BACKOFF)) {
+                state = HALF_OPEN;
+                probeAt = 0;
+            }
+        }
+
+        synchronized int permits(long now, int wanted) {
+            if (wanted <= 0) {
+                return 0;
+            }
+            if (state == OPEN && now - openUntil >= 0) {
+                state = HALF_OPEN;
+                probeAt = 0;
+            }
+            switch (state) {
+                case CLOSED:
+                    return wanted;
+                case HALF_OPEN:
+                    // let another probe through if the previous one never reported back
+                    if (probeAt == 0 || now - probeAt > backoff) {
+                        probeAt = now;
+                        return 1;
+                    }
+                    return 0;
+                default:
+                    return 0;
+            }
+        }
+
+        /**
+         * Lets the next caller probe again, the probe granted last having not been used.
+         */
+        synchronized void giveBack() {
+            if (state == HALF_OPEN) {
+                probeAt = 0;
+            }
+        }
+
+        synchronized int state() {
+            return state;
+        }
+    }
+
+    /**
+     * Half-opens the breaker of a namespace when one of its resource quotas may admit more pods: its hard limits
+     * changed, or the usage of a resource it exhausted dropped.
+     * The usage is updated on every pod created or deleted in the namespace, which alone is not worth a probe.
+     */
+    static final class QuotaEventHandler implements ResourceEventHandler<ResourceQuota> {
+        private final String cloudName;
+        private final String namespace;
+
+        QuotaEventHandler(String cloudName, String namespace) {
+            this.cloudName = cloudName;
+            this.namespace = namespace;
+        }
+
+        @Override
+        public void onAdd(ResourceQuota quota) {
+            // new quotas only restrict the namespace further
+        }
+
+        @Override
+        public void onUpdate(ResourceQuota oldQuota, ResourceQuota newQuota) {
+            if (mayAdmitMore(oldQuota, newQuota)) {
+                get().halfOpen(cloudName, namespace);
+            }
+        }
+
+        @Override
+        public void onDelete(ResourceQuota quota, boolean deletedFinalStateUnknown) {
+            get().halfOpen(cloudName, namespace);
+        }
+
+        static boolean mayAdmitMore(ResourceQuota oldQuota, ResourceQuota newQuota) {
+            if (!Objects.equals(hard(oldQuota.getSpec()), hard(newQuota.getSpec()))) {
+                return true;
+            }
+            ResourceQuotaStatus oldStatus = oldQuota.getStatus();
+            ResourceQuotaStatus newStatus = newQuota.getStatus();
+            if (oldStatus == null || newStatus == null || oldStatus.getHard() == null || oldStatus.getUsed() == null) {
+                return false;
+            }
+            Map<String, Quantity> newUsed = newStatus.getUsed() == null ? Map.of() : newStatus.getUsed();
+            for (Map.Entry<String, Quantity> entry : oldStatus.getHard().entrySet()) {
+                Quantity used = oldStatus.getUsed().get(entry.getKey());
+                if (used == null || used.getNumericalAmount().compareTo(entry.getValue().getNumericalAmount()) < 0) {
+                    continue;
+                }
+                Quantity nowUsed = newUsed.get(entry.getKey());
+                if (nowUsed == null || nowUsed.getNumericalAmount().compareTo(used.getNumericalAmount()) < 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static Map<String, Quantity> hard(ResourceQuotaSpec spec) {
+            return spec == null ? null : spec.getHard();
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import hudson.model.TaskListener;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.informers.SharedIndexInformer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.metrics.api.Metrics;
+import jenkins.util.SystemProperties;
+import org.csanchez.jenkins.plugins.kubernetes.watch.PodLaunchEventHandler;
+
+/**
+ * Launches an agent pod as a chain of asynchronous {@link Stage stages} run by a bounded shared pool,
+ * instead of blocking a launch thread for the whole pod lifecycle.
+ * <p>
+ * Waiting for the pod to be ready and for the agent to connect does not hold any thread: the state is re-checked
+ * on pod events and on the agent coming online, or on a timer as a fallback.
+ * Stages and checks, which may call the API server, run on the pool; the scheduler only fires the timers, so that
+ * a slow API server does not delay the checks of other launches.
+ * The duration of each stage is reported through {@link MetricNames#metricNameForLaunchStage(String)}.
+ *
+ * @see KubernetesLauncher
+ */
+class PodLaunchPipeline {
+
+    private static final Logger LOGGER = Logger.getLogger(PodLaunchPipeline.class.getName());
+
+    /**
+     * Maximum number of threads running the stages and checks of all launches.
+     */
+    private static final int THREADS = SystemProperties.getInteger(PodLaunchPipeline.class.getName() + ".threads", 32);
+
+    enum Stage {
+        BUILD,
+        CREATE,
+        VOLUMES,
+        READY,
+        CONNECTED;
+
+        String metricName() {
+            return MetricNames.metricNameForLaunchStage(name());
+        }
+    }
+
+    private final KubernetesLauncher launcher;
+    private final KubernetesComputer computer;
+    private final KubernetesSlave node;
+    private final TaskListener listener;
+    private final CompletableFuture<Void> connected = new CompletableFuture<>();
+    private final AtomicBoolean checking = new AtomicBoolean();
+    private volatile boolean checkRequested;
+
+    // Set by the stages, each of them running after the previous one completed
+    private PodTemplate template;
+    private KubernetesClient client;
+    private Pod pod;
+    private SharedIndexInformer<Pod> informer;
+    private KubernetesLauncher.AgentConnectWait wait;
+    private long waitStart;
+    private long readyAt;
+
+    private ScheduledFuture<?> nextCheck;
+
+    PodLaunchPipeline(
+            KubernetesLauncher launcher, KubernetesComputer computer, KubernetesSlave node, TaskListener listener) {
+        this.launcher = launcher;
+        this.computer = computer;
+        this.node = node;
+        this.listener = listener;
+    }
+
+    /**
+     * Starts the launch.
+     * @return a future completed once the agent is connected, or the launch failed and the node was terminated
+     */
+    CompletableFuture<Void> start() {
+        return run(Stage.BUILD, this::build)
+                .thenCompose(v -> run(Stage.CREATE, this::create))
+                .thenCompose(v -> run(Stage.VOLUMES, this::createVolumes))
+                .thenCompose(v -> awaitConnected())
+                .whenComplete(this::done);
+    }
+
+    private void build() throws Exception {
+        template = node.getTemplate();
+        KubernetesCloud cloud = node.getKubernetesCloud();
+        client = cloud.connect();
+        pod = launcher.buildPod(node, template, client, listener);
+        if (pod == null) {
+            throw new Aborted();
+        }
+        informer = launcher.registerPodInformer(cloud, node);
+    }
+
+    private void create() {
+        pod = launcher.createPod(client, informer, node, pod, listener);
+        computer.setLaunching(true);
+    }
+
+    private void createVolumes() {
+        launcher.createVolumes(client, template, pod);
+    }
+
+    private CompletableFuture<Void> awaitConnected() {
+        String namespace = node.getNamespace();
+        String podName = pod.getMetadata().getName();
+        waitStart = System.currentTimeMillis();
+        wait = launcher.agentConnectWait(informer, node, template, namespace, podName, listener, client);
+        PodLaunchEventHandler.register(namespace, podName, this::requestCheck);
+        requestCheck();
+        return connected;
+    }
+
+    /**
+     * Re-evaluates the pod and agent state. Never runs concurrently with itself.
+     */
+    private void check() {
+        if (connected.isDone() || !checking.compareAndSet(false, true)) {
+            return;
+        }
+        long delay;
+        try (ACLContext ctx = ACL.as2(ACL.SYSTEM2)) {
+            checkRequested = false;
+            boolean wasReady = wait.isReady();
+            boolean online = wait.check();
+            if (!wasReady && wait.isReady()) {
+                readyAt = record(Stage.READY, waitStart);
+            }
+            if (online) {
+                if (readyAt == 0) {
+                    readyAt = record(Stage.READY, waitStart);
+                }
+                record(Stage.CONNECTED, readyAt);
+                connected.complete(null);
+                return;
+            }
+            delay = wait.nextCheckDelay();
+        } catch (Throwable t) {
+            connected.completeExceptionally(t);
+            return;
+        } finally {
+            checking.set(false);
+        }
+        schedule(checkRequested ? 0 : delay);
+    }
+
+    private void requestCheck() {
+        checkRequested = true;
+        schedule(0);
+    }
+
+    private synchronized void schedule(long delay) {
+        if (connected.isDone()) {
+            return;
+        }
+        if (nextCheck != null) {
+            nextCheck.cancel(false);
+        }
+        nextCheck = ExecutorHolder.SCHEDULER.schedule(
+                () -> ExecutorHolder.WORKERS.execute(this::check), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void done(Void unused, Throwable t) {
+        if (pod != null) {
+            PodLaunchEventHandler.unregister(node.getNamespace(), pod.getMetadata().getName());
+        }
+        try (ACLContext ctx = ACL.as2(ACL.SYSTEM2)) {
+            if (t == null) {
+                launcher.onAgentConnected(computer, node);
+                return;
+            }
+            Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+            if (!(cause instanceof Aborted)) {
+                launcher.onLaunchFailure(node, cause);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, e, () -> "Failed to complete launch of " + node.getNodeName());
+        }
+    }
+
+    private CompletableFuture<Void> run(Stage stage, Step step) {
+        return CompletableFuture.runAsync(
+                () -> {
+                    long start = System.currentTimeMillis();
+                    try (ACLContext ctx = ACL.as2(ACL.SYSTEM2)) {
+                        step.run();
+                    } catch (RuntimeException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        throw new CompletionException(e);
+                    }
+                    record(stage, start);
+                },
+                ExecutorHolder.WORKERS);
+    }
+
+    private long record(Stage stage, long start) {
+        long now = System.currentTimeMillis();
+        Metrics.metricRegistry().timer(stage.metricName()).update(now - start, TimeUnit.MILLISECONDS);
+        LOGGER.log(Level.FINE, "Stage {0} of {1} took {2}ms", new Object[] {stage, node.getNodeName(), now - start});
+        return now;
+    }
+
+    private static final class ExecutorHolder {
+        /** fires timers only, never blocks */
+        private static final ScheduledExecutorService SCHEDULER = new ScheduledThreadPoolExecutor(
+                1,
+                new NamingThreadFactory(
+                        new DaemonThreadFactory(), PodLaunchPipeline.class.getSimpleName() + ".scheduler"));
+
+        private static final ExecutorService WORKERS;
+
+        static {
+            ThreadPoolExecutor workers = new ThreadPoolExecutor(
+                    THREADS,
+                    THREADS,
+                    60,
+                    TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(),
+                    new NamingThreadFactory(new DaemonThreadFactory(), PodLaunchPipeline.class.getSimpleName()));
+            workers.allowCoreThreadTimeOut(true);
+            WORKERS = workers;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Step {
+        void run() throws Exception;
+    }
+
+    /**
+     * The launch was stopped and already cleaned up by the failing stage.
+     */
+    private static final class Aborted extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+}
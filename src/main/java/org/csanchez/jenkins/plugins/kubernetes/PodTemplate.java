@@ -41,7 +41,9 @@ import jenkins.model.Jenkins;
 import net.sf.json.JSONObject;
 import org.apache.commons.lang.StringUtils;
 import org.csanchez.jenkins.plugins.kubernetes.model.TemplateEnvVar;
+import org.csanchez.jenkins.plugins.kubernetes.pipeline.PodTemplateStepExecution;
 import org.csanchez.jenkins.plugins.kubernetes.pod.retention.PodRetention;
+import org.csanchez.jenkins.plugins.kubernetes.pod.yaml.ParsedYamlCache;
 import org.csanchez.jenkins.plugins.kubernetes.pod.yaml.YamlMergeStrategy;
 import org.csanchez.jenkins.plugins.kubernetes.volumes.PodVolume;
 import org.csanchez.jenkins.plugins.kubernetes.volumes.workspace.WorkspaceVolume;
@@ -139,6 +141,8 @@ public class PodTemplate extends AbstractDescribableImpl<PodTemplate> implements
 
     private int idleMinutes;
 
+    private int minIdle;
+
     private int activeDeadlineSeconds;
 
     private String label;
@@ -227,7 +231,7 @@ public class PodTemplate extends AbstractDescribableImpl<PodTemplate> implements
     private YamlMergeStrategy yamlMergeStrategy;
 
     public Pod getYamlsPod() {
-        return getResolvedYamlMergeStrategy().merge(getYamls());
+        return ParsedYamlCache.merge(getResolvedYamlMergeStrategy(), getYamls());
     }
 
     @CheckForNull
@@ -266,6 +270,21 @@ public class PodTemplate extends AbstractDescribableImpl<PodTemplate> implements
         recomputeLabelDerivedFields();
     }
 
+    /**
+     * Copies a template under another identity, without what ties it to the build that defined it.
+     */
+    PodTemplate copyForWarmPool(@NonNull String id, @NonNull String name) {
+        PodTemplate copy = new PodTemplate(this);
+        copy.id = id;
+        copy.listener = null;
+        copy.setName(name);
+        copy.setLabel(name);
+        copy.getAnnotations()
+                .removeIf(a -> PodTemplateStepExecution.POD_ANNOTATION_BUILD_URL.equals(a.getKey())
+                        || PodTemplateStepExecution.POD_ANNOTATION_RUN_URL.equals(a.getKey()));
+        return copy;
+    }
+
     @Deprecated
     public PodTemplate(String image, List<? extends PodVolume> volumes) {
         this(null, image, volumes);
@@ -432,6 +451,18 @@ public class PodTemplate extends AbstractDescribableImpl<PodTemplate> implements
         return idleMinutes;
     }
 
+    /**
+     * @return the number of idle agents to keep online ahead of builds, see {@link WarmPool}
+     */
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    @DataBoundSetter
+    public void setMinIdle(int minIdle) {
+        this.minIdle = Math.max(0, minIdle);
+    }
+
     @DataBoundSetter
     public void setActiveDeadlineSeconds(int i) {
         this.activeDeadlineSeconds = i;
@@ -1169,6 +1200,7 @@ public class PodTemplate extends AbstractDescribableImpl<PodTemplate> implements
                         ? ""
                         : ", slaveConnectTimeout=" + slaveConnectTimeout)
                 + (idleMinutes == 0 ? "" : ", idleMinutes=" + idleMinutes)
+                + (minIdle == 0 ? "" : ", minIdle=" + minIdle)
                 + (activeDeadlineSeconds == 0 ? "" : ", activeDeadlineSeconds=" + activeDeadlineSeconds)
                 + (label == null ? "" : ", label='" + label + '\'')
                 + (serviceAccount == null ? "" : ", serviceAccount='" + serviceAccount + '\'')
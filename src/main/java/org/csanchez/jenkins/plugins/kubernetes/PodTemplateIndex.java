@@ -0,0 +1,169 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.ExtensionList;
+import hudson.model.Label;
+import hudson.model.Node;
+import hudson.model.labels.LabelAtom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Snapshot of all the pod templates of a {@link KubernetesCloud}, indexed by id, name and label atom.
+ * <p>
+ * A snapshot stays valid as long as none of the {@link PodTemplateSource} changed. Sources tracking their changes
+ * through {@link PodTemplateSource#getVersion(KubernetesCloud)} are checked in constant time, others are compared
+ * by identity with the templates captured when the snapshot was built.
+ */
+final class PodTemplateIndex {
+
+    private final List<Entry> entries;
+    private final List<PodTemplate> all;
+    private final Map<String, PodTemplate> byId = new HashMap<>();
+    private final Map<String, PodTemplate> byName = new HashMap<>();
+    private final Map<String, List<PodTemplate>> byLabelAtom = new HashMap<>();
+    private final List<PodTemplate> normal = new ArrayList<>();
+    /**
+     * Templates matching label expressions, computed on first use.
+     */
+    private final Map<Label, List<PodTemplate>> byExpression = new ConcurrentHashMap<>();
+
+    private PodTemplateIndex(List<Entry> entries) {
+        this.entries = entries;
+        List<PodTemplate> all = new ArrayList<>();
+        for (Entry entry : entries) {
+            all.addAll(entry.templates);
+        }
+        this.all = Collections.unmodifiableList(all);
+        for (PodTemplate t : all) {
+            byId.putIfAbsent(t.getId(), t);
+            if (t.getName() != null) {
+                byName.putIfAbsent(t.getName(), t);
+            }
+            Set<LabelAtom> labelSet = t.getLabelSet();
+            if (labelSet != null) {
+                for (LabelAtom atom : labelSet) {
+                    byLabelAtom.computeIfAbsent(atom.getName(), k -> new ArrayList<>()).add(t);
+                }
+            }
+            if (t.getNodeUsageMode() == Node.Mode.NORMAL) {
+                normal.add(t);
+            }
+        }
+    }
+
+    /**
+     * Returns an index of the templates of the given cloud, reusing the given one if still current.
+     * @param cloud the cloud
+     * @param previous the previously built index, if any
+     * @return an index reflecting the current templates of the cloud
+     */
+    @NonNull
+    static PodTemplateIndex of(@NonNull KubernetesCloud cloud, @CheckForNull PodTemplateIndex previous) {
+        ExtensionList<PodTemplateSource> sources = ExtensionList.lookup(PodTemplateSource.class);
+        if (previous != null && previous.isCurrent(cloud, sources)) {
+            return previous;
+        }
+        List<Entry> entries = new ArrayList<>(sources.size());
+        for (PodTemplateSource source : sources) {
+            // read the version first, so that a concurrent change results in a stale index rather than a wrong one
+            long version = source.getVersion(cloud);
+            entries.add(new Entry(source, version, new ArrayList<>(source.getList(cloud))));
+        }
+        return new PodTemplateIndex(entries);
+    }
+
+    private boolean isCurrent(KubernetesCloud cloud, List<PodTemplateSource> sources) {
+        if (sources.size() != entries.size()) {
+            return false;
+        }
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            PodTemplateSource source = sources.get(i);
+            if (entry.source != source) {
+                return false;
+            }
+            if (entry.version >= 0) {
+                if (source.getVersion(cloud) != entry.version) {
+                    return false;
+                }
+            } else if (!sameTemplates(entry.templates, source.getList(cloud))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameTemplates(List<PodTemplate> a, List<PodTemplate> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (a.get(i) != b.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return all templates, in the order of {@link PodTemplateSource#getAll(KubernetesCloud)}
+     */
+    @NonNull
+    List<PodTemplate> getAll() {
+        return all;
+    }
+
+    @CheckForNull
+    PodTemplate getById(@NonNull String id) {
+        return byId.get(id);
+    }
+
+    @CheckForNull
+    PodTemplate getByName(@CheckForNull String name) {
+        return name == null ? null : byName.get(name);
+    }
+
+    /**
+     * Returns the templates matching the given label, preserving their order.
+     * @param label the label, or null for templates accepting any job
+     * @return the matching templates, read-only
+     */
+    @NonNull
+    List<PodTemplate> getMatching(@CheckForNull Label label) {
+        if (label == null) {
+            return Collections.unmodifiableList(normal);
+        }
+        if (label instanceof LabelAtom) {
+            return Collections.unmodifiableList(
+                    byLabelAtom.getOrDefault(((LabelAtom) label).getName(), Collections.emptyList()));
+        }
+        return byExpression.computeIfAbsent(label, l -> {
+            List<PodTemplate> result = new ArrayList<>();
+            for (PodTemplate t : all) {
+                if (l.matches(t.getLabelSet())) {
+                    result.add(t);
+                }
+            }
+            return Collections.unmodifiableList(result);
+        });
+    }
+
+    private static final class Entry {
+        final PodTemplateSource source;
+        final long version;
+        final List<PodTemplate> templates;
+
+        Entry(PodTemplateSource source, long version, List<PodTemplate> templates) {
+            this.source = source;
+            this.version = version;
+            this.templates = templates;
+        }
+    }
+}
@@ -26,4 +26,14 @@ public abstract class PodTemplateSource implements ExtensionPoint {
      */
     @NonNull
     protected abstract List<PodTemplate> getList(@NonNull KubernetesCloud cloud);
+
+    /**
+     * A number that changes whenever the list returned by {@link #getList(KubernetesCloud)} changes,
+     * allowing {@link KubernetesCloud} to reuse its template lookup index without listing the templates again.
+     * @param cloud the cloud
+     * @return the current version, or a negative number if this implementation does not track its changes
+     */
+    protected long getVersion(@NonNull KubernetesCloud cloud) {
+        return -1;
+    }
 }
@@ -0,0 +1,107 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import jenkins.util.SystemProperties;
+
+/**
+ * Memoizes {@link PodTemplateUtils#unwrap(PodTemplate, String, Collection)}.
+ * <p>
+ * An entry is reused as long as the template resolves to the same ancestors, compared by identity.
+ * Pod templates are replaced rather than modified when reconfigured, so any change to the inheritance chain
+ * results in a recomputation.
+ * Entries are dropped once the template they were computed for is garbage collected.
+ */
+final class PodTemplateUnwrapCache {
+
+    private static final long MAX_SIZE =
+            SystemProperties.getLong(PodTemplateUnwrapCache.class.getName() + ".maxSize", 1000L);
+
+    private static final Cache<PodTemplate, Entry> CACHE =
+            Caffeine.newBuilder().weakKeys().maximumSize(MAX_SIZE).build();
+
+    private PodTemplateUnwrapCache() {}
+
+    /**
+     * Unwraps the hierarchy of the given template, reusing a previous result if its ancestors did not change.
+     * @param template the template to unwrap
+     * @param defaultProviderTemplate the name of the template that provides the default values
+     * @param byName looks up a template by name, consistently with {@link PodTemplateUtils#getTemplateByName(String, Collection)}
+     * @param allTemplates all the known templates
+     * @return the unwrapped template
+     */
+    static PodTemplate unwrap(
+            @CheckForNull PodTemplate template,
+            @CheckForNull String defaultProviderTemplate,
+            @NonNull Function<String, PodTemplate> byName,
+            @NonNull Collection<PodTemplate> allTemplates) {
+        if (template == null) {
+            return null;
+        }
+        List<PodTemplate> ancestors = new ArrayList<>();
+        collectAncestors(template, defaultProviderTemplate, byName, ancestors);
+        if (ancestors.isEmpty()) {
+            return template;
+        }
+        Entry entry = CACHE.getIfPresent(template);
+        if (entry != null && entry.matches(defaultProviderTemplate, ancestors)) {
+            return entry.unwrapped;
+        }
+        PodTemplate unwrapped = PodTemplateUtils.unwrap(template, defaultProviderTemplate, allTemplates);
+        if (unwrapped != template) {
+            // an entry referencing its own key would never be collected
+            CACHE.put(template, new Entry(defaultProviderTemplate, ancestors, unwrapped));
+        }
+        return unwrapped;
+    }
+
+    /**
+     * Lists the ancestors in the order {@link PodTemplateUtils#unwrap(PodTemplate, String, Collection)} visits them,
+     * with {@code null} for names not resolving to any template.
+     */
+    private static void collectAncestors(
+            PodTemplate template,
+            String defaultProviderTemplate,
+            Function<String, PodTemplate> byName,
+            List<PodTemplate> ancestors) {
+        for (String name : PodTemplateUtils.computedInheritFrom(template, defaultProviderTemplate)) {
+            PodTemplate next = byName.apply(name);
+            ancestors.add(next);
+            if (next != null) {
+                collectAncestors(next, null, byName, ancestors);
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final String defaultProviderTemplate;
+        private final List<PodTemplate> ancestors;
+        private final PodTemplate unwrapped;
+
+        Entry(String defaultProviderTemplate, List<PodTemplate> ancestors, PodTemplate unwrapped) {
+            this.defaultProviderTemplate = defaultProviderTemplate;
+            this.ancestors = ancestors;
+            this.unwrapped = unwrapped;
+        }
+
+        boolean matches(String defaultProviderTemplate, List<PodTemplate> ancestors) {
+            if (!Objects.equals(this.defaultProviderTemplate, defaultProviderTemplate)
+                    || this.ancestors.size() != ancestors.size()) {
+                return false;
+            }
+            for (int i = 0; i < ancestors.size(); i++) {
+                if (this.ancestors.get(i) != ancestors.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -492,6 +492,8 @@ public class PodTemplateUtils {
                 PodTemplate::getSlaveConnectTimeout,
                 i -> Objects.equals(i, PodTemplate.DEFAULT_SLAVE_JENKINS_CONNECTION_TIMEOUT)));
         podTemplate.setIdleMinutes(h.resolve(PodTemplate::getIdleMinutes, i -> Objects.equals(i, 0)));
+        // the pool is the one of the template itself, not of its parents
+        podTemplate.setMinIdle(template.getMinIdle());
         podTemplate.setActiveDeadlineSeconds(
                 h.resolve(PodTemplate::getActiveDeadlineSeconds, i -> Objects.equals(i, 0)));
         podTemplate.setServiceAccount(h.resolve(PodTemplate::getServiceAccount, PodTemplateUtils::isNullOrEmpty));
@@ -577,7 +579,7 @@ public class PodTemplateUtils {
         }
     }
 
-    private static List<String> computedInheritFrom(PodTemplate template, String defaultProviderTemplate) {
+    static List<String> computedInheritFrom(PodTemplate template, String defaultProviderTemplate) {
         List<String> hierarchy = new ArrayList<>();
         if (!isNullOrEmpty(defaultProviderTemplate)) {
             hierarchy.add(defaultProviderTemplate);
@@ -0,0 +1,267 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.model.Label;
+import hudson.model.Queue;
+import hudson.model.queue.QueueListener;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.metrics.api.Metrics;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+
+/**
+ * Forecasts the demand of the pod templates from the history of their queue arrivals, so that {@link WarmPool}
+ * launches agents ahead of periodic bursts such as nightly jobs.
+ * <p>
+ * Arrivals are counted per template in buckets of a few minutes over the last week.
+ * The arrivals expected in a bucket are the average of the same bucket over the previous days.
+ * Following Little's law, the agents needed are the expected arrival rate multiplied by the time an agent is busy
+ * for a build, from the start of its launch to the end of the build.
+ * <p>
+ * The forecast is scaled down when too many of the agents launched for it end up unused,
+ * as configured by the waste budget, and back up when they are used.
+ */
+@Extension
+public final class QueueForecast {
+
+    private static final Logger LOGGER = Logger.getLogger(QueueForecast.class.getName());
+
+    static final boolean ENABLED = SystemProperties.getBoolean(QueueForecast.class.getName() + ".enabled", false);
+
+    /**
+     * Proportion of the agents launched ahead of the forecast demand that may end up unused.
+     */
+    private static final double WASTE_BUDGET =
+            Double.parseDouble(SystemProperties.getString(QueueForecast.class.getName() + ".wasteBudget", "0.2"));
+
+    static final long BUCKET_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    static final int BUCKETS_PER_DAY = (int) (TimeUnit.DAYS.toMillis(1) / BUCKET_MILLIS);
+    static final int DAYS = 7;
+
+    /** launch time assumed for clouds without launch statistics yet */
+    private static final long DEFAULT_LAUNCH_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final ConcurrentMap<String, Series> series = new ConcurrentHashMap<>();
+
+    /**
+     * @return the singleton instance
+     */
+    public static QueueForecast get() {
+        return ExtensionList.lookupSingleton(QueueForecast.class);
+    }
+
+    /**
+     * Records a build queued for the given template.
+     */
+    void recordArrival(@NonNull PodTemplate template) {
+        series.computeIfAbsent(template.getId(), k -> new Series()).recordArrival(System.currentTimeMillis());
+    }
+
+    /**
+     * Records the duration of a build on an agent of the given template, if its arrivals are recorded.
+     */
+    void recordDuration(@NonNull String templateId, long durationMillis) {
+        Series s = series.get(templateId);
+        if (s != null) {
+            s.recordDuration(durationMillis);
+        }
+    }
+
+    /**
+     * Records whether an agent launched for the forecast was used by a build before being removed.
+     */
+    void recordOutcome(@NonNull String templateId, boolean used) {
+        Metrics.metricRegistry()
+                .counter(used ? MetricNames.FORECAST_AGENTS_USED : MetricNames.FORECAST_AGENTS_WASTED)
+                .inc();
+        Series s = series.get(templateId);
+        if (s != null) {
+            s.recordOutcome(used);
+        }
+    }
+
+    /**
+     * @param cloud the cloud of the template
+     * @param template a pod template
+     * @param busy the number of agents of the template currently running builds
+     * @return the number of idle agents to keep for the demand expected soon
+     */
+    int getIdleTarget(@NonNull KubernetesCloud cloud, @NonNull PodTemplate template, int busy) {
+        if (!ENABLED) {
+            return 0;
+        }
+        Series s = series.get(template.getId());
+        if (s == null) {
+            return 0;
+        }
+        long launchMillis = LaunchStatistics.get().getLaunchMillis(cloud.name);
+        if (launchMillis <= 0) {
+            launchMillis = DEFAULT_LAUNCH_MILLIS;
+        }
+        int needed = s.agentsNeeded(System.currentTimeMillis(), launchMillis);
+        int target = Math.max(0, needed - busy);
+        LOGGER.log(Level.FINER, "Forecast for {0}: {1} agents needed, {2} busy", new Object[] {
+            template.getName(), needed, busy
+        });
+        return target;
+    }
+
+    /**
+     * Arrivals and outcomes of a pod template.
+     */
+    static final class Series {
+        /** arrivals per bucket, as a ring over the last days */
+        private final int[] buckets = new int[BUCKETS_PER_DAY * DAYS];
+        /** absolute index of the current bucket, -1 before the first arrival */
+        private long current = -1;
+        /** absolute index of the first bucket recorded */
+        private long first;
+        /** arrivals forecast for the current bucket, negative if there was no history for it */
+        private double predicted = -1;
+        /** smoothed build duration */
+        private long durationMillis;
+        /** scale of the forecast, adjusted to the waste budget */
+        private double gain = 1;
+        /** decayed counts of the outcomes of the agents launched for the forecast */
+        private double used;
+        private double wasted;
+
+        synchronized void recordArrival(long now) {
+            advance(now / BUCKET_MILLIS);
+            buckets[index(current)]++;
+        }
+
+        synchronized void recordDuration(long millis) {
+            durationMillis = durationMillis == 0 ? millis : (durationMillis * 7 + millis) / 8;
+        }
+
+        synchronized void recordOutcome(boolean wasUsed) {
+            used *= 0.95;
+            wasted *= 0.95;
+            if (wasUsed) {
+                used++;
+            } else {
+                wasted++;
+            }
+            if (wasted / (used + wasted) > WASTE_BUDGET) {
+                gain = Math.max(0.1, gain * 0.8);
+            } else {
+                gain = Math.min(1, gain * 1.05);
+            }
+        }
+
+        /**
+         * @param now the current time
+         * @param launchMillis the time it takes to launch an agent
+         * @return the number of agents needed for the expected demand, 0 without history
+         */
+        synchronized int agentsNeeded(long now, long launchMillis) {
+            if (current < 0) {
+                return 0;
+            }
+            advance(now / BUCKET_MILLIS);
+            double next = forecast(current + 1);
+            if (predicted < 0 && next < 0) {
+                return 0;
+            }
+            // arrivals expected in the current and the next bucket
+            double arrivals = Math.max(0, predicted) + Math.max(0, next);
+            long busyMillis = launchMillis + (durationMillis > 0 ? durationMillis : BUCKET_MILLIS);
+            return (int) Math.ceil(gain * arrivals * busyMillis / (2 * BUCKET_MILLIS));
+        }
+
+        synchronized double getGain() {
+            return gain;
+        }
+
+        /**
+         * Moves on to the given bucket, comparing the forecast of the buckets left behind to their arrivals.
+         */
+        private void advance(long bucket) {
+            if (current < 0) {
+                current = first = bucket;
+                return;
+            }
+            if (bucket - current > buckets.length) {
+                // idle for longer than the history, nothing to compare
+                Arrays.fill(buckets, 0);
+                current = bucket;
+                predicted = forecast(bucket);
+                return;
+            }
+            while (current < bucket) {
+                if (predicted >= 0) {
+                    int actual = buckets[index(current)];
+                    long expected = Math.round(predicted);
+                    Metrics.metricRegistry().counter(MetricNames.FORECAST_PREDICTED).inc(expected);
+                    Metrics.metricRegistry().counter(MetricNames.FORECAST_ACTUAL).inc(actual);
+                    Metrics.metricRegistry().histogram(MetricNames.FORECAST_ERROR).update(Math.abs(actual - expected));
+                }
+                current++;
+                buckets[index(current)] = 0;
+                predicted = forecast(current);
+            }
+        }
+
+        /**
+         * @return the average arrivals in the same bucket of the previous days, or -1 without history
+         */
+        double forecast(long bucket) {
+            int sum = 0;
+            int days = 0;
+            for (int day = 1; day <= DAYS; day++) {
+                long past = bucket - (long) day * BUCKETS_PER_DAY;
+                if (past < first || past <= current - buckets.length || past > current) {
+                    continue;
+                }
+                sum += buckets[index(past)];
+                days++;
+            }
+            return days == 0 ? -1 : (double) sum / days;
+        }
+
+        private int index(long bucket) {
+            return (int) (bucket % buckets.length);
+        }
+    }
+
+    /**
+     * Records the arrivals of the items that a pod template of a kubernetes cloud would be provisioned for.
+     */
+    @Extension
+    public static class QueueListenerImpl extends QueueListener {
+        @Override
+        public void onEnterBuildable(Queue.BuildableItem item) {
+            if (!ENABLED) {
+                return;
+            }
+            PodTemplate template = templateFor(item.getAssignedLabel());
+            if (template != null) {
+                get().recordArrival(template);
+            }
+        }
+
+        /**
+         * @return the configured template that provisioning would use for the label, if any
+         */
+        @CheckForNull
+        private static PodTemplate templateFor(@CheckForNull Label label) {
+            for (KubernetesCloud cloud : Jenkins.get().clouds.getAll(KubernetesCloud.class)) {
+                for (PodTemplate template : cloud.getTemplatesFor(label)) {
+                    if (cloud.getTemplates().contains(template)) {
+                        return template;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+}
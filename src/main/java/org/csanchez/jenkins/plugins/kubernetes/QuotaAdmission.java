@@ -0,0 +1,401 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.model.Descriptor;
+import io.fabric8.kubernetes.api.model.Container;
+import io.fabric8.kubernetes.api.model.LimitRange;
+import io.fabric8.kubernetes.api.model.LimitRangeItem;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.Quantity;
+import io.fabric8.kubernetes.api.model.ResourceQuota;
+import io.fabric8.kubernetes.api.model.ResourceRequirements;
+import io.fabric8.kubernetes.client.informers.ResourceEventHandler;
+import io.fabric8.kubernetes.client.informers.SharedIndexInformer;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.util.SystemProperties;
+import jenkins.util.Timer;
+
+/**
+ * Admits only as many agents as the resource quotas of their namespace can still hold, so that builds wait in the
+ * queue rather than going through pods rejected on creation.
+ * <p>
+ * The resources a pod of a template needs are computed from the pod built by {@link PodTemplateBuilder}, with the
+ * defaults of the limit ranges of the namespace applied to containers not setting them.
+ * Resource quotas and limit ranges are read from informers registered on first use, agents being admitted until
+ * the informers are synced.
+ * The resources of the agents admitted are reserved until their pod is created, or for a minute at most.
+ * <p>
+ * Quotas with scopes are ignored, as whether they apply depends on the pod.
+ */
+@Extension
+public final class QuotaAdmission {
+
+    private static final Logger LOGGER = Logger.getLogger(QuotaAdmission.class.getName());
+
+    static final boolean ENABLED = SystemProperties.getBoolean(QuotaAdmission.class.getName() + ".enabled", false);
+
+    private static final long RESERVATION_TIMEOUT = TimeUnit.MINUTES.toNanos(1);
+
+    /** quota resources, by the pod resource accounted for */
+    private static final Map<String, List<String>> QUOTA_RESOURCES = Map.of(
+            "cpu", List.of("requests.cpu", "cpu"),
+            "memory", List.of("requests.memory", "memory"),
+            "ephemeral-storage", List.of("requests.ephemeral-storage", "ephemeral-storage"));
+
+    /** resources the pods of a template need, by template */
+    private final Map<PodTemplate, Map<String, BigDecimal>> demands = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /** templates held back on the last admission */
+    private final Map<PodTemplate, Boolean> heldBack = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /** agents admitted whose pod is not created yet, by cloud and namespace */
+    private final ConcurrentMap<String, List<Reservation>> reservations = new ConcurrentHashMap<>();
+
+    /** clouds and namespaces whose informers are being registered */
+    private final Set<String> registering = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @return the singleton instance
+     */
+    public static QuotaAdmission get() {
+        return ExtensionList.lookupSingleton(QuotaAdmission.class);
+    }
+
+    /**
+     * @param cloud the cloud to provision agents on
+     * @param template the unwrapped template of the agents
+     * @param namespace the namespace of the agents, null for the default namespace of the cloud client
+     * @param wanted the number of agents to provision
+     * @return how many of them fit in the resource quotas of the namespace
+     */
+    int admit(
+            @NonNull KubernetesCloud cloud, @NonNull PodTemplate template, @CheckForNull String namespace, int wanted) {
+        if (!ENABLED || wanted <= 0) {
+            return wanted;
+        }
+        namespace = cloud.namespaceOrDefault(namespace);
+        if (namespace == null) {
+            return wanted;
+        }
+        SharedIndexInformer<ResourceQuota> quotas = cloud.getSyncedResourceQuotaInformer(namespace);
+        if (quotas == null || cloud.getSyncedLimitRangeInformer(namespace) == null) {
+            registerInformers(cloud, namespace);
+        }
+        if (quotas == null) {
+            return wanted;
+        }
+        List<ResourceQuota> quotaList = quotas.getStore().list();
+        if (quotaList.isEmpty()) {
+            return wanted;
+        }
+        Map<String, BigDecimal> demand = demand(cloud, template, namespace);
+        if (demand == null) {
+            return wanted;
+        }
+        StringBuilder limiting = new StringBuilder();
+        int fit = fit(quotaList, demand, reserved(cloud.name, namespace), limiting);
+        int admitted = Math.min(wanted, fit);
+        report(cloud, template, namespace, wanted, admitted, limiting.toString());
+        return admitted;
+    }
+
+    /**
+     * Reserves the resources of agents admitted, until their pod is created.
+     */
+    void reserve(@NonNull KubernetesCloud cloud, @NonNull PodTemplate template, @CheckForNull String namespace, int n) {
+        if (!ENABLED || n <= 0) {
+            return;
+        }
+        namespace = cloud.namespaceOrDefault(namespace);
+        Map<String, BigDecimal> demand = demands.get(template);
+        if (namespace == null || demand == null) {
+            return;
+        }
+        List<Reservation> list = reservations.computeIfAbsent(key(cloud.name, namespace), k -> new ArrayList<>());
+        long expiry = System.nanoTime() + RESERVATION_TIMEOUT;
+        synchronized (list) {
+            for (int i = 0; i < n; i++) {
+                list.add(new Reservation(template.getId(), demand, expiry));
+            }
+        }
+    }
+
+    /**
+     * Releases the reservation of an agent, once its pod was created or failed to be.
+     */
+    void release(@CheckForNull String cloudName, @CheckForNull String namespace, @NonNull String templateId) {
+        List<Reservation> list = reservations.get(key(cloudName, namespace));
+        if (list == null) {
+            return;
+        }
+        synchronized (list) {
+            for (Iterator<Reservation> it = list.iterator(); it.hasNext(); ) {
+                if (it.next().templateId.equals(templateId)) {
+                    it.remove();
+                    return;
+                }
+            }
+        }
+    }
+
+    private Map<String, BigDecimal> reserved(String cloudName, String namespace) {
+        List<Reservation> list = reservations.get(key(cloudName, namespace));
+        Map<String, BigDecimal> reserved = new HashMap<>();
+        if (list == null) {
+            return reserved;
+        }
+        long now = System.nanoTime();
+        synchronized (list) {
+            list.removeIf(r -> now - r.expiry > 0);
+            for (Reservation r : list) {
+                r.demand.forEach((resource, amount) -> reserved.merge(resource, amount, BigDecimal::add));
+            }
+        }
+        return reserved;
+    }
+
+    private static String key(String cloudName, String namespace) {
+        return cloudName + "/" + namespace;
+    }
+
+    /**
+     * Registers the informers in the background, failed registrations being retried by the cloud after a delay.
+     */
+    private void registerInformers(KubernetesCloud cloud, String namespace) {
+        String key = key(cloud.name, namespace);
+        if (registering.add(key)) {
+            Timer.get().submit(() -> {
+                try {
+                    cloud.registerResourceQuotaInformer(namespace);
+                    cloud.registerLimitRangeInformer(namespace);
+                } finally {
+                    registering.remove(key);
+                }
+            });
+        }
+    }
+
+    @CheckForNull
+    private Map<String, BigDecimal> demand(KubernetesCloud cloud, PodTemplate template, String namespace) {
+        Map<String, BigDecimal> demand = demands.get(template);
+        if (demand != null) {
+            return demand;
+        }
+        Pod pod;
+        try {
+            KubernetesSlave agent = KubernetesSlave.builder().podTemplate(template).cloud(cloud).build();
+            pod = new PodTemplateBuilder(template, agent).build();
+        } catch (IOException | Descriptor.FormException | RuntimeException e) {
+            LOGGER.log(Level.FINE, e, () -> "Cannot compute the resources needed by " + template.getName());
+            return null;
+        }
+        SharedIndexInformer<LimitRange> limitRanges = cloud.getSyncedLimitRangeInformer(namespace);
+        demand = demand(pod, limitRanges == null ? List.of() : limitRanges.getStore().list());
+        if (limitRanges != null) {
+            // otherwise computed again once the limit ranges are known
+            demands.put(template, demand);
+        }
+        return demand;
+    }
+
+    /**
+     * Computes the resources accounted to a pod by resource quotas, by quota resource name.
+     */
+    static Map<String, BigDecimal> demand(@NonNull Pod pod, @NonNull List<LimitRange> limitRanges) {
+        List<LimitRangeItem> defaults = new ArrayList<>();
+        for (LimitRange limitRange : limitRanges) {
+            if (limitRange.getSpec() != null && limitRange.getSpec().getLimits() != null) {
+                limitRange.getSpec().getLimits().stream()
+                        .filter(item -> "Container".equals(item.getType()))
+                        .forEach(defaults::add);
+            }
+        }
+        Map<String, BigDecimal> demand = new HashMap<>();
+        demand.put("pods", BigDecimal.ONE);
+        demand.put("count/pods", BigDecimal.ONE);
+        for (String resource : QUOTA_RESOURCES.keySet()) {
+            BigDecimal request = podAmount(pod, resource, defaults, true);
+            BigDecimal limit = podAmount(pod, resource, defaults, false);
+            if (request.signum() > 0) {
+                QUOTA_RESOURCES.get(resource).forEach(name -> demand.put(name, request));
+            }
+            if (limit.signum() > 0) {
+                demand.put("limits." + resource, limit);
+            }
+        }
+        return demand;
+    }
+
+    /**
+     * Like the scheduler: the sum over the containers, unless an init container needs more.
+     */
+    private static BigDecimal podAmount(Pod pod, String resource, List<LimitRangeItem> defaults, boolean request) {
+        BigDecimal sum = BigDecimal.ZERO;
+        for (Container container : pod.getSpec().getContainers()) {
+            sum = sum.add(containerAmount(container, resource, defaults, request));
+        }
+        if (pod.getSpec().getInitContainers() != null) {
+            for (Container container : pod.getSpec().getInitContainers()) {
+                sum = sum.max(containerAmount(container, resource, defaults, request));
+            }
+        }
+        return sum;
+    }
+
+    private static BigDecimal containerAmount(
+            Container container, String resource, List<LimitRangeItem> defaults, boolean request) {
+        ResourceRequirements resources = container.getResources();
+        Quantity limit = resources == null || resources.getLimits() == null
+                ? null
+                : resources.getLimits().get(resource);
+        if (limit == null) {
+            limit = defaultAmount(defaults, resource, false);
+        }
+        if (!request) {
+            return limit == null ? BigDecimal.ZERO : limit.getNumericalAmount();
+        }
+        Quantity amount = resources == null || resources.getRequests() == null
+                ? null
+                : resources.getRequests().get(resource);
+        if (amount == null) {
+            // the request defaults to the limit of the container, then to the default request of the namespace
+            Quantity own = resources == null || resources.getLimits() == null
+                    ? null
+                    : resources.getLimits().get(resource);
+            amount = own != null ? own : defaultAmount(defaults, resource, true);
+        }
+        if (amount == null) {
+            amount = limit;
+        }
+        return amount == null ? BigDecimal.ZERO : amount.getNumericalAmount();
+    }
+
+    @CheckForNull
+    private static Quantity defaultAmount(List<LimitRangeItem> defaults, String resource, boolean request) {
+        for (LimitRangeItem item : defaults) {
+            Map<String, Quantity> values = request ? item.getDefaultRequest() : item.getDefault();
+            if (values != null && values.get(resource) != null) {
+                return values.get(resource);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param limiting filled with the resource limiting the number of pods, if any
+     * @return the number of pods with the given demand that fit in the quotas
+     */
+    static int fit(
+            @NonNull List<ResourceQuota> quotas,
+            @NonNull Map<String, BigDecimal> demand,
+            @NonNull Map<String, BigDecimal> reserved,
+            @NonNull StringBuilder limiting) {
+        long fit = Integer.MAX_VALUE;
+        for (ResourceQuota quota : quotas) {
+            if (quota.getSpec() != null
+                    && ((quota.getSpec().getScopes() != null
+                                    && !quota.getSpec().getScopes().isEmpty())
+                            || quota.getSpec().getScopeSelector() != null)) {
+                continue;
+            }
+            if (quota.getStatus() == null || quota.getStatus().getHard() == null) {
+                // not accounted for yet
+                continue;
+            }
+            Map<String, Quantity> used = quota.getStatus().getUsed() == null
+                    ? Map.of()
+                    : quota.getStatus().getUsed();
+            for (Map.Entry<String, Quantity> hard : quota.getStatus().getHard().entrySet()) {
+                BigDecimal perPod = demand.get(hard.getKey());
+                if (perPod == null || perPod.signum() <= 0) {
+                    continue;
+                }
+                Quantity usedQuantity = used.get(hard.getKey());
+                BigDecimal free = hard.getValue()
+                        .getNumericalAmount()
+                        .subtract(usedQuantity == null ? BigDecimal.ZERO : usedQuantity.getNumericalAmount())
+                        .subtract(reserved.getOrDefault(hard.getKey(), BigDecimal.ZERO));
+                long pods = free.signum() <= 0
+                        ? 0
+                        : free.divide(perPod, 0, RoundingMode.FLOOR)
+                                .min(BigDecimal.valueOf(Integer.MAX_VALUE))
+                                .longValue();
+                if (pods < fit) {
+                    fit = pods;
+                    limiting.setLength(0);
+                    limiting.append(quota.getMetadata().getName()).append(' ').append(hard.getKey());
+                }
+            }
+        }
+        return (int) fit;
+    }
+
+    private void report(
+            KubernetesCloud cloud, PodTemplate template, String namespace, int wanted, int admitted, String limiting) {
+        boolean held = admitted < wanted;
+        Boolean wasHeld = held ? heldBack.put(template, true) : heldBack.remove(template);
+        if (held && wasHeld == null) {
+            String message = String.format(
+                    "Resource quota %s of namespace %s/%s only admits %d of %d agents for %s, keeping the rest queued",
+                    limiting, cloud.name, namespace, admitted, wanted, template.getName());
+            LOGGER.info(message);
+            template.getListener().getLogger().println(message);
+        } else if (!held && wasHeld != null) {
+            String message = String.format(
+                    "Resource quotas of namespace %s/%s admit the agents for %s again",
+                    cloud.name, namespace, template.getName());
+            LOGGER.info(message);
+            template.getListener().getLogger().println(message);
+        }
+    }
+
+    /**
+     * Computes the resources needed by the templates again when the limit ranges change.
+     */
+    static final class LimitRangeEventHandler implements ResourceEventHandler<LimitRange> {
+        @Override
+        public void onAdd(LimitRange limitRange) {
+            get().demands.clear();
+        }
+
+        @Override
+        public void onUpdate(LimitRange oldLimitRange, LimitRange newLimitRange) {
+            get().demands.clear();
+        }
+
+        @Override
+        public void onDelete(LimitRange limitRange, boolean deletedFinalStateUnknown) {
+            get().demands.clear();
+        }
+    }
+
+    private static final class Reservation {
+        final String templateId;
+        final Map<String, BigDecimal> demand;
+        final long expiry;
+
+        Reservation(String templateId, Map<String, BigDecimal> demand, long expiry) {
+            this.templateId = templateId;
+            this.demand = demand;
+            this.expiry = expiry;
+        }
+    }
+}
@@ -0,0 +1,466 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.Main;
+import hudson.Util;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Computer;
+import hudson.model.Descriptor;
+import hudson.model.Executor;
+import hudson.model.ExecutorListener;
+import hudson.model.Label;
+import hudson.model.Node;
+import hudson.model.Queue;
+import hudson.model.TaskListener;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import hudson.slaves.AbstractCloudComputer;
+import hudson.slaves.CloudRetentionStrategy;
+import hudson.slaves.NodeProvisioner;
+import hudson.slaves.RetentionStrategy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.metrics.api.Metrics;
+import jenkins.model.Jenkins;
+import jenkins.model.NodeListener;
+import jenkins.util.SystemProperties;
+import jenkins.util.Timer;
+import org.apache.commons.lang.StringUtils;
+import org.jenkinsci.plugins.durabletask.executors.OnceRetentionStrategy;
+
+/**
+ * Keeps idle agents launched ahead of builds for the pod templates defining {@link PodTemplate#getMinIdle()},
+ * so that builds do not wait for a pod to be scheduled and its agent to connect.
+ * <p>
+ * Warm agents are launched like any other agent of their template and count against the template and cloud limits.
+ * A build simply gets an idle warm agent with its label, and another one is launched in the background.
+ * <p>
+ * Pod templates defined in pipelines get a new label on each build. Their definition is remembered under a template
+ * of its own, and a warm agent is relabeled when a build provisions an identical definition.
+ * The definition is forgotten once no build used it for a while.
+ * <p>
+ * When {@link QueueForecast} is enabled, configured templates also keep the idle agents it expects to be needed soon.
+ */
+@Extension
+public final class WarmPool {
+
+    private static final Logger LOGGER = Logger.getLogger(WarmPool.class.getName());
+
+    private static final long RECURRENCE_PERIOD = SystemProperties.getLong(
+            WarmPool.class.getName() + ".recurrencePeriod", Main.isUnitTest ? 5L : 30L);
+
+    /**
+     * Time after which the definition of a pipeline pod template is forgotten if no build used it.
+     */
+    private static final long DYNAMIC_TEMPLATE_TTL = TimeUnit.MINUTES.toMillis(
+            SystemProperties.getLong(WarmPool.class.getName() + ".dynamicTemplateTtlMinutes", 60L));
+
+    /**
+     * Time a relabeled agent is kept for the build it was handed over to.
+     */
+    private static final long ADOPTION_TIMEOUT = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * Definition keys by template instance, as provisioning asks for them on every round.
+     * Pod templates are replaced rather than modified, and each belongs to a single cloud.
+     */
+    private static final Cache<PodTemplate, String> DEFINITION_KEYS =
+            Caffeine.newBuilder().weakKeys().maximumSize(1000).build();
+
+    /** pod templates defined in pipelines, by definition */
+    private final ConcurrentMap<String, DynamicPool> dynamicPools = new ConcurrentHashMap<>();
+
+    /** names of the idle warm agents to keep */
+    private volatile Set<String> wanted = Set.of();
+
+    /** names of the agents handed over to a build, with the time they were */
+    private final ConcurrentMap<String, Long> adopted = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean replenishScheduled = new AtomicBoolean();
+
+    /**
+     * @return the singleton instance
+     */
+    public static WarmPool get() {
+        return ExtensionList.lookupSingleton(WarmPool.class);
+    }
+
+    /**
+     * Remembers the definition of a pod template defined in a pipeline, to keep idle agents for the next builds.
+     * @param cloud the cloud the template was added to
+     * @param template the template, ignored if it does not define idle agents
+     */
+    public void register(@NonNull KubernetesCloud cloud, @NonNull PodTemplate template) {
+        if (template.getMinIdle() <= 0) {
+            return;
+        }
+        String key = cachedDefinitionKey(cloud, template);
+        DynamicPool pool = dynamicPools.computeIfAbsent(key, k -> {
+            PodTemplate poolTemplate =
+                    template.copyForWarmPool(UUID.randomUUID().toString(), "warm-" + k.substring(0, 12));
+            cloud.addDynamicTemplate(poolTemplate);
+            LOGGER.log(Level.FINE, "Keeping idle agents for {0} with template {1}", new Object[] {
+                template.getName(), poolTemplate.getName()
+            });
+            return new DynamicPool(cloud.name, poolTemplate);
+        });
+        pool.lastUsed = System.currentTimeMillis();
+        replenishSoon();
+    }
+
+    /**
+     * Hands over idle warm agents to a pod template defined in a pipeline, relabeling them with its label.
+     * @param cloud the cloud provisioning the template
+     * @param template the template to provision
+     * @param max the maximum number of agents needed
+     * @return the agents handed over, as already provisioned nodes
+     */
+    @NonNull
+    List<NodeProvisioner.PlannedNode> adopt(@NonNull KubernetesCloud cloud, @NonNull PodTemplate template, int max) {
+        if (max <= 0 || template.getMinIdle() <= 0 || dynamicPools.isEmpty()) {
+            return List.of();
+        }
+        DynamicPool pool = dynamicPools.get(cachedDefinitionKey(cloud, template));
+        if (pool == null || pool.template.getId().equals(template.getId())) {
+            return List.of();
+        }
+        long now = System.currentTimeMillis();
+        pool.lastUsed = now;
+        List<NodeProvisioner.PlannedNode> plannedNodes = new ArrayList<>();
+        for (Node node : Label.get(pool.template.getLabel()).getNodes()) {
+            if (plannedNodes.size() >= max) {
+                break;
+            }
+            if (!(node instanceof KubernetesSlave) || !isWarm(node)) {
+                continue;
+            }
+            Computer c = node.toComputer();
+            if (c == null || !c.isOnline() || !c.isAcceptingTasks() || !c.isIdle()) {
+                continue;
+            }
+            if (adopted.putIfAbsent(node.getNodeName(), now) != null) {
+                continue;
+            }
+            try {
+                node.setLabelString(template.getLabel());
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, e, () -> "Failed to relabel " + node.getNodeName());
+                adopted.remove(node.getNodeName());
+                continue;
+            }
+            LOGGER.log(Level.FINE, "Handing over {0} to {1}", new Object[] {node.getNodeName(), template.getName()});
+            plannedNodes.add(new NodeProvisioner.PlannedNode(
+                    node.getDisplayName(), CompletableFuture.completedFuture(node), node.getNumExecutors()));
+        }
+        if (!plannedNodes.isEmpty()) {
+            Metrics.metricRegistry().counter(MetricNames.WARM_POOL_ADOPTED).inc(plannedNodes.size());
+            replenishSoon();
+        }
+        return plannedNodes;
+    }
+
+    /**
+     * @return whether the given idle agent should be kept
+     */
+    boolean isWanted(@NonNull String nodeName) {
+        return wanted.contains(nodeName) || adopted.containsKey(nodeName);
+    }
+
+    /**
+     * Replenishes the pools in the background.
+     */
+    void replenishSoon() {
+        if (replenishScheduled.compareAndSet(false, true)) {
+            Timer.get().submit(() -> {
+                replenishScheduled.set(false);
+                try (ACLContext ctx = ACL.as2(ACL.SYSTEM2)) {
+                    replenish();
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Failed to replenish idle agents", e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Launches agents for the templates having fewer idle agents than they should.
+     */
+    synchronized void replenish() {
+        long now = System.currentTimeMillis();
+        Jenkins jenkins = Jenkins.get();
+        dynamicPools.values().removeIf(pool -> {
+            if (now - pool.lastUsed < DYNAMIC_TEMPLATE_TTL) {
+                return false;
+            }
+            if (jenkins.getCloud(pool.cloudName) instanceof KubernetesCloud cloud) {
+                cloud.removeDynamicTemplate(pool.template);
+            }
+            LOGGER.log(Level.FINE, "Forgetting unused template {0}", pool.template.getName());
+            return true;
+        });
+        List<KubernetesCloud> clouds = jenkins.clouds.getAll(KubernetesCloud.class);
+        boolean any = !dynamicPools.isEmpty()
+                || QueueForecast.ENABLED
+                || clouds.stream().flatMap(c -> c.getTemplates().stream()).anyMatch(t -> t.getMinIdle() > 0);
+        if (!any) {
+            wanted = Set.of();
+            adopted.clear();
+            return;
+        }
+        Map<String, List<KubernetesSlave>> idleByTemplate = new HashMap<>();
+        Map<String, Integer> busyByTemplate = new HashMap<>();
+        for (Node node : jenkins.getNodes()) {
+            if (!(node instanceof KubernetesSlave)) {
+                continue;
+            }
+            KubernetesSlave agent = (KubernetesSlave) node;
+            Computer c = agent.toComputer();
+            if (c == null) {
+                continue;
+            }
+            Long adoptedAt = adopted.get(agent.getNodeName());
+            if (adoptedAt != null) {
+                if (!c.isIdle() || now - adoptedAt > ADOPTION_TIMEOUT) {
+                    adopted.remove(agent.getNodeName());
+                }
+                continue;
+            }
+            if (c.isIdle()) {
+                idleByTemplate.computeIfAbsent(agent.getTemplateId(), k -> new ArrayList<>()).add(agent);
+            } else {
+                busyByTemplate.merge(agent.getTemplateId(), 1, Integer::sum);
+            }
+        }
+        adopted.keySet().retainAll(jenkins.getNodes().stream().map(Node::getNodeName).toList());
+        Set<String> wanted = new HashSet<>();
+        for (KubernetesCloud cloud : clouds) {
+            for (PodTemplate template : cloud.getTemplates()) {
+                int forecast = QueueForecast.get()
+                        .getIdleTarget(cloud, template, busyByTemplate.getOrDefault(template.getId(), 0));
+                replenish(cloud, template, Math.max(template.getMinIdle(), forecast), idleByTemplate, wanted);
+            }
+        }
+        for (DynamicPool pool : dynamicPools.values()) {
+            if (jenkins.getCloud(pool.cloudName) instanceof KubernetesCloud cloud) {
+                replenish(cloud, pool.template, pool.template.getMinIdle(), idleByTemplate, wanted);
+            }
+        }
+        this.wanted = wanted;
+    }
+
+    /**
+     * @param target the number of idle agents to keep, those beyond the minimum of the template being forecast ones
+     */
+    private static void replenish(
+            KubernetesCloud cloud,
+            PodTemplate template,
+            int target,
+            Map<String, List<KubernetesSlave>> idleByTemplate,
+            Set<String> wanted) {
+        if (target <= 0) {
+            return;
+        }
+        List<KubernetesSlave> idle = idleByTemplate.getOrDefault(template.getId(), List.of());
+        idle.stream()
+                .filter(WarmPool::isWarm)
+                .map(KubernetesSlave::getNodeName)
+                .sorted(Comparator.naturalOrder())
+                .limit(target)
+                .forEach(wanted::add);
+        if (idle.size() >= target) {
+            return;
+        }
+        PodTemplate unwrapped = cloud.getUnwrappedTemplate(template);
+        String namespace = StringUtils.defaultIfBlank(unwrapped.getNamespace(), cloud.getNamespace());
+        int permitted = PodCreationBreaker.get().permits(cloud, namespace, target - idle.size());
+        int launches = QuotaAdmission.get().admit(cloud, unwrapped, namespace, permitted);
+        KubernetesProvisioningLimits limits = KubernetesProvisioningLimits.get();
+        int launched = 0;
+        for (int i = idle.size(); i < idle.size() + launches; i++) {
+            if (!limits.register(cloud, template, 1)) {
+                LOGGER.log(Level.FINE, "Limit reached, cannot launch more idle agents for {0}", template.getName());
+                break;
+            }
+            boolean reserved = false;
+            try {
+                KubernetesSlave agent = KubernetesSlave.builder()
+                        .podTemplate(unwrapped)
+                        .cloud(cloud)
+                        .retentionStrategy(new RetentionStrategyImpl(
+                                cloud.getRetentionTimeout(), i >= template.getMinIdle()))
+                        .build();
+                wanted.add(agent.getNodeName());
+                // reserved before the agent launches, which releases the reservation once its pod is created
+                QuotaAdmission.get().reserve(cloud, unwrapped, namespace, 1);
+                reserved = true;
+                Jenkins.get().addNode(agent);
+                LOGGER.log(Level.FINE, "Launching idle agent {0} for {1}", new Object[] {
+                    agent.getNodeName(), template.getName()
+                });
+                Metrics.metricRegistry().counter(MetricNames.WARM_POOL_LAUNCHED).inc();
+                launched++;
+            } catch (IOException | Descriptor.FormException | RuntimeException e) {
+                limits.unregister(cloud, template, 1);
+                if (reserved) {
+                    QuotaAdmission.get().release(cloud.name, cloud.namespaceOrDefault(namespace), unwrapped.getId());
+                }
+                LOGGER.log(Level.WARNING, e, () -> "Failed to launch an idle agent for " + template.getName());
+                break;
+            }
+        }
+        PodCreationBreaker.get().giveBack(cloud, namespace, permitted - launched);
+    }
+
+    private static boolean isWarm(Node node) {
+        return ((KubernetesSlave) node).getRetentionStrategy() instanceof RetentionStrategyImpl;
+    }
+
+    private static String cachedDefinitionKey(@NonNull KubernetesCloud cloud, @NonNull PodTemplate template) {
+        return DEFINITION_KEYS.get(template, t -> definitionKey(cloud, t));
+    }
+
+    /**
+     * Identifies the definition of a pod template, regardless of its identity and of the build that defined it.
+     */
+    static String definitionKey(@NonNull KubernetesCloud cloud, @NonNull PodTemplate template) {
+        PodTemplate normalized = template.copyForWarmPool("", "");
+        StringBuilder definition = new StringBuilder(cloud.name).append('\n');
+        definition.append(Jenkins.XSTREAM2.toXML(normalized));
+        for (String yaml : template.getYamls()) {
+            definition.append("\n---\n").append(yaml);
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return Util.toHexString(digest.digest(definition.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static final class DynamicPool {
+        final String cloudName;
+        final PodTemplate template;
+        volatile long lastUsed;
+
+        DynamicPool(String cloudName, PodTemplate template) {
+            this.cloudName = cloudName;
+            this.template = template;
+        }
+    }
+
+    /**
+     * Keeps a warm agent while it is idle and wanted by the pool, then behaves like {@link OnceRetentionStrategy}.
+     */
+    public static final class RetentionStrategyImpl extends CloudRetentionStrategy implements ExecutorListener {
+
+        private final OnceRetentionStrategy delegate;
+
+        /** whether the agent was launched for the demand forecast rather than the minimum of its template */
+        private final boolean forecast;
+
+        private volatile boolean used;
+
+        public RetentionStrategyImpl(int idleMinutes) {
+            this(idleMinutes, false);
+        }
+
+        public RetentionStrategyImpl(int idleMinutes, boolean forecast) {
+            super(idleMinutes);
+            this.delegate = new OnceRetentionStrategy(idleMinutes);
+            this.forecast = forecast;
+        }
+
+        @Override
+        public long check(@NonNull AbstractCloudComputer c) {
+            if (c.isIdle() && WarmPool.get().isWanted(c.getName())) {
+                return 1;
+            }
+            return delegate.check(c);
+        }
+
+        @Override
+        public void start(@NonNull AbstractCloudComputer c) {
+            delegate.start(c);
+        }
+
+        @Override
+        public void taskAccepted(Executor executor, Queue.Task task) {
+            used = true;
+            delegate.taskAccepted(executor, task);
+            WarmPool.get().replenishSoon();
+        }
+
+        @Override
+        public void taskCompleted(Executor executor, Queue.Task task, long durationMS) {
+            delegate.taskCompleted(executor, task, durationMS);
+        }
+
+        @Override
+        public void taskCompletedWithProblems(
+                Executor executor, Queue.Task task, long durationMS, Throwable problems) {
+            delegate.taskCompletedWithProblems(executor, task, durationMS, problems);
+        }
+
+        @Extension
+        public static final class DescriptorImpl extends Descriptor<RetentionStrategy<?>> {
+            @NonNull
+            @Override
+            public String getDisplayName() {
+                return "Kubernetes warm pool";
+            }
+        }
+    }
+
+    /**
+     * Tells the forecast whether the agents launched for it were used.
+     */
+    @Extension
+    public static final class NodeListenerImpl extends NodeListener {
+        @Override
+        protected void onDeleted(@NonNull Node node) {
+            if (node instanceof KubernetesSlave agent
+                    && agent.getRetentionStrategy() instanceof RetentionStrategyImpl strategy
+                    && strategy.forecast) {
+                QueueForecast.get().recordOutcome(agent.getTemplateId(), strategy.used);
+            }
+        }
+    }
+
+    @Extension
+    public static final class PeriodicReplenish extends AsyncPeriodicWork {
+        public PeriodicReplenish() {
+            super("Launch of idle Kubernetes agents");
+        }
+
+        @Override
+        protected void execute(TaskListener listener) {
+            get().replenish();
+        }
+
+        @Override
+        public long getRecurrencePeriod() {
+            return TimeUnit.SECONDS.toMillis(RECURRENCE_PERIOD);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package org.csanchez.jenkins.plugins.kubernetes.pipeline;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.fabric8.kubernetes.api.model.Status;
+import io.fabric8.kubernetes.client.dsl.ExecListener;
+import io.fabric8.kubernetes.client.dsl.ExecWatch;
+import io.fabric8.kubernetes.client.dsl.PodResource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.metrics.api.Metrics;
+import org.csanchez.jenkins.plugins.kubernetes.MetricNames;
+
+/**
+ * An exec websocket running a shell in a container, with the state of its liveness.
+ * <p>
+ * The output and the log of the connection can be attached after it is opened, so that connections can be opened in
+ * advance and handed over to a launch later. Output written before that is discarded.
+ */
+final class ContainerExecConnection {
+
+    private static final Logger LOGGER = Logger.getLogger(ContainerExecConnection.class.getName());
+
+    /** smoothed time taken by the API server to open an exec websocket, in milliseconds */
+    private static final AtomicLong SETUP_MILLIS = new AtomicLong();
+
+    private final AtomicBoolean alive = new AtomicBoolean(false);
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private final CompletableFuture<Status> execFailure = new CompletableFuture<>();
+    private final AtomicLong startAlive = new AtomicLong();
+    private final long opened = System.nanoTime();
+    private final AttachableOutputStream output = new AttachableOutputStream();
+    private volatile PrintStream log;
+    private ExecWatch watch;
+
+    private ContainerExecConnection(@CheckForNull OutputStream output, @CheckForNull PrintStream log) {
+        this.output.target = output;
+        this.log = log;
+    }
+
+    /**
+     * Opens a connection, without waiting for it to be established.
+     * @param pod the pod
+     * @param containerName the container
+     * @param stdinBufferSize the stdin buffer size
+     * @param output where the output goes, or null to attach it later
+     * @param log where connection failures are reported, or null to attach it later
+     * @param sh the shell to run
+     */
+    static ContainerExecConnection open(
+            @NonNull PodResource pod,
+            @NonNull String containerName,
+            int stdinBufferSize,
+            @CheckForNull OutputStream output,
+            @CheckForNull PrintStream log,
+            @NonNull String... sh) {
+        ContainerExecConnection connection = new ContainerExecConnection(output, log);
+        connection.watch = pod.inContainer(containerName)
+                .redirectingInput(stdinBufferSize) // JENKINS-50429
+                .writingOutput(connection.output)
+                .writingError(connection.output)
+                .usingListener(connection.new Listener())
+                .exec(sh);
+        return connection;
+    }
+
+    /**
+     * Waits for the websocket to be established.
+     * @return false if it did not in time, in which case the connection is closed
+     */
+    boolean awaitStarted(int timeoutSeconds) throws InterruptedException {
+        try {
+            if (started.await(timeoutSeconds, TimeUnit.SECONDS)) {
+                if (alive.get()) {
+                    recordSetup(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - opened));
+                }
+                return true;
+            }
+        } catch (InterruptedException e) {
+            close();
+            throw e;
+        }
+        close();
+        return false;
+    }
+
+    /**
+     * Hands over the connection to a launch.
+     */
+    void attach(@CheckForNull OutputStream output, @NonNull PrintStream log) {
+        this.log = log;
+        this.output.target = output;
+    }
+
+    /**
+     * @return whether the shell is still running and can be used for a launch
+     */
+    boolean isUsable() {
+        return alive.get() && finished.getCount() > 0;
+    }
+
+    ExecWatch getExecWatch() {
+        return watch;
+    }
+
+    AtomicBoolean getAlive() {
+        return alive;
+    }
+
+    CountDownLatch getFinished() {
+        return finished;
+    }
+
+    /**
+     * @return completed with the status of the exec if the shell could not be run at all, e.g. it does not exist in
+     *     the container, or with null once the connection is closed otherwise
+     */
+    CompletableFuture<Status> getExecFailure() {
+        return execFailure;
+    }
+
+    void close() {
+        try {
+            watch.close();
+        } catch (Exception e) {
+            LOGGER.log(Level.INFO, "failed to close watch", e);
+        }
+    }
+
+    private static void recordSetup(long millis) {
+        Metrics.metricRegistry().timer(MetricNames.EXEC_CONNECT_DURATION).update(millis, TimeUnit.MILLISECONDS);
+        SETUP_MILLIS.updateAndGet(previous -> previous == 0 ? millis : (previous * 7 + millis) / 8);
+    }
+
+    /**
+     * Time to wait before retrying to open a connection.
+     * Grows exponentially from twice the usual setup time, so that retries slow down when the API server does,
+     * with jitter so that launches failing together do not retry together.
+     * @param attempt the number of attempts so far
+     * @param maxBackoffSeconds the maximum time to wait
+     * @return the time to wait in milliseconds
+     */
+    static long backoffMillis(int attempt, int maxBackoffSeconds) {
+        long base = Math.max(1000, 2 * SETUP_MILLIS.get());
+        long max = TimeUnit.SECONDS.toMillis(maxBackoffSeconds);
+        long backoff = Math.min(max, base << Math.min(attempt - 1, 20));
+        return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+    }
+
+    private class Listener implements ExecListener {
+        @Override
+        public void onOpen() {
+            alive.set(true);
+            started.countDown();
+            startAlive.set(System.nanoTime());
+            LOGGER.log(Level.FINEST, "onOpen : {0}", finished);
+        }
+
+        @Override
+        public void onFailure(Throwable t, Response response) {
+            alive.set(false);
+            PrintStream log = ContainerExecConnection.this.log;
+            if (log != null) {
+                t.printStackTrace(log);
+            } else {
+                LOGGER.log(Level.FINE, "Exec connection failed", t);
+            }
+            started.countDown();
+            LOGGER.log(Level.FINEST, "onFailure : {0}", finished);
+            if (finished.getCount() == 0) {
+                LOGGER.log(
+                        Level.WARNING,
+                        "onFailure called but latch already finished. This may be a bug in the kubernetes-plugin");
+            }
+            finished.countDown();
+            execFailure.complete(null);
+        }
+
+        @Override
+        public void onExit(int code, Status status) {
+            // the exit code is only missing from the status if the exec itself failed, not the shell
+            if (code == -1 && status != null && !"Success".equals(status.getStatus())) {
+                execFailure.complete(status);
+            }
+        }
+
+        @Override
+        public void onClose(int i, String s) {
+            alive.set(false);
+            started.countDown();
+            LOGGER.log(Level.FINEST, "onClose : {0} [{1} ms]", new Object[] {
+                finished, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startAlive.get())
+            });
+            if (finished.getCount() == 0) {
+                LOGGER.log(
+                        Level.WARNING,
+                        "onClose called but latch already finished. This indicates a bug in the kubernetes-plugin");
+            }
+            finished.countDown();
+            execFailure.complete(null);
+        }
+    }
+
+    private static final class AttachableOutputStream extends OutputStream {
+        private volatile OutputStream target;
+
+        @Override
+        public void write(int b) throws IOException {
+            OutputStream out = target;
+            if (out != null) {
+                out.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            OutputStream out = target;
+            if (out != null) {
+                out.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            OutputStream out = target;
+            if (out != null) {
+                out.flush();
+            }
+        }
+    }
+}
@@ -18,6 +18,7 @@ package org.csanchez.jenkins.plugins.kubernetes.pipeline;
 
 import static org.csanchez.jenkins.plugins.kubernetes.pipeline.Constants.EXIT;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.AbortException;
@@ -30,9 +31,9 @@ import hudson.model.Computer;
 import hudson.model.Node;
 import hudson.remoting.VirtualChannel;
 import hudson.slaves.WorkspaceList;
+import io.fabric8.kubernetes.api.model.Status;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClientException;
-import io.fabric8.kubernetes.client.dsl.ExecListener;
 import io.fabric8.kubernetes.client.dsl.ExecWatch;
 import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
@@ -44,26 +45,36 @@ import java.io.OutputStream;
 import java.io.PrintStream;
 import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
+import jenkins.metrics.api.Metrics;
+import jenkins.util.Timer;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.output.NullPrintStream;
 import org.apache.commons.io.output.TeeOutputStream;
 import org.csanchez.jenkins.plugins.kubernetes.ContainerTemplate;
 import org.csanchez.jenkins.plugins.kubernetes.KubernetesSlave;
+import org.csanchez.jenkins.plugins.kubernetes.MetricNames;
 import org.csanchez.jenkins.plugins.kubernetes.PodContainerSource;
 import org.jenkinsci.plugins.kubernetes.auth.KubernetesAuthException;
 import org.jenkinsci.plugins.workflow.steps.EnvironmentExpander;
@@ -105,16 +116,69 @@ public class ContainerExecDecorator extends LauncherDecorator implements Seriali
             Integer.getInteger(ContainerExecDecorator.class.getName() + ".stdinBufferSize", 16 * 1024);
     /**
      * time in milliseconds to wait for checking whether the process immediately returned
+     * @deprecated the script is now sent right away, a process exiting before is detected from the exec listener
      */
+    @Deprecated
     public static final int COMMAND_FINISHED_TIMEOUT_MS = 200;
+    /**
+     * whether to launch commands over a single long-lived shell per container rather than opening a websocket for each
+     * of them (unix only)
+     */
+    private static final boolean PERSISTENT_SHELL =
+            Boolean.getBoolean(ContainerExecDecorator.class.getName() + ".persistentShell");
+    /**
+     * number of bytes at the end of the output kept to diagnose processes exiting immediately, 0 to keep none
+     */
+    private static final int DIAGNOSTIC_BUFFER_SIZE =
+            Math.max(0, Integer.getInteger(ContainerExecDecorator.class.getName() + ".diagnosticBufferSize", 8 * 1024));
+    /**
+     * whether to write the global and run environments, but sensitive build parameters, to a file sourced by each
+     * launch in a container, rather than sending them every time (unix only)
+     */
+    private static final boolean ENVIRONMENT_FILE =
+            Boolean.getBoolean(ContainerExecDecorator.class.getName() + ".environmentFile");
+    /**
+     * number of exec connections opened in advance for each container, to be used by the next launches (unix only)
+     */
+    private static final int EXEC_POOL_SIZE =
+            Integer.getInteger(ContainerExecDecorator.class.getName() + ".execPoolSize", 0);
+    /** time in seconds between health checks of the connections opened in advance */
+    private static final int EXEC_POOL_CHECK_INTERVAL =
+            Integer.getInteger(ContainerExecDecorator.class.getName() + ".execPoolCheckInterval", 30);
 
     @SuppressFBWarnings(value = "SE_TRANSIENT_FIELD_NOT_RESTORED", justification = "not needed on deserialization")
     private transient List<Closeable> closables;
 
+    @SuppressFBWarnings(value = "SE_TRANSIENT_FIELD_NOT_RESTORED", justification = "reopened when needed")
+    private transient ContainerExecSession session;
+
+    @SuppressFBWarnings(value = "SE_TRANSIENT_FIELD_NOT_RESTORED", justification = "computed when needed")
+    private transient EnvVars baseEnvironment;
+
+    @SuppressFBWarnings(value = "SE_TRANSIENT_FIELD_NOT_RESTORED", justification = "written again when needed")
+    private transient FilePath baseEnvironmentFile;
+
+    /** whether the container cannot read the base environment file, which is then not used */
+    @SuppressFBWarnings(value = "SE_TRANSIENT_FIELD_NOT_RESTORED", justification = "checked again when needed")
+    private transient boolean baseEnvironmentFileUnreadable;
+
+    @SuppressFBWarnings(value = "SE_TRANSIENT_FIELD_NOT_RESTORED", justification = "filled again when needed")
+    private transient Deque<ContainerExecConnection> pool;
+
+    @SuppressFBWarnings(value = "SE_TRANSIENT_FIELD_NOT_RESTORED", justification = "scheduled again with the pool")
+    private transient ScheduledFuture<?> poolCheck;
+
+    @SuppressFBWarnings(value = "SE_TRANSIENT_FIELD_NOT_RESTORED", justification = "created again with the pool")
+    private transient AtomicBoolean replenishing;
+
+    @SuppressFBWarnings(value = "SE_TRANSIENT_FIELD_NOT_RESTORED", justification = "not closed once deserialized")
+    private transient volatile boolean closed;
+
     private String containerName;
     private EnvironmentExpander environmentExpander;
     private EnvVars globalVars;
     private EnvVars rcEnvVars;
+    private Set<String> sensitiveVariables;
     private String shell;
     private KubernetesNodeContext nodeContext;
 
@@ -246,12 +310,26 @@ public class ContainerExecDecorator extends LauncherDecorator implements Seriali
         return globalVars;
     }
 
-    public void setGlobalVars(EnvVars globalVars) {
+    public synchronized void setGlobalVars(EnvVars globalVars) {
         this.globalVars = globalVars;
+        this.baseEnvironment = null;
+        this.baseEnvironmentFile = null;
     }
 
-    public void setRunContextEnvVars(EnvVars rcVars) {
+    public synchronized void setRunContextEnvVars(EnvVars rcVars) {
         this.rcEnvVars = rcVars;
+        this.baseEnvironment = null;
+        this.baseEnvironmentFile = null;
+    }
+
+    /**
+     * @param sensitiveVariables names of the run environment variables not to write to the workspace, such as
+     *     password parameters
+     */
+    public synchronized void setSensitiveVariables(Set<String> sensitiveVariables) {
+        this.sensitiveVariables = sensitiveVariables;
+        this.baseEnvironment = null;
+        this.baseEnvironmentFile = null;
     }
 
     public EnvVars getRunContextEnvVars() {
@@ -378,13 +456,99 @@ public class ContainerExecDecorator extends LauncherDecorator implements Seriali
                         }
                     }
                 }
+                String[] commands = getCommands(starter, containerWorkingDirFilePathStr, launcher.isUnix());
+                String baseEnvironmentFile = null;
+                // the file must be written through the agent, which shares the workspace with the container
+                if (ENVIRONMENT_FILE
+                        && launcher.isUnix()
+                        && node != null
+                        && node.getChannel() != null
+                        && starter.pwd() != null
+                        && starter.pwd().getChannel() == node.getChannel()) {
+                    try {
+                        baseEnvironmentFile = getBaseEnvironmentFile(starter.pwd(), containerWorkingDirStr);
+                    } catch (IOException | InterruptedException e) {
+                        // send the whole environment instead
+                        LOGGER.log(Level.FINE, "Failed to write environment file", e);
+                    }
+                }
+                if (PERSISTENT_SHELL && launcher.isUnix()) {
+                    Proc proc = doSessionLaunch(
+                            starter.quiet(),
+                            fixDoubleDollar(envVars),
+                            starter.stdout(),
+                            containerWorkingDirFilePath,
+                            baseEnvironmentFile,
+                            starter.masks(),
+                            commands);
+                    if (proc != null) {
+                        return proc;
+                    }
+                }
                 return doLaunch(
                         starter.quiet(),
                         fixDoubleDollar(envVars),
                         starter.stdout(),
                         containerWorkingDirFilePath,
+                        baseEnvironmentFile,
                         starter.masks(),
-                        getCommands(starter, containerWorkingDirFilePathStr, launcher.isUnix()));
+                        commands);
+            }
+
+            /**
+             * Launches the commands over the persistent shell of the container, reconnecting it if needed.
+             * @return the process, or null if the shell could not be started or is still running another command
+             */
+            private Proc doSessionLaunch(
+                    boolean quiet,
+                    String[] cmdEnvs,
+                    OutputStream outputForCaller,
+                    FilePath pwd,
+                    String baseEnvironmentFile,
+                    boolean[] masks,
+                    String... commands)
+                    throws IOException {
+                long startMethod = System.nanoTime();
+                PrintStream printStream =
+                        quiet ? NullPrintStream.NULL_PRINT_STREAM : launcher.getListener().getLogger();
+                OutputStream stream = quiet ? null : printStream;
+                if (outputForCaller != null && !outputForCaller.equals(printStream)) {
+                    stream = stream == null ? outputForCaller : new TeeOutputStream(outputForCaller, stream);
+                }
+                String[] sh = shell != null ? new String[] {shell} : new String[] {"sh"};
+                try {
+                    EnvVars envVars = buildEnvVars(cmdEnvs);
+                    LOGGER.log(Level.FINEST, "Launching with env vars: {0}", envVars.toString());
+                    for (int attempt = 0; attempt < 2; attempt++) {
+                        ContainerExecSession execSession = getSession(sh);
+                        if (execSession == null) {
+                            return null;
+                        }
+                        printStream.println("Executing " + String.join(" ", sh) + " script inside container "
+                                + containerName + " of pod " + getPodName());
+                        try {
+                            Proc proc = execSession.launch(
+                                    in -> {
+                                        if (pwd != null) {
+                                            in.printf("cd \"%s\"", pwd);
+                                            in.print(newLine(false));
+                                        }
+                                        setupEnvironment(envVars, baseEnvironmentFile, in, false);
+                                        doExec(in, false, printStream, masks, false, commands);
+                                    },
+                                    stream);
+                            LOGGER.fine(() -> "Launched process over the shell of pod: [" + getPodName()
+                                    + "], container: [" + containerName + "]" + "["
+                                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startMethod) + " ms]");
+                            return proc;
+                        } catch (IOException e) {
+                            LOGGER.log(Level.FINE, "Shell of container " + containerName + " was lost, reconnecting", e);
+                        }
+                    }
+                    return null;
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException(e.getMessage());
+                }
             }
 
             private Proc doLaunch(
@@ -392,6 +556,7 @@ public class ContainerExecDecorator extends LauncherDecorator implements Seriali
                     String[] cmdEnvs,
                     OutputStream outputForCaller,
                     FilePath pwd,
+                    String baseEnvironmentFile,
                     boolean[] masks,
                     String... commands)
                     throws IOException {
@@ -401,7 +566,7 @@ public class ContainerExecDecorator extends LauncherDecorator implements Seriali
                 OutputStream stream;
 
                 // Only output to stdout at the beginning for diagnostics.
-                ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+                RingBufferOutputStream stdout = new RingBufferOutputStream(DIAGNOSTIC_BUFFER_SIZE);
                 // Wrap stdout so that we can toggle it off.
                 ToggleOutputStream toggleStdout = new ToggleOutputStream(stdout);
 
@@ -414,23 +579,20 @@ public class ContainerExecDecorator extends LauncherDecorator implements Seriali
                     stream = new TeeOutputStream(toggleStdout, printStream);
                 }
 
-                ByteArrayOutputStream dryRunCaller = null;
-                ;
-                ToggleOutputStream toggleDryRunCaller = null;
+                PromptDetector promptDetector = null;
                 ToggleOutputStream toggleOutputForCaller = null;
                 // Send to proc caller as well if they sent one
                 if (outputForCaller != null && !outputForCaller.equals(printStream)) {
                     if (launcher.isUnix()) {
                         stream = new TeeOutputStream(outputForCaller, stream);
                     } else {
-                        // Prepare to capture output for later.
-                        dryRunCaller = new ByteArrayOutputStream();
-                        toggleDryRunCaller = new ToggleOutputStream(dryRunCaller);
+                        // Prepare to watch for the prompt.
+                        promptDetector = new PromptDetector('>');
                         // Initially disable the output for the caller, to prevent it from getting unwanted output such
                         // as prompt
                         toggleOutputForCaller = new ToggleOutputStream(outputForCaller, true);
                         stream = new TeeOutputStream(toggleOutputForCaller, stream);
-                        stream = new TeeOutputStream(toggleDryRunCaller, stream);
+                        stream = new TeeOutputStream(promptDetector, stream);
                     }
                 }
 
@@ -447,18 +609,25 @@ public class ContainerExecDecorator extends LauncherDecorator implements Seriali
                 }
 
                 int attempts = 0;
-                ExecWatchWrapper watchWrapper = null;
-                while (watchWrapper == null && attempts < WEBSOCKET_CONNECTION_MAX_RETRY) {
+                ContainerExecConnection connection = launcher.isUnix() ? takePooledConnection(sh) : null;
+                if (connection != null) {
+                    connection.attach(stream, launcher.getListener().getLogger());
+                }
+                while (connection == null && attempts < WEBSOCKET_CONNECTION_MAX_RETRY) {
 
                     if (attempts > 0) {
-                        // Exponential backoff: Waits 2s, next attempt 4s, next attempts 8s, next attempts 16s, ...
+                        Metrics.metricRegistry()
+                                .counter(MetricNames.EXEC_CONNECT_RETRIES)
+                                .inc();
+                        // Jittered exponential backoff from the usual connection setup time,
                         // with a maximum of wait of WEBSOCKET_CONNECTION_MAX_RETRY_BACKOFF
-                        long backoffInSeconds = Math.min(
-                                Integer.toUnsignedLong((int) Math.pow(2, attempts)),
-                                WEBSOCKET_CONNECTION_MAX_RETRY_BACKOFF);
-                        launcher.getListener().getLogger().println("Retrying in " + backoffInSeconds + "s ...");
+                        long backoff =
+                                ContainerExecConnection.backoffMillis(attempts, WEBSOCKET_CONNECTION_MAX_RETRY_BACKOFF);
+                        launcher.getListener()
+                                .getLogger()
+                                .println(String.format(Locale.ROOT, "Retrying in %.1fs ...", backoff / 1000.0));
                         try {
-                            Thread.sleep(backoffInSeconds * 1000);
+                            Thread.sleep(backoff);
                         } catch (InterruptedException ex) {
                             launcher.getListener().getLogger().println("Retry wait interrupted");
                         } finally {
@@ -467,74 +636,23 @@ public class ContainerExecDecorator extends LauncherDecorator implements Seriali
                     }
 
                     try {
-                        final AtomicBoolean alive = new AtomicBoolean(false);
-                        final CountDownLatch started = new CountDownLatch(1);
-                        final CountDownLatch finished = new CountDownLatch(1);
-                        final AtomicLong startAlive = new AtomicLong();
-
-                        ExecWatch watch = nodeContext
-                                .getPodResource()
-                                .inContainer(containerName)
-                                .redirectingInput(STDIN_BUFFER_SIZE) // JENKINS-50429
-                                .writingOutput(stream)
-                                .writingError(stream)
-                                .usingListener(new ExecListener() {
-                                    @Override
-                                    public void onOpen() {
-                                        alive.set(true);
-                                        started.countDown();
-                                        startAlive.set(System.nanoTime());
-                                        LOGGER.log(Level.FINEST, "onOpen : {0}", finished);
-                                    }
-
-                                    @Override
-                                    public void onFailure(Throwable t, Response response) {
-                                        alive.set(false);
-                                        t.printStackTrace(launcher.getListener().getLogger());
-                                        started.countDown();
-                                        LOGGER.log(Level.FINEST, "onFailure : {0}", finished);
-                                        if (finished.getCount() == 0) {
-                                            LOGGER.log(
-                                                    Level.WARNING,
-                                                    "onFailure called but latch already finished. This may be a bug in the kubernetes-plugin");
-                                        }
-                                        finished.countDown();
-                                    }
-
-                                    @Override
-                                    public void onClose(int i, String s) {
-                                        alive.set(false);
-                                        started.countDown();
-                                        LOGGER.log(Level.FINEST, "onClose : {0} [{1} ms]", new Object[] {
-                                            finished,
-                                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startAlive.get())
-                                        });
-                                        if (finished.getCount() == 0) {
-                                            LOGGER.log(
-                                                    Level.WARNING,
-                                                    "onClose called but latch already finished. This indicates a bug in the kubernetes-plugin");
-                                        }
-                                        finished.countDown();
-                                    }
-                                })
-                                .exec(sh);
+                        ContainerExecConnection attempt = ContainerExecConnection.open(
+                                nodeContext.getPodResource(),
+                                containerName,
+                                STDIN_BUFFER_SIZE,
+                                stream,
+                                launcher.getListener().getLogger(),
+                                sh);
                         // prevent a wait forever if the connection is closed as the listener would never be called
-                        try {
-                            if (started.await(WEBSOCKET_CONNECTION_TIMEOUT, TimeUnit.SECONDS)) {
-                                watchWrapper = new ExecWatchWrapper(watch, alive, finished);
-                            } else {
-                                closeWatch(watch);
-                                launcher.getListener()
-                                        .error("Timed out waiting for websocket connection. "
-                                                + "You should increase the value of system property "
-                                                + WEBSOCKET_CONNECTION_TIMEOUT_SYSTEM_PROPERTY + " currently set at "
-                                                + WEBSOCKET_CONNECTION_TIMEOUT + " seconds");
-                            }
-                        } catch (InterruptedException e) {
-                            closeWatch(watch);
-                            throw e;
+                        if (attempt.awaitStarted(WEBSOCKET_CONNECTION_TIMEOUT)) {
+                            connection = attempt;
+                        } else {
+                            launcher.getListener()
+                                    .error("Timed out waiting for websocket connection. "
+                                            + "You should increase the value of system property "
+                                            + WEBSOCKET_CONNECTION_TIMEOUT_SYSTEM_PROPERTY + " currently set at "
+                                            + WEBSOCKET_CONNECTION_TIMEOUT + " seconds");
                         }
-
                     } catch (KubernetesAuthException e) {
                         launcher.getListener().getLogger().print("Failed to authenticate with Kubernetes cluster: ");
                         e.printStackTrace(launcher.getListener().getLogger());
@@ -558,30 +676,30 @@ public class ContainerExecDecorator extends LauncherDecorator implements Seriali
                         e.printStackTrace(launcher.getListener().getLogger());
                     } finally {
                         attempts++;
+                        if (connection == null) {
+                            Metrics.metricRegistry()
+                                    .counter(MetricNames.EXEC_CONNECT_FAILURES)
+                                    .inc();
+                        }
                     }
                 }
 
-                if (watchWrapper == null || watchWrapper.getExecWatch() == null) {
+                if (connection == null || connection.getExecWatch() == null) {
                     throw new AbortException("Failed to start websocket connection after " + attempts
                             + " attempts. Check logs above for more details.");
                 }
 
-                ExecWatch watch = watchWrapper.getExecWatch();
-                final AtomicBoolean alive = watchWrapper.getAlive();
-                final CountDownLatch finished = watchWrapper.getFinished();
+                ExecWatch watch = connection.getExecWatch();
+                final AtomicBoolean alive = connection.getAlive();
+                final CountDownLatch finished = connection.getFinished();
 
                 try {
-                    // Depends on the ping time with the Kubernetes API server
-                    // Not fully satisfied with this solution because it can delay the execution
-                    if (finished.await(COMMAND_FINISHED_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
-                        launcher.getListener()
-                                .error(
-                                        "Process exited immediately after creation. See output below%n%s",
-                                        stdout.toString(StandardCharsets.UTF_8.name()));
-                        throw new AbortException(
-                                "Process exited immediately after creation. Check logs above for more details.");
+                    // The script is sent right away. A shell exiting before that has already been reported by the
+                    // listener, and one exiting while it is sent makes the write fail. The stdin pipe is buffered, so
+                    // a shell that could not be run is usually only reported once the launch returned, see below.
+                    if (finished.getCount() == 0) {
+                        throw exitedImmediately(stdout);
                     }
-                    toggleStdout.disable();
                     OutputStream stdin = watch.getInput();
                     PrintStream in = new PrintStream(stdin, true, StandardCharsets.UTF_8);
                     if (!launcher.isUnix()) {
@@ -595,31 +713,11 @@ public class ContainerExecDecorator extends LauncherDecorator implements Seriali
                         in.print(newLine(!launcher.isUnix()));
                     }
 
-                    EnvVars envVars = new EnvVars();
-
-                    // get global vars here, run the export first as they'll get overwritten.
-                    if (globalVars != null) {
-                        envVars.overrideAll(globalVars);
-                    }
-
-                    if (rcEnvVars != null) {
-                        envVars.overrideAll(rcEnvVars);
-                    }
-
-                    if (environmentExpander != null) {
-                        environmentExpander.expand(envVars);
-                    }
-
-                    // setup specific command envs passed into cmd
-                    if (cmdEnvs != null) {
-                        for (String cmdEnv : cmdEnvs) {
-                            envVars.addLine(cmdEnv);
-                        }
-                    }
+                    EnvVars envVars = buildEnvVars(cmdEnvs);
 
                     LOGGER.log(Level.FINEST, "Launching with env vars: {0}", envVars.toString());
 
-                    setupEnvironmentVariable(envVars, in, !launcher.isUnix());
+                    setupEnvironment(envVars, baseEnvironmentFile, in, !launcher.isUnix());
                     if (!launcher.isUnix() && toggleOutputForCaller != null) {
                         // Windows welcome message should not be sent to the caller as it is a side-effect of calling
                         // the wrapping cmd.exe
@@ -630,32 +728,29 @@ public class ContainerExecDecorator extends LauncherDecorator implements Seriali
                         stream.flush();
                         long beginning = System.currentTimeMillis();
                         // watch for the prompt character
-                        while (!dryRunCaller
-                                .toString(StandardCharsets.UTF_8.name())
-                                .contains(">")) {
-                            Thread.sleep(100);
-                        }
+                        promptDetector.await();
                         LOGGER.log(
                                 Level.FINEST,
                                 "Windows prompt printed after " + (System.currentTimeMillis() - beginning) + " ms");
                     }
-                    // We don't need to capture output anymore
-                    if (toggleDryRunCaller != null) {
-                        toggleDryRunCaller.disable();
-                    }
-                    // Clear any captured bytes
-                    if (dryRunCaller != null) {
-                        dryRunCaller.reset();
-                    }
                     if (toggleOutputForCaller != null) {
                         toggleOutputForCaller.enable();
                     }
-                    doExec(in, !launcher.isUnix(), printStream, masks, commands);
+                    doExec(in, !launcher.isUnix(), printStream, masks, true, commands);
+                    if (in.checkError() && finished.getCount() == 0) {
+                        throw exitedImmediately(stdout);
+                    }
+                    toggleStdout.disable();
 
                     LOGGER.fine(() -> "Created process inside pod: [" + getPodName() + "], container: [" + containerName
                             + "]" + "[" + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startMethod) + " ms]");
                     ContainerExecProc proc = new ContainerExecProc(watch, alive, finished, stdin, printStream);
                     closables.add(proc);
+                    connection.getExecFailure().thenAccept(status -> {
+                        if (status != null) {
+                            reportExitedImmediately(stdout, status);
+                        }
+                    });
                     return proc;
                 } catch (InterruptedException ie) {
                     closeWatch(watch);
@@ -666,6 +761,21 @@ public class ContainerExecDecorator extends LauncherDecorator implements Seriali
                 }
             }
 
+            private AbortException exitedImmediately(RingBufferOutputStream stdout) {
+                reportExitedImmediately(stdout, null);
+                return new AbortException(
+                        "Process exited immediately after creation. Check logs above for more details.");
+            }
+
+            private void reportExitedImmediately(RingBufferOutputStream stdout, @CheckForNull Status status) {
+                String output = stdout.toString(StandardCharsets.UTF_8);
+                if (status != null && status.getMessage() != null) {
+                    output += status.getMessage();
+                }
+                launcher.getListener()
+                        .error("Process exited immediately after creation. See output below%n%s", output);
+            }
+
             @Override
             public void kill(Map<String, String> modelEnvVars) throws IOException, InterruptedException {
                 getListener().getLogger().println("Killing processes");
@@ -678,6 +788,7 @@ public class ContainerExecDecorator extends LauncherDecorator implements Seriali
                                     null,
                                     null,
                                     null,
+                                    null,
                                     "sh",
                                     "-c",
                                     "kill \\`grep -l '" + COOKIE_VAR + "=" + cookie
@@ -697,6 +808,7 @@ public class ContainerExecDecorator extends LauncherDecorator implements Seriali
                                                 null,
                                                 null,
                                                 null,
+                                                null,
                                                 "powershell.exe",
                                                 "-NoProfile",
                                                 "-File",
@@ -723,17 +835,29 @@ public class ContainerExecDecorator extends LauncherDecorator implements Seriali
                         .println("Attempt to gracefully kill processes finished with exit code " + exitCode);
             }
 
-            private void setupEnvironmentVariable(EnvVars vars, PrintStream out, boolean windows) throws IOException {
-                for (Map.Entry<String, String> entry : vars.entrySet()) {
-                    // Check that key is bash compliant.
-                    if (entry.getKey().matches("[a-zA-Z_][a-zA-Z0-9_]*")) {
-                        out.print(String.format(
-                                windows ? "set %s=%s" : "export %s='%s'",
-                                entry.getKey(),
-                                windows ? entry.getValue() : entry.getValue().replace("'", "'\\''")));
-                        out.print(newLine(windows));
+            private EnvVars buildEnvVars(String[] cmdEnvs) throws IOException, InterruptedException {
+                EnvVars envVars = new EnvVars();
+
+                // get global vars here, run the export first as they'll get overwritten.
+                if (globalVars != null) {
+                    envVars.overrideAll(globalVars);
+                }
+
+                if (rcEnvVars != null) {
+                    envVars.overrideAll(rcEnvVars);
+                }
+
+                if (environmentExpander != null) {
+                    environmentExpander.expand(envVars);
+                }
+
+                // setup specific command envs passed into cmd
+                if (cmdEnvs != null) {
+                    for (String cmdEnv : cmdEnvs) {
+                        envVars.addLine(cmdEnv);
                     }
                 }
+                return envVars;
             }
 
             private static TemporaryFile withTemporaryScript(FilePath workspace, String name)
@@ -747,47 +871,279 @@ public class ContainerExecDecorator extends LauncherDecorator implements Seriali
         return windows ? "\r\n" : "\n";
     }
 
-    @Override
-    public void close() throws IOException {
-        if (closables == null) return;
+    private static void setupEnvironmentVariable(EnvVars vars, PrintStream out, boolean windows) {
+        for (Map.Entry<String, String> entry : vars.entrySet()) {
+            // Check that key is bash compliant.
+            if (isShellVariable(entry.getKey())) {
+                out.print(String.format(
+                        windows ? "set %s=%s" : "export %s='%s'",
+                        entry.getKey(),
+                        windows ? entry.getValue() : entry.getValue().replace("'", "'\\''")));
+                out.print(newLine(windows));
+            }
+        }
+    }
 
-        for (Closeable closable : closables) {
-            try {
-                closable.close();
-            } catch (Exception e) {
-                LOGGER.log(Level.FINE, "failed to close", e);
+    private static boolean isShellVariable(String name) {
+        return name.matches("[a-zA-Z_][a-zA-Z0-9_]*");
+    }
+
+    /**
+     * Sets up the environment of a launch, sourcing the base environment file if there is one and only sending the
+     * variables that differ from it.
+     */
+    void setupEnvironment(EnvVars vars, String baseEnvironmentFile, PrintStream out, boolean windows) {
+        if (baseEnvironmentFile == null) {
+            setupEnvironmentVariable(vars, out, windows);
+            return;
+        }
+        EnvVars base = getBaseEnvironment();
+        out.printf(". \"%s\"", baseEnvironmentFile);
+        out.print(newLine(false));
+        EnvVars delta = new EnvVars();
+        for (Map.Entry<String, String> entry : vars.entrySet()) {
+            if (!entry.getValue().equals(base.get(entry.getKey()))) {
+                delta.put(entry.getKey(), entry.getValue());
+            }
+        }
+        setupEnvironmentVariable(delta, out, false);
+        for (String name : base.keySet()) {
+            if (!vars.containsKey(name) && isShellVariable(name)) {
+                out.print("unset " + name);
+                out.print(newLine(false));
+            }
+        }
+    }
+
+    /**
+     * The environment common to all the launches in this container: the global and run environments, without the
+     * sensitive variables, which must not be written to the workspace.
+     * The variables bound by steps, such as credentials, are not part of it.
+     */
+    synchronized EnvVars getBaseEnvironment() {
+        if (baseEnvironment == null) {
+            EnvVars envVars = new EnvVars();
+            if (globalVars != null) {
+                envVars.overrideAll(globalVars);
+            }
+            if (rcEnvVars != null) {
+                envVars.overrideAll(rcEnvVars);
             }
+            if (sensitiveVariables != null) {
+                envVars.keySet().removeAll(sensitiveVariables);
+            }
+            baseEnvironment = envVars;
         }
+        return baseEnvironment;
     }
 
     /**
-     * Wrapper of ExecWatch that also hold watch attributes for liveness and closure.
+     * Writes the base environment to a file in the workspace temporary directory, once for this container, and
+     * checks once that the container can read it, as it may run as another user than the agent.
+     * The file is in the temporary directory of the workspace, so that it is not removed by cleaning the workspace.
+     * @param pwd the working directory of the launch, on the agent
+     * @param containerWorkingDir the working directory of the container
+     * @return the path of the file in the container, or null to send the whole environment
      */
-    private static class ExecWatchWrapper {
+    private synchronized String getBaseEnvironmentFile(@NonNull FilePath pwd, @NonNull String containerWorkingDir)
+            throws IOException, InterruptedException {
+        if (baseEnvironmentFileUnreadable) {
+            return null;
+        }
+        if (baseEnvironmentFile == null) {
+            if (getBaseEnvironment().keySet().stream().noneMatch(ContainerExecDecorator::isShellVariable)) {
+                return null;
+            }
+            FilePath tmp = WorkspaceList.tempDir(pwd);
+            if (tmp == null) {
+                return null;
+            }
+            tmp.mkdirs();
+            FilePath file = tmp.createTempFile("container-env", ".sh");
+            // containers may run as another user than the agent
+            file.chmod(0644);
+            ByteArrayOutputStream exports = new ByteArrayOutputStream();
+            PrintStream out = new PrintStream(exports, false, StandardCharsets.UTF_8);
+            setupEnvironmentVariable(getBaseEnvironment(), out, false);
+            out.flush();
+            file.write(exports.toString(StandardCharsets.UTF_8), StandardCharsets.UTF_8.name());
+            if (!isReadableInContainer(toContainerPath(file, containerWorkingDir))) {
+                LOGGER.log(
+                        Level.FINE,
+                        "Container {0} cannot read {1}, sending the whole environment instead",
+                        new Object[] {containerName, file});
+                baseEnvironmentFileUnreadable = true;
+                file.delete();
+                return null;
+            }
+            baseEnvironmentFile = file;
+        }
+        return toContainerPath(baseEnvironmentFile, containerWorkingDir);
+    }
 
-        /* the watch */
-        private final ExecWatch execWatch;
-        /* atomic boolean value for watch liveness */
-        private final AtomicBoolean alive;
-        /* count down latch value for watch exit */
-        private final CountDownLatch finished;
+    private static String toContainerPath(FilePath file, String containerWorkingDir) {
+        String remote = file.getRemote();
+        return containerWorkingDir.equals(ContainerTemplate.DEFAULT_WORKING_DIR)
+                ? remote
+                : remote.replaceFirst(ContainerTemplate.DEFAULT_WORKING_DIR, containerWorkingDir);
+    }
 
-        public ExecWatchWrapper(ExecWatch execWatch, AtomicBoolean alive, CountDownLatch finished) {
-            this.execWatch = execWatch;
-            this.alive = alive;
-            this.finished = finished;
+    private boolean isReadableInContainer(String path) throws IOException, InterruptedException {
+        try (ExecWatch watch = nodeContext
+                .getPodResource()
+                .inContainer(containerName)
+                .exec("sh", "-c", "test -r \"$0\"", path)) {
+            Integer exitCode = watch.exitCode().get(WEBSOCKET_CONNECTION_TIMEOUT, TimeUnit.SECONDS);
+            return exitCode != null && exitCode == 0;
+        } catch (KubernetesAuthException | KubernetesClientException | ExecutionException | TimeoutException e) {
+            LOGGER.log(Level.FINE, "Failed to check that container " + containerName + " can read " + path, e);
+            return false;
         }
+    }
 
-        public ExecWatch getExecWatch() {
-            return execWatch;
+    /**
+     * Takes a connection opened in advance, if any, and opens new ones in the background.
+     * @param sh the shell the connections run
+     * @return the connection, or null if none is available
+     */
+    private ContainerExecConnection takePooledConnection(String[] sh) {
+        if (EXEC_POOL_SIZE <= 0) {
+            return null;
         }
+        Deque<ContainerExecConnection> pool = getPool(sh);
+        ContainerExecConnection connection;
+        while ((connection = pool.poll()) != null && !connection.isUsable()) {
+            connection.close();
+        }
+        Metrics.metricRegistry()
+                .counter(connection != null ? MetricNames.EXEC_POOL_HITS : MetricNames.EXEC_POOL_MISSES)
+                .inc();
+        replenish(sh);
+        return connection;
+    }
 
-        public AtomicBoolean getAlive() {
-            return alive;
+    private synchronized Deque<ContainerExecConnection> getPool(String[] sh) {
+        if (pool == null) {
+            pool = new ConcurrentLinkedDeque<>();
+            replenishing = new AtomicBoolean();
+            poolCheck = Timer.get()
+                    .scheduleWithFixedDelay(
+                            () -> checkPool(sh), EXEC_POOL_CHECK_INTERVAL, EXEC_POOL_CHECK_INTERVAL, TimeUnit.SECONDS);
         }
+        return pool;
+    }
 
-        public CountDownLatch getFinished() {
-            return finished;
+    /**
+     * Drops the connections that were closed, keeps the others alive, and replaces the dropped ones.
+     */
+    private void checkPool(String[] sh) {
+        for (ContainerExecConnection connection : pool) {
+            if (connection.isUsable()) {
+                try {
+                    OutputStream stdin = connection.getExecWatch().getInput();
+                    stdin.write(Constants.NEWLINE.getBytes(StandardCharsets.UTF_8));
+                    stdin.flush();
+                    continue;
+                } catch (IOException e) {
+                    LOGGER.log(Level.FINE, "Exec connection keepalive failed", e);
+                }
+            }
+            if (pool.remove(connection)) {
+                connection.close();
+            }
+        }
+        replenish(sh);
+    }
+
+    private void replenish(String[] sh) {
+        if (closed || !replenishing.compareAndSet(false, true)) {
+            return;
+        }
+        Timer.get().submit(() -> {
+            try {
+                while (!closed && pool.size() < EXEC_POOL_SIZE) {
+                    long start = System.nanoTime();
+                    ContainerExecConnection connection = ContainerExecConnection.open(
+                            nodeContext.getPodResource(), containerName, STDIN_BUFFER_SIZE, null, null, sh);
+                    if (!connection.awaitStarted(WEBSOCKET_CONNECTION_TIMEOUT) || !connection.isUsable()) {
+                        // try again on the next launch or health check
+                        connection.close();
+                        break;
+                    }
+                    LOGGER.log(
+                            Level.FINEST,
+                            "Opened exec connection in advance in {0} ms",
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    pool.add(connection);
+                    if (closed && pool.remove(connection)) {
+                        connection.close();
+                    }
+                }
+            } catch (Exception e) {
+                LOGGER.log(Level.FINE, "Failed to open exec connection in container " + containerName, e);
+            } finally {
+                replenishing.set(false);
+            }
+        });
+    }
+
+    /**
+     * @return the persistent shell of the container, or null if it could not be started, or if it is still running
+     *     a command and the launch would have to wait for it, e.g. from another parallel branch
+     */
+    private synchronized ContainerExecSession getSession(String[] sh) throws IOException, InterruptedException {
+        if (session != null && session.isAlive()) {
+            return session.isBusy() ? null : session;
+        }
+        try {
+            session = ContainerExecSession.open(
+                    nodeContext.getPodResource(),
+                    containerName,
+                    STDIN_BUFFER_SIZE,
+                    WEBSOCKET_CONNECTION_TIMEOUT,
+                    sh);
+        } catch (KubernetesAuthException | KubernetesClientException e) {
+            // the regular launch reports the failure
+            LOGGER.log(Level.FINE, "Failed to start shell in container " + containerName, e);
+            session = null;
+        }
+        return session;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (session != null) {
+                session.close();
+                session = null;
+            }
+            closed = true;
+            if (poolCheck != null) {
+                poolCheck.cancel(false);
+            }
+            if (pool != null) {
+                ContainerExecConnection connection;
+                while ((connection = pool.poll()) != null) {
+                    connection.close();
+                }
+            }
+            if (baseEnvironmentFile != null) {
+                try {
+                    baseEnvironmentFile.delete();
+                } catch (Exception e) {
+                    LOGGER.log(Level.FINE, "failed to delete environment file", e);
+                }
+                baseEnvironmentFile = null;
+            }
+        }
+        if (closables == null) return;
+
+        for (Closeable closable : closables) {
+            try {
+                closable.close();
+            } catch (Exception e) {
+                LOGGER.log(Level.FINE, "failed to close", e);
+            }
         }
     }
 
@@ -833,12 +1189,105 @@ public class ContainerExecDecorator extends LauncherDecorator implements Seriali
         }
     }
 
+    /**
+     * Keeps the last bytes written, up to a fixed capacity, possibly 0.
+     */
+    static class RingBufferOutputStream extends OutputStream {
+        private final byte[] buffer;
+        private int position;
+        private boolean full;
+
+        RingBufferOutputStream(int capacity) {
+            this.buffer = new byte[capacity];
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            if (buffer.length == 0) {
+                return;
+            }
+            buffer[position++] = (byte) b;
+            if (position == buffer.length) {
+                position = 0;
+                full = true;
+            }
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            if (len >= buffer.length) {
+                System.arraycopy(b, off + len - buffer.length, buffer, 0, buffer.length);
+                position = 0;
+                full = true;
+                return;
+            }
+            int first = Math.min(len, buffer.length - position);
+            System.arraycopy(b, off, buffer, position, first);
+            System.arraycopy(b, off + first, buffer, 0, len - first);
+            position += len;
+            if (position >= buffer.length) {
+                position -= buffer.length;
+                full = true;
+            }
+        }
+
+        synchronized byte[] toByteArray() {
+            if (!full) {
+                return Arrays.copyOf(buffer, position);
+            }
+            byte[] bytes = new byte[buffer.length];
+            System.arraycopy(buffer, position, bytes, 0, buffer.length - position);
+            System.arraycopy(buffer, 0, bytes, buffer.length - position, position);
+            return bytes;
+        }
+
+        String toString(Charset charset) {
+            return new String(toByteArray(), charset);
+        }
+    }
+
+    /**
+     * Discards the output, signalling when the given prompt character is first written.
+     */
+    static class PromptDetector extends OutputStream {
+        private final byte prompt;
+        private final CountDownLatch detected = new CountDownLatch(1);
+
+        PromptDetector(char prompt) {
+            this.prompt = (byte) prompt;
+        }
+
+        @Override
+        public void write(int b) {
+            if ((byte) b == prompt) {
+                detected.countDown();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            if (detected.getCount() == 0) {
+                return;
+            }
+            for (int i = off; i < off + len; i++) {
+                if (b[i] == prompt) {
+                    detected.countDown();
+                    return;
+                }
+            }
+        }
+
+        void await() throws InterruptedException {
+            detected.await();
+        }
+    }
+
     /**
      * Process given stream and mask as specified by the bitfield.
      * Uses space as a separator to determine which fragments to hide.
      */
-    private static class MaskOutputStream extends FilterOutputStream {
-        private static final String MASK_STRING = "********";
+    static class MaskOutputStream extends FilterOutputStream {
+        private static final byte[] MASK_BYTES = "********".getBytes(StandardCharsets.US_ASCII);
 
         private final boolean[] masks;
         private static final char SEPARATOR = ' ';
@@ -861,22 +1310,55 @@ public class ContainerExecDecorator extends LauncherDecorator implements Seriali
             } else if (masks[index]) {
                 if (!wrote) {
                     wrote = true;
-                    for (char c : MASK_STRING.toCharArray()) {
-                        out.write(c);
-                    }
+                    out.write(MASK_BYTES);
                 }
             } else {
                 out.write(b);
             }
         }
 
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            int end = off + len;
+            int i = off;
+            while (i < end) {
+                if (masks == null || index >= masks.length) {
+                    // past the masked arguments
+                    out.write(b, i, end - i);
+                    return;
+                }
+                int separator = i;
+                while (separator < end && !isSeparator(b[separator])) {
+                    separator++;
+                }
+                if (!masks[index]) {
+                    // fragment and its separator as a whole
+                    out.write(b, i, Math.min(separator + 1, end) - i);
+                } else {
+                    if (!wrote && separator > i) {
+                        wrote = true;
+                        out.write(MASK_BYTES);
+                    }
+                    if (separator < end) {
+                        out.write(SEPARATOR);
+                    }
+                }
+                if (separator == end) {
+                    return;
+                }
+                index++;
+                wrote = false;
+                i = separator + 1;
+            }
+        }
+
         private boolean isSeparator(int b) {
             return b == SEPARATOR;
         }
     }
 
     private static void doExec(
-            PrintStream in, boolean windows, PrintStream out, boolean[] masks, String... statements) {
+            PrintStream in, boolean windows, PrintStream out, boolean[] masks, boolean exit, String... statements) {
         long start = System.nanoTime();
         // For logging
         ByteArrayOutputStream loggingOutput = new ByteArrayOutputStream();
@@ -904,9 +1386,11 @@ public class ContainerExecDecorator extends LauncherDecorator implements Seriali
                     Level.FINEST,
                     loggingOutput.toString(encoding) + "[" + TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start)
                             + " μs." + "]");
-            // We need to exit so that we know when the command has finished.
-            tee.print(EXIT);
-            tee.print(newLine(windows));
+            if (exit) {
+                // We need to exit so that we know when the command has finished.
+                tee.print(EXIT);
+                tee.print(newLine(windows));
+            }
             tee.flush();
         } catch (UnsupportedEncodingException e) {
             LOGGER.log(Level.SEVERE, "Failed to execute command because of unsupported encoding", e);
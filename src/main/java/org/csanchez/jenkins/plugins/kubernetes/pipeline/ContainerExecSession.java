@@ -0,0 +1,427 @@
+package org.csanchez.jenkins.plugins.kubernetes.pipeline;
+
+import static org.csanchez.jenkins.plugins.kubernetes.pipeline.Constants.*;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Proc;
+import io.fabric8.kubernetes.client.dsl.ExecListener;
+import io.fabric8.kubernetes.client.dsl.ExecWatch;
+import io.fabric8.kubernetes.client.dsl.PodResource;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.util.Timer;
+
+/**
+ * A long-lived shell running in a container, on which successive commands are launched without opening a new exec
+ * websocket each time.
+ * <p>
+ * Each command runs in a subshell, so that its working directory and environment do not leak to the next one,
+ * and is framed by start and exit markers written by the shell itself. The output of the shell is demultiplexed
+ * according to these markers. The start marker carries the process id of the subshell, so that the command alone
+ * can be killed, and the exit marker carries its exit code.
+ * <p>
+ * Commands are queued in the shell input and run one after the other, so a command only starts once the previous
+ * one has returned. Callers are expected to launch a command only while the session is not {@link #isBusy() busy}.
+ */
+class ContainerExecSession implements Closeable, Runnable {
+
+    private static final Logger LOGGER = Logger.getLogger(ContainerExecSession.class.getName());
+
+    private final String prefix = "__KUBERNETES_EXEC_" + UUID.randomUUID().toString().replace("-", "") + "_";
+    private final AtomicBoolean alive = new AtomicBoolean();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<Long, Command> commands = new ConcurrentHashMap<>();
+    final FrameDecoder decoder = new FrameDecoder();
+    private final PodResource pod;
+    private final String containerName;
+    private ExecWatch watch;
+
+    private ContainerExecSession(@NonNull PodResource pod, @NonNull String containerName) {
+        this.pod = pod;
+        this.containerName = containerName;
+    }
+
+    ContainerExecSession(@NonNull ExecWatch watch, @NonNull PodResource pod, @NonNull String containerName) {
+        this(pod, containerName);
+        this.watch = watch;
+        alive.set(true);
+    }
+
+    /**
+     * Starts a shell in the given container.
+     * @param pod the pod
+     * @param containerName the container
+     * @param stdinBufferSize the size of the stdin buffer of the exec
+     * @param timeoutSeconds how long to wait for the websocket to connect
+     * @param shell the shell command
+     * @return the session, or null if the websocket could not be connected in time
+     */
+    @CheckForNull
+    static ContainerExecSession open(
+            @NonNull PodResource pod,
+            @NonNull String containerName,
+            int stdinBufferSize,
+            int timeoutSeconds,
+            @NonNull String... shell)
+            throws InterruptedException {
+        ContainerExecSession session = new ContainerExecSession(pod, containerName);
+        CountDownLatch started = new CountDownLatch(1);
+        session.watch = pod.inContainer(containerName)
+                .redirectingInput(stdinBufferSize)
+                .writingOutput(session.decoder)
+                .writingError(session.decoder)
+                .usingListener(new ExecListener() {
+                    @Override
+                    public void onOpen() {
+                        session.alive.set(true);
+                        started.countDown();
+                    }
+
+                    @Override
+                    public void onFailure(Throwable t, Response response) {
+                        LOGGER.log(Level.FINE, "Exec session failed in container " + containerName, t);
+                        session.terminate();
+                        started.countDown();
+                    }
+
+                    @Override
+                    public void onClose(int code, String reason) {
+                        LOGGER.log(Level.FINE, "Exec session closed in container {0}: {1} {2}", new Object[] {
+                            containerName, code, reason
+                        });
+                        session.terminate();
+                        started.countDown();
+                    }
+                })
+                .exec(shell);
+        if (!started.await(timeoutSeconds, TimeUnit.SECONDS) || !session.isAlive()) {
+            session.close();
+            return null;
+        }
+        Timer.get().schedule(session, 1, TimeUnit.MINUTES);
+        return session;
+    }
+
+    boolean isAlive() {
+        return alive.get();
+    }
+
+    /**
+     * @return whether a command launched in the session has not returned yet, so that a new one would have to wait
+     */
+    boolean isBusy() {
+        return !commands.isEmpty();
+    }
+
+    /**
+     * Launches a command in the shell.
+     * @param body writes the commands to run, one per line
+     * @param output receives the output of the command, both stdout and stderr
+     * @return the launched process
+     * @throws IOException if the command could not be sent to the shell, in which case the session is closed
+     */
+    @NonNull
+    Proc launch(@NonNull Consumer<PrintStream> body, @CheckForNull OutputStream output) throws IOException {
+        long seq = sequence.incrementAndGet();
+        Command command = new Command(output);
+        commands.put(seq, command);
+
+        ByteArrayOutputStream script = new ByteArrayOutputStream();
+        PrintStream ps = new PrintStream(script, false, StandardCharsets.UTF_8);
+        // $$ is the pid of the session shell in the subshell too, but the parent of a child process is the subshell
+        ps.print("(" + NEWLINE);
+        ps.print("printf '\\n%s ' '" + prefix + seq + " START'; sh -c 'echo $PPID'" + NEWLINE);
+        body.accept(ps);
+        ps.print(") </dev/null 2>&1" + NEWLINE);
+        ps.print("printf '\\n%s %s\\n' '" + prefix + seq + " EXIT' \"$?\"" + NEWLINE);
+        ps.flush();
+        try {
+            write(script.toByteArray());
+        } catch (IOException e) {
+            commands.remove(seq);
+            close();
+            throw e;
+        }
+        return new SessionProc(seq, command);
+    }
+
+    /**
+     * Kills a command, along with its child processes, from a separate exec so that the session is left running.
+     */
+    private void killCommand(long seq, @NonNull String pid) {
+        Timer.get().submit(() -> {
+            try {
+                ExecWatch killWatch = pod.inContainer(containerName)
+                        .exec("sh", "-c", "pkill -TERM -P \"$0\" 2>/dev/null; kill -TERM \"$0\"", pid);
+                killWatch.exitCode().whenComplete((code, t) -> killWatch.close());
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.FINE, "Failed to kill command " + seq + " in container " + containerName, e);
+            }
+        });
+    }
+
+    private synchronized void write(byte[] bytes) throws IOException {
+        if (!isAlive()) {
+            throw new IOException("Exec session is closed");
+        }
+        OutputStream stdin = watch.getInput();
+        stdin.write(bytes);
+        stdin.flush();
+    }
+
+    /**
+     * Keeps the websocket alive while the session is not used.
+     */
+    @Override
+    public void run() {
+        if (!isAlive()) {
+            return;
+        }
+        try {
+            write(NEWLINE.getBytes(StandardCharsets.UTF_8));
+            Timer.get().schedule(this, 1, TimeUnit.MINUTES);
+        } catch (IOException x) {
+            LOGGER.log(Level.FINE, "Exec session keepalive failed", x);
+            close();
+        }
+    }
+
+    private void terminate() {
+        alive.set(false);
+        // commands still queued will never report their exit code
+        commands.values().forEach(c -> c.exitCode.complete(-1));
+        commands.clear();
+    }
+
+    @Override
+    public void close() {
+        terminate();
+        if (watch != null) {
+            try {
+                watch.close();
+            } catch (Exception e) {
+                LOGGER.log(Level.FINE, "failed to close exec session", e);
+            }
+        }
+    }
+
+    private static final class Command {
+        private final OutputStream output;
+        private final CompletableFuture<Integer> exitCode = new CompletableFuture<>();
+        /** the pid of the subshell, once started */
+        private String pid;
+        /** whether the command was killed, so that it is killed as soon as it starts if it had not yet */
+        private boolean killed;
+
+        Command(OutputStream output) {
+            this.output = output;
+        }
+    }
+
+    /**
+     * Splits the output of the shell by command, according to the markers.
+     * A newline right before a marker is written by the marker itself, so it is not forwarded.
+     */
+    class FrameDecoder extends OutputStream {
+        private final byte[] prefixBytes = prefix.getBytes(StandardCharsets.UTF_8);
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        private boolean candidate;
+        private boolean atLineStart = true;
+        private boolean pendingNewline;
+        private Command current;
+
+        @Override
+        public synchronized void write(int b) throws IOException {
+            if (candidate) {
+                line.write(b);
+                if (b == '\n') {
+                    candidate = false;
+                    atLineStart = true;
+                    onLine();
+                } else if (line.size() <= prefixBytes.length && prefixBytes[line.size() - 1] != (byte) b) {
+                    candidate = false;
+                    atLineStart = false;
+                    emitPendingNewline();
+                    emit(line.toByteArray(), 0, line.size());
+                }
+                return;
+            }
+            if (atLineStart && (byte) b == prefixBytes[0]) {
+                candidate = true;
+                line.reset();
+                line.write(b);
+                return;
+            }
+            emitPendingNewline();
+            if (b == '\n') {
+                pendingNewline = true;
+                atLineStart = true;
+            } else {
+                atLineStart = false;
+                if (current != null && current.output != null) {
+                    current.output.write(b);
+                }
+            }
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) throws IOException {
+            int end = off + len;
+            int i = off;
+            while (i < end) {
+                if (!candidate && !atLineStart) {
+                    // in the middle of a line of output, forward everything up to the end of the line at once
+                    int eol = i;
+                    while (eol < end && b[eol] != '\n') {
+                        eol++;
+                    }
+                    emit(b, i, eol - i);
+                    if (eol == end) {
+                        return;
+                    }
+                    i = eol;
+                }
+                write(b[i++]);
+            }
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            if (current != null && current.output != null) {
+                current.output.flush();
+            }
+        }
+
+        private void onLine() throws IOException {
+            byte[] bytes = line.toByteArray();
+            String text = new String(bytes, 0, bytes.length - 1, StandardCharsets.UTF_8);
+            if (text.startsWith(prefix)) {
+                String[] frame = text.substring(prefix.length()).split(" ");
+                try {
+                    long seq = Long.parseLong(frame[0]);
+                    if (frame.length == 3 && frame[1].equals("START")) {
+                        pendingNewline = false;
+                        current = commands.get(seq);
+                        if (current != null) {
+                            String pid = String.valueOf(Long.parseLong(frame[2]));
+                            boolean killed;
+                            synchronized (current) {
+                                current.pid = pid;
+                                killed = current.killed;
+                            }
+                            if (killed) {
+                                killCommand(seq, pid);
+                            }
+                        }
+                        return;
+                    }
+                    if (frame.length == 3 && frame[1].equals("EXIT")) {
+                        pendingNewline = false;
+                        Command command = commands.remove(seq);
+                        if (command != null) {
+                            flush();
+                            command.exitCode.complete(Integer.parseInt(frame[2]));
+                        }
+                        current = null;
+                        return;
+                    }
+                } catch (NumberFormatException e) {
+                    // not a marker after all
+                }
+            }
+            emitPendingNewline();
+            emit(bytes, 0, bytes.length - 1);
+            pendingNewline = true;
+        }
+
+        private void emitPendingNewline() throws IOException {
+            if (pendingNewline) {
+                pendingNewline = false;
+                if (current != null && current.output != null) {
+                    current.output.write('\n');
+                }
+            }
+        }
+
+        private void emit(byte[] bytes, int off, int len) throws IOException {
+            // output between commands, such as the shell prompt, is dropped
+            if (len > 0 && current != null && current.output != null) {
+                current.output.write(bytes, off, len);
+            }
+        }
+    }
+
+    /**
+     * A command launched in the session.
+     * Killing it only kills its subshell, right away if it has started or as soon as it does otherwise.
+     */
+    private class SessionProc extends Proc {
+        private final long seq;
+        private final Command command;
+
+        SessionProc(long seq, Command command) {
+            this.seq = seq;
+            this.command = command;
+        }
+
+        @Override
+        public boolean isAlive() {
+            return !command.exitCode.isDone();
+        }
+
+        @Override
+        public void kill() {
+            String pid;
+            synchronized (command) {
+                command.killed = true;
+                pid = command.pid;
+            }
+            if (pid != null && isAlive()) {
+                killCommand(seq, pid);
+            }
+        }
+
+        @Override
+        public int join() throws InterruptedException {
+            try {
+                return command.exitCode.get();
+            } catch (ExecutionException e) {
+                LOGGER.log(Level.FINEST, "ExecutionException occurred while waiting for exit code", e);
+                return -1;
+            }
+        }
+
+        @Override
+        public InputStream getStdout() {
+            return null;
+        }
+
+        @Override
+        public InputStream getStderr() {
+            return null;
+        }
+
+        @Override
+        public OutputStream getStdin() {
+            return null;
+        }
+    }
+}
@@ -6,6 +6,8 @@ import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.EnvVars;
 import hudson.LauncherDecorator;
+import hudson.model.ParameterValue;
+import hudson.model.ParametersAction;
 import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.slaves.EnvironmentVariablesNodeProperty;
@@ -14,7 +16,9 @@ import hudson.slaves.NodePropertyDescriptor;
 import hudson.util.DescribableList;
 import java.io.Closeable;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import jenkins.model.Jenkins;
@@ -64,10 +68,19 @@ public class ContainerStepExecution extends StepExecution {
         }
 
         EnvVars rcEnvVars = null;
+        Set<String> sensitiveVariables = new HashSet<>();
         Run run = getContext().get(Run.class);
         TaskListener taskListener = getContext().get(TaskListener.class);
         if (run != null && taskListener != null) {
             rcEnvVars = run.getEnvironment(taskListener);
+            ParametersAction parameters = run.getAction(ParametersAction.class);
+            if (parameters != null) {
+                for (ParameterValue parameter : parameters.getAllParameters()) {
+                    if (parameter.isSensitive()) {
+                        sensitiveVariables.add(parameter.getName());
+                    }
+                }
+            }
         }
 
         decorator = new ContainerExecDecorator();
@@ -76,6 +89,7 @@ public class ContainerStepExecution extends StepExecution {
         decorator.setEnvironmentExpander(env);
         decorator.setGlobalVars(globalVars);
         decorator.setRunContextEnvVars(rcEnvVars);
+        decorator.setSensitiveVariables(sensitiveVariables);
         decorator.setShell(shell);
         getContext()
                 .newBodyInvoker()
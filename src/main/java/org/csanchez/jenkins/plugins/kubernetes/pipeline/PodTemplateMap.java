@@ -8,6 +8,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.csanchez.jenkins.plugins.kubernetes.KubernetesCloud;
@@ -30,6 +31,11 @@ public class PodTemplateMap {
      */
     private Map<String, List<PodTemplate>> map = new CopyOnWriteMap.Hash<>();
 
+    /**
+     * Incremented on every change of {@link #map}.
+     */
+    private final AtomicLong version = new AtomicLong();
+
     /**
      * Returns a read-only view of the templates available for the corresponding cloud instance.
      * @param cloud The kubernetes cloud instance for which templates are needed
@@ -58,6 +64,7 @@ public class PodTemplateMap {
             List<PodTemplate> list = getOrCreateTemplateList(cloud);
             list.add(podTemplate);
             map.put(cloud.name, list);
+            version.incrementAndGet();
         }
     }
 
@@ -66,7 +73,9 @@ public class PodTemplateMap {
             LOGGER.log(
                     Level.FINE,
                     "Unregistering template with id=" + podTemplate.getId() + " from kubernetes cloud " + cloud.name);
-            getOrCreateTemplateList(cloud).remove(podTemplate);
+            if (getOrCreateTemplateList(cloud).remove(podTemplate)) {
+                version.incrementAndGet();
+            }
         }
     }
 
@@ -78,5 +87,10 @@ public class PodTemplateMap {
         public List<PodTemplate> getList(@NonNull KubernetesCloud cloud) {
             return PodTemplateMap.get().getTemplates(cloud);
         }
+
+        @Override
+        protected long getVersion(@NonNull KubernetesCloud cloud) {
+            return PodTemplateMap.get().version.get();
+        }
     }
 }
@@ -67,6 +67,7 @@ public class PodTemplateStep extends Step implements Serializable {
 
     private Integer instanceCap = Integer.MAX_VALUE;
     private int idleMinutes;
+    private int minIdle;
     private int slaveConnectTimeout = PodTemplate.DEFAULT_SLAVE_JENKINS_CONNECTION_TIMEOUT;
     private int activeDeadlineSeconds;
 
@@ -261,6 +262,15 @@ public class PodTemplateStep extends Step implements Serializable {
         this.idleMinutes = idleMinutes;
     }
 
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    @DataBoundSetter
+    public void setMinIdle(int minIdle) {
+        this.minIdle = minIdle;
+    }
+
     @CheckForNull
     public int getSlaveConnectTimeout() {
         return slaveConnectTimeout;
@@ -456,6 +466,7 @@ public class PodTemplateStep extends Step implements Serializable {
             "podRetention",
             "supplementalGroups",
             "idleMinutes",
+            "minIdle",
             "activeDeadlineSeconds",
             "serviceAccount",
             "nodeSelector",
@@ -28,6 +28,7 @@ import org.csanchez.jenkins.plugins.kubernetes.PodAnnotation;
 import org.csanchez.jenkins.plugins.kubernetes.PodImagePullSecret;
 import org.csanchez.jenkins.plugins.kubernetes.PodTemplate;
 import org.csanchez.jenkins.plugins.kubernetes.PodTemplateUtils;
+import org.csanchez.jenkins.plugins.kubernetes.WarmPool;
 import org.jenkinsci.plugins.workflow.steps.AbstractStepExecutionImpl;
 import org.jenkinsci.plugins.workflow.steps.BodyExecutionCallback;
 import org.jenkinsci.plugins.workflow.steps.BodyInvoker;
@@ -104,6 +105,7 @@ public class PodTemplateStepExecution extends AbstractStepExecutionImpl {
         }
         newTemplate.setInstanceCap(step.getInstanceCap());
         newTemplate.setIdleMinutes(step.getIdleMinutes());
+        newTemplate.setMinIdle(step.getMinIdle());
         newTemplate.setSlaveConnectTimeout(step.getSlaveConnectTimeout());
         newTemplate.setLabel(label);
         newTemplate.setEnvVars(step.getEnvVars());
@@ -164,6 +166,7 @@ public class PodTemplateStepExecution extends AbstractStepExecutionImpl {
                             "Registering template with id=" + newTemplate.getId() + ",label=" + newTemplate.getLabel());
         }
         cloud.addDynamicTemplate(newTemplate);
+        WarmPool.get().register(cloud, newTemplate);
         BodyInvoker invoker = getContext()
                 .newBodyInvoker()
                 .withContexts(step, new PodTemplateContext(namespace, name))
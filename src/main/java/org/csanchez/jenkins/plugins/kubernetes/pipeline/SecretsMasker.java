@@ -23,8 +23,13 @@ import hudson.util.LogTaskListener;
 import io.fabric8.kubernetes.api.model.Container;
 import io.fabric8.kubernetes.api.model.EnvVar;
 import io.fabric8.kubernetes.api.model.EnvVarSource;
+import io.fabric8.kubernetes.api.model.ManagedFieldsEntry;
+import io.fabric8.kubernetes.api.model.ObjectMeta;
 import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.Secret;
 import io.fabric8.kubernetes.api.model.SecretKeySelector;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
 import io.fabric8.kubernetes.client.dsl.ExecListener;
 import io.fabric8.kubernetes.client.dsl.ExecWatch;
 import io.fabric8.kubernetes.client.utils.Serialization;
@@ -32,10 +37,17 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.WeakHashMap;
 import java.util.concurrent.Semaphore;
@@ -77,7 +89,8 @@ public final class SecretsMasker extends TaskListenerDecorator {
     @Extension
     public static final class Factory extends DynamicContext.Typed<TaskListenerDecorator> {
 
-        private final Map<KubernetesComputer, Set<String>> secrets = new WeakHashMap<>();
+        /** maskers by agent, {@code null} for agents without secrets to mask */
+        private final Map<KubernetesComputer, SecretsMasker> maskers = new WeakHashMap<>();
 
         @Override
         protected Class<TaskListenerDecorator> type() {
@@ -96,13 +109,12 @@ public final class SecretsMasker extends TaskListenerDecorator {
             if (c == null) {
                 return null;
             }
-            synchronized (secrets) {
-                if (secrets.containsKey(c)) {
-                    Set<String> values = secrets.get(c);
-                    if (values != null) {
+            synchronized (maskers) {
+                if (maskers.containsKey(c)) {
+                    SecretsMasker masker = maskers.get(c);
+                    if (masker != null) {
                         LOGGER.log(Level.FINE, "Using cached secrets for {0}", c);
-                        return TaskListenerDecorator.merge(
-                                context.get(TaskListenerDecorator.class), new SecretsMasker(values));
+                        return TaskListenerDecorator.merge(context.get(TaskListenerDecorator.class), masker);
                     } else {
                         LOGGER.log(Level.FINE, "Cached absence of secrets for {0}", c);
                         return null;
@@ -110,12 +122,14 @@ public final class SecretsMasker extends TaskListenerDecorator {
                 }
             }
             Set<String> values = secretsOf(c);
-            synchronized (secrets) {
-                secrets.put(c, values);
+            // the pattern is compiled once per agent
+            SecretsMasker masker = values != null ? new SecretsMasker(values) : null;
+            synchronized (maskers) {
+                maskers.put(c, masker);
             }
-            if (values != null) {
+            if (masker != null) {
                 LOGGER.fine("masking " + values.size() + " values");
-                return TaskListenerDecorator.merge(context.get(TaskListenerDecorator.class), new SecretsMasker(values));
+                return TaskListenerDecorator.merge(context.get(TaskListenerDecorator.class), masker);
             } else {
                 LOGGER.fine("no values to mask");
                 return null;
@@ -136,12 +150,13 @@ public final class SecretsMasker extends TaskListenerDecorator {
             if (template == null) {
                 return null;
             }
-            Pod pod = template.build(slave);
+            // the pod the agent was launched with, rather than building it again from the template
+            Pod pod = slave.getPod().orElseGet(() -> template.build(slave));
             Set<String> values = new HashSet<>();
             values.add(c.getJnlpMac());
             LOGGER.finer(() -> "inspecting " + Serialization.asYaml(pod));
+            Map<String, Map<String, SecretKeySelector>> secretContainerKeys = new TreeMap<>();
             for (Container container : pod.getSpec().getContainers()) {
-                Set<String> secretContainerKeys = new TreeSet<>();
                 List<EnvVar> env = container.getEnv();
                 if (env != null) {
                     for (EnvVar envVar : env) {
@@ -149,74 +164,203 @@ public final class SecretsMasker extends TaskListenerDecorator {
                         if (envVarSource != null) {
                             SecretKeySelector secretKeySelector = envVarSource.getSecretKeyRef();
                             if (secretKeySelector != null) {
-                                secretContainerKeys.add(envVar.getName());
+                                secretContainerKeys
+                                        .computeIfAbsent(container.getName(), k -> new TreeMap<>())
+                                        .put(envVar.getName(), secretKeySelector);
                             }
                         }
                     }
                 }
-                if (!secretContainerKeys.isEmpty()) {
-                    String containerName = container.getName();
+            }
+            if (secretContainerKeys.isEmpty()) {
+                return values;
+            }
+            KubernetesClient client;
+            try {
+                client = slave.getKubernetesCloud().connect();
+            } catch (RuntimeException | KubernetesAuthException x) {
+                LOGGER.log(Level.FINE, "failed to connect to cloud of " + slave.getNodeName(), x);
+                return values;
+            }
+            Map<String, Set<String>> unresolved = readSecrets(
+                    client,
+                    slave.getNamespace(),
+                    pod.getMetadata().getCreationTimestamp(),
+                    secretContainerKeys,
+                    values);
+            if (!unresolved.isEmpty()) {
+                Boolean unix = c.isUnix();
+                if (unix == null) {
+                    return null;
+                }
+                readEnvironments(client, slave, unix, unresolved, values);
+            }
+            return values;
+        }
+
+        /**
+         * Reads the values of the secrets referenced by the containers, each secret being read only once.
+         * The environment of the containers is set when they start, so the values of secrets modified since the pod
+         * was created are masked in addition to those the containers hold, which must still be read from them.
+         * @param podCreation when the pod was created, null if unknown
+         * @return the variables that could not be resolved this way, by container
+         */
+        private static Map<String, Set<String>> readSecrets(
+                KubernetesClient client,
+                String namespace,
+                @CheckForNull String podCreation,
+                Map<String, Map<String, SecretKeySelector>> secretContainerKeys,
+                Set<String> values) {
+            Map<String, Optional<Secret>> secrets = new HashMap<>();
+            Map<String, Set<String>> unresolved = new TreeMap<>();
+            secretContainerKeys.forEach((containerName, keys) -> keys.forEach((envName, selector) -> {
+                Optional<Secret> secret = secrets.computeIfAbsent(selector.getName(), name -> {
+                    try {
+                        return Optional.ofNullable(client.secrets()
+                                .inNamespace(namespace)
+                                .withName(name)
+                                .get());
+                    } catch (KubernetesClientException x) {
+                        // typically not allowed to read secrets, fall back to the container environment
+                        LOGGER.log(Level.FINE, "failed to read secret " + namespace + "/" + name, x);
+                        return Optional.empty();
+                    }
+                });
+                String encoded = secret.map(Secret::getData)
+                        .map(data -> data.get(selector.getKey()))
+                        .orElse(null);
+                if (encoded != null) {
+                    LOGGER.fine(() -> "found value for " + envName + " in secret " + selector.getName());
+                    String value = new String(Base64.getDecoder().decode(encoded), StandardCharsets.UTF_8);
+                    // We add value to set of masked secrets only if it's non-empty not to mask empty strings
+                    if (!value.isEmpty()) {
+                        values.add(value);
+                    }
+                    if (modifiedSince(secret.get(), podCreation)) {
+                        LOGGER.fine(() -> "secret " + selector.getName() + " may have changed since the pod started");
+                        unresolved.computeIfAbsent(containerName, k -> new TreeSet<>()).add(envName);
+                    }
+                } else {
+                    unresolved.computeIfAbsent(containerName, k -> new TreeSet<>()).add(envName);
+                }
+            }));
+            return unresolved;
+        }
+
+        /**
+         * @param podCreation when the pod was created, null if unknown
+         * @return whether the secret may have been modified since the pod was created, any doubt counting as modified
+         */
+        static boolean modifiedSince(Secret secret, @CheckForNull String podCreation) {
+            if (podCreation == null) {
+                return true;
+            }
+            try {
+                Instant created = Instant.parse(podCreation);
+                ObjectMeta metadata = secret.getMetadata();
+                // updates are only recorded in the managed fields
+                if (metadata == null
+                        || metadata.getCreationTimestamp() == null
+                        || metadata.getManagedFields() == null
+                        || metadata.getManagedFields().isEmpty()) {
+                    return true;
+                }
+                List<String> times = new ArrayList<>();
+                times.add(metadata.getCreationTimestamp());
+                for (ManagedFieldsEntry entry : metadata.getManagedFields()) {
+                    if (entry.getTime() == null) {
+                        return true;
+                    }
+                    times.add(entry.getTime());
+                }
+                for (String time : times) {
+                    if (!Instant.parse(time).isBefore(created)) {
+                        return true;
+                    }
+                }
+                return false;
+            } catch (DateTimeParseException x) {
+                LOGGER.log(Level.FINE, "failed to parse timestamps of secret", x);
+                return true;
+            }
+        }
+
+        /**
+         * Looks up the values of the given variables in the environment of the containers, all containers at once.
+         */
+        private static void readEnvironments(
+                KubernetesClient client,
+                KubernetesSlave slave,
+                boolean unix,
+                Map<String, Set<String>> secretContainerKeys,
+                Set<String> values)
+                throws IOException, InterruptedException {
+            Map<String, ByteArrayOutputStream> outputs = new TreeMap<>();
+            List<ExecWatch> execs = new ArrayList<>();
+            Semaphore semaphore = new Semaphore(0);
+            try (OutputStream errs = new LogTaskListener(LOGGER, Level.FINE).getLogger()) {
+                for (Map.Entry<String, Set<String>> entry : secretContainerKeys.entrySet()) {
+                    String containerName = entry.getKey();
                     LOGGER.fine(() -> "looking for " + slave.getNamespace() + "/" + slave.getPodName() + "/"
-                            + containerName + " secrets named " + secretContainerKeys);
+                            + containerName + " secrets named " + entry.getValue());
                     ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                    Semaphore semaphore = new Semaphore(0);
-                    Boolean unix = c.isUnix();
-                    if (unix == null) {
-                        return null;
-                    }
-                    try (OutputStream errs = new LogTaskListener(LOGGER, Level.FINE).getLogger();
-                            ExecWatch exec = slave.getKubernetesCloud()
-                                    .connect()
-                                    .pods()
-                                    .inNamespace(slave.getNamespace())
-                                    .withName(slave.getPodName())
-                                    .inContainer(containerName)
-                                    .writingOutput(baos)
-                                    .writingError(errs)
-                                    .writingErrorChannel(errs)
-                                    .usingListener(new ExecListener() {
-                                        @Override
-                                        public void onFailure(Throwable t, Response response) {
-                                            semaphore.release();
-                                        }
-
-                                        @Override
-                                        public void onClose(int code, String reason) {
-                                            semaphore.release();
-                                        }
-                                    })
-                                    .exec(unix ? new String[] {"env"} : new String[] {"cmd", "/c", "set"})) {
-                        if (!semaphore.tryAcquire(10, TimeUnit.SECONDS)) {
-                            LOGGER.fine(() -> "time out trying to find environment from " + slave.getNamespace() + "/"
-                                    + slave.getPodName() + "/" + containerName);
-                        }
-                    } catch (RuntimeException | KubernetesAuthException x) {
+                    try {
+                        execs.add(client.pods()
+                                .inNamespace(slave.getNamespace())
+                                .withName(slave.getPodName())
+                                .inContainer(containerName)
+                                .writingOutput(baos)
+                                .writingError(errs)
+                                .writingErrorChannel(errs)
+                                .usingListener(new ExecListener() {
+                                    @Override
+                                    public void onFailure(Throwable t, Response response) {
+                                        semaphore.release();
+                                    }
+
+                                    @Override
+                                    public void onClose(int code, String reason) {
+                                        semaphore.release();
+                                    }
+                                })
+                                .exec(unix ? new String[] {"env"} : new String[] {"cmd", "/c", "set"}));
+                        outputs.put(containerName, baos);
+                    } catch (RuntimeException x) {
                         LOGGER.log(
                                 Level.FINE,
                                 "failed to find environment from " + slave.getNamespace() + "/" + slave.getPodName()
                                         + "/" + containerName,
                                 x);
                     }
-                    for (String line :
-                            baos.toString(StandardCharsets.UTF_8.name()).split("\r?\n")) {
-                        int equals = line.indexOf('=');
-                        if (equals != -1) {
-                            String key = line.substring(0, equals);
-                            if (secretContainerKeys.contains(key)) {
-                                LOGGER.fine(() -> "found value for " + key);
-                                String value = line.substring(equals + 1);
-                                // We add value to set of masked secrets only if it's non-empty not to mask empty
-                                // strings
-                                if (!value.isEmpty()) {
-                                    values.add(value);
-                                }
+                }
+                if (!semaphore.tryAcquire(execs.size(), 10, TimeUnit.SECONDS)) {
+                    LOGGER.fine(() -> "time out trying to find environment from " + slave.getNamespace() + "/"
+                            + slave.getPodName());
+                }
+            } finally {
+                for (ExecWatch exec : execs) {
+                    exec.close();
+                }
+            }
+            for (Map.Entry<String, ByteArrayOutputStream> entry : outputs.entrySet()) {
+                Set<String> keys = secretContainerKeys.get(entry.getKey());
+                for (String line : entry.getValue().toString(StandardCharsets.UTF_8).split("\r?\n")) {
+                    int equals = line.indexOf('=');
+                    if (equals != -1) {
+                        String key = line.substring(0, equals);
+                        if (keys.contains(key)) {
+                            LOGGER.fine(() -> "found value for " + key);
+                            String value = line.substring(equals + 1);
+                            // We add value to set of masked secrets only if it's non-empty not to mask empty
+                            // strings
+                            if (!value.isEmpty()) {
+                                values.add(value);
                             }
                         }
                     }
-                    // TODO issue a warning if we did not find values for all of secretContainerKeys
                 }
+                // TODO issue a warning if we did not find values for all of secretContainerKeys
             }
-            return values;
         }
     }
 }
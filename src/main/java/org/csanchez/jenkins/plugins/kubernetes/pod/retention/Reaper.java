@@ -25,6 +25,7 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.Extension;
 import hudson.ExtensionList;
 import hudson.ExtensionPoint;
+import hudson.Util;
 import hudson.XmlFile;
 import hudson.model.Computer;
 import hudson.model.Node;
@@ -32,29 +33,41 @@ import hudson.model.Saveable;
 import hudson.model.TaskListener;
 import hudson.model.listeners.ItemListener;
 import hudson.model.listeners.SaveableListener;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
 import hudson.slaves.ComputerListener;
 import hudson.slaves.EphemeralNode;
 import hudson.slaves.OfflineCause;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
 import io.fabric8.kubernetes.api.model.ContainerStateTerminated;
 import io.fabric8.kubernetes.api.model.ContainerStateWaiting;
 import io.fabric8.kubernetes.api.model.ContainerStatus;
+import io.fabric8.kubernetes.api.model.ListOptionsBuilder;
 import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodList;
 import io.fabric8.kubernetes.api.model.PodStatus;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.Watch;
 import io.fabric8.kubernetes.client.Watcher;
 import io.fabric8.kubernetes.client.WatcherException;
+import io.fabric8.kubernetes.client.informers.SharedIndexInformer;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
@@ -67,6 +80,7 @@ import org.csanchez.jenkins.plugins.kubernetes.KubernetesClientProvider;
 import org.csanchez.jenkins.plugins.kubernetes.KubernetesCloud;
 import org.csanchez.jenkins.plugins.kubernetes.KubernetesComputer;
 import org.csanchez.jenkins.plugins.kubernetes.KubernetesSlave;
+import org.csanchez.jenkins.plugins.kubernetes.KubernetesSlaveIndex;
 import org.csanchez.jenkins.plugins.kubernetes.PodUtils;
 import org.jenkinsci.plugins.kubernetes.auth.KubernetesAuthException;
 
@@ -83,6 +97,17 @@ public class Reaper extends ComputerListener {
 
     private static final Logger LOGGER = Logger.getLogger(Reaper.class.getName());
 
+    /**
+     * Maximum number of clouds checked concurrently on activation.
+     */
+    private static final int RECONCILIATION_THREADS =
+            SystemProperties.getInteger(Reaper.class.getName() + ".reconciliationThreads", 4);
+
+    /**
+     * Maximum number of pods fetched by a single list call on activation.
+     */
+    private static final long PAGE_SIZE = SystemProperties.getLong(Reaper.class.getName() + ".pageSize", 500L);
+
     /**
      * Only useful for tests which shutdown Jenkins without terminating the JVM.
      * Close the watch so that we don't end up with spam in logs
@@ -107,6 +132,11 @@ public class Reaper extends ComputerListener {
 
     private final Map<String, CloudPodWatcher> watchers = new ConcurrentHashMap<>();
 
+    /**
+     * Last resource version seen by a watch, by server and namespace, so that a new watch can resume from it.
+     */
+    private final Map<String, String> resourceVersions = new ConcurrentHashMap<>();
+
     private final LoadingCache<String, Set<String>> terminationReasons =
             Caffeine.newBuilder().expireAfterAccess(1, TimeUnit.DAYS).build(k -> new ConcurrentSkipListSet<>());
 
@@ -147,11 +177,13 @@ public class Reaper extends ComputerListener {
 
     /**
      * Remove any {@link KubernetesSlave} nodes that reference Pods that don't exist.
+     * Clouds are checked in parallel, see {@link #reapAgents(Jenkins, List)}.
      */
     private void reapAgents() {
         Jenkins jenkins = Jenkins.getInstanceOrNull();
         if (jenkins != null) {
-            for (Node n : new ArrayList<>(jenkins.getNodes())) {
+            Map<String, List<KubernetesSlave>> agentsByCloud = new HashMap<>();
+            for (Node n : jenkins.getNodes()) {
                 if (!(n instanceof KubernetesSlave)) {
                     continue;
                 }
@@ -160,30 +192,151 @@ public class Reaper extends ComputerListener {
                     // Being launched, don't touch it.
                     continue;
                 }
-                String ns = ks.getNamespace();
-                String name = ks.getPodName();
-                try {
-                    // TODO more efficient to do a single (or paged) list request, but tricky since there may be
-                    // multiple clouds,
-                    // and even within a single cloud an agent pod is permitted to use a nondefault namespace,
-                    // yet we do not want to do an unnamespaced pod list for RBAC reasons.
-                    // Could use a hybrid approach: first list all pods in the configured namespace for all clouds;
-                    // then go back and individually check any unmatched agents with their configured namespace.
-                    KubernetesCloud cloud = ks.getKubernetesCloud();
-                    if (cloud.connect().pods().inNamespace(ns).withName(name).get() == null) {
-                        LOGGER.info(() -> ns + "/" + name
-                                + " seems to have been deleted, so removing corresponding Jenkins agent");
-                        jenkins.removeNode(ks);
-                    } else {
-                        LOGGER.fine(() -> ns + "/" + name + " still seems to exist, OK");
+                agentsByCloud
+                        .computeIfAbsent(ks.getCloudName(), k -> new ArrayList<>())
+                        .add(ks);
+            }
+            if (agentsByCloud.isEmpty()) {
+                return;
+            }
+            ExecutorService executor = Executors.newFixedThreadPool(
+                    Math.min(agentsByCloud.size(), RECONCILIATION_THREADS),
+                    new NamingThreadFactory(new DaemonThreadFactory(), "Reaper initial reconciliation"));
+            try {
+                CompletableFuture.allOf(agentsByCloud.values().stream()
+                                .map(agents -> CompletableFuture.runAsync(
+                                        () -> {
+                                            try (ACLContext ctx = ACL.as2(ACL.SYSTEM2)) {
+                                                reapAgents(jenkins, agents);
+                                            }
+                                        },
+                                        executor))
+                                .toArray(CompletableFuture[]::new))
+                        .join();
+            } catch (CompletionException x) {
+                LOGGER.log(Level.WARNING, x.getCause(), () -> "failed to do initial reap check");
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Remove any {@link KubernetesSlave} nodes of the given cloud that reference Pods that don't exist.
+     */
+    private static void reapAgents(String cloudName) {
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (jenkins != null) {
+            List<KubernetesSlave> agents = new ArrayList<>();
+            for (Node n : jenkins.getNodes()) {
+                if (!(n instanceof KubernetesSlave)) {
+                    continue;
+                }
+                KubernetesSlave ks = (KubernetesSlave) n;
+                // skip agents being launched
+                if (cloudName.equals(ks.getCloudName()) && !ks.getLauncher().isLaunchSupported()) {
+                    agents.add(ks);
+                }
+            }
+            if (!agents.isEmpty()) {
+                reapAgents(jenkins, agents);
+            }
+        }
+    }
+
+    /**
+     * Remove the given agents of a single cloud if their pod does not exist.
+     * Pods of the cloud namespace are listed once, page by page. Agents using another namespace are checked
+     * individually, as we do not want to do an unnamespaced pod list for RBAC reasons.
+     */
+    private static void reapAgents(Jenkins jenkins, List<KubernetesSlave> agents) {
+        KubernetesCloud cloud;
+        KubernetesClient client;
+        try {
+            cloud = agents.get(0).getKubernetesCloud();
+            client = cloud.connect();
+        } catch (KubernetesAuthException | IOException | RuntimeException x) {
+            LOGGER.log(
+                    Level.WARNING,
+                    x,
+                    () -> "failed to do initial reap check for cloud " + agents.get(0).getCloudName());
+            return;
+        }
+        String cloudNamespace = client.getNamespace();
+        Set<String> cloudNamespacePods = null;
+        boolean listed = false;
+        for (KubernetesSlave ks : agents) {
+            String ns = ks.getNamespace();
+            String name = ks.getPodName();
+            try {
+                if (isInPodInformer(cloud, ns, name)) {
+                    LOGGER.fine(() -> ns + "/" + name + " still exists according to the pod informer, OK");
+                    continue;
+                }
+                boolean exists;
+                if (Objects.equals(ns, cloudNamespace)) {
+                    if (!listed) {
+                        listed = true;
+                        cloudNamespacePods = listPodNames(client, cloudNamespace);
                     }
-                } catch (KubernetesAuthException | IOException | RuntimeException x) {
-                    LOGGER.log(Level.WARNING, x, () -> "failed to do initial reap check for " + ns + "/" + name);
+                    exists = cloudNamespacePods != null
+                            ? cloudNamespacePods.contains(name)
+                            : client.pods().inNamespace(ns).withName(name).get() != null;
+                } else {
+                    exists = client.pods().inNamespace(ns).withName(name).get() != null;
+                }
+                if (!exists) {
+                    LOGGER.info(() ->
+                            ns + "/" + name + " seems to have been deleted, so removing corresponding Jenkins agent");
+                    jenkins.removeNode(ks);
+                } else {
+                    LOGGER.fine(() -> ns + "/" + name + " still seems to exist, OK");
                 }
+            } catch (IOException | RuntimeException x) {
+                LOGGER.log(Level.WARNING, x, () -> "failed to do initial reap check for " + ns + "/" + name);
             }
         }
     }
 
+    /**
+     * List the names of all pods in the namespace, one page at a time.
+     * @return the pod names, or null if the pods could not be listed
+     */
+    @CheckForNull
+    private static Set<String> listPodNames(KubernetesClient client, String ns) {
+        Set<String> names = new HashSet<>();
+        try {
+            String continueToken = null;
+            do {
+                PodList page = client.pods()
+                        .inNamespace(ns)
+                        .list(new ListOptionsBuilder()
+                                .withLimit(PAGE_SIZE)
+                                .withContinue(continueToken)
+                                .build());
+                page.getItems().forEach(pod -> names.add(pod.getMetadata().getName()));
+                continueToken =
+                        page.getMetadata() == null ? null : Util.fixEmpty(page.getMetadata().getContinue());
+            } while (continueToken != null);
+        } catch (RuntimeException x) {
+            LOGGER.log(Level.WARNING, x, () -> "failed to list pods in " + ns + ", checking agents individually");
+            return null;
+        }
+        return names;
+    }
+
+    /**
+     * Whether the pod is known to the shared pod informer of the cloud.
+     * Pods may lack the labels the informer selects, so a missing pod still needs to be checked with the API server.
+     */
+    private static boolean isInPodInformer(KubernetesCloud cloud, String ns, String name) {
+        if (!KubernetesCloud.SHARED_POD_INFORMERS || ns == null) {
+            return false;
+        }
+        SharedIndexInformer<Pod> informer = cloud.registerPodInformer(ns);
+        return informer != null && informer.hasSynced() && informer.getStore().getByKey(ns + "/" + name) != null;
+    }
+
     /**
      * Create watchers for each configured {@link KubernetesCloud} in Jenkins and remove any existing watchers
      * for clouds that have been removed. If a {@link KubernetesCloud} client configuration property has been
@@ -218,7 +371,18 @@ public class Reaper extends ComputerListener {
         if (!isCloudPodWatcherActive(watcher)) {
             try {
                 KubernetesClient client = kc.connect();
-                watcher.watch = client.pods().inNamespace(client.getNamespace()).watch(watcher);
+                String namespace = client.getNamespace();
+                watcher.resourceVersionKey = resourceVersionKey(client);
+                String resourceVersion = resourceVersions.get(watcher.resourceVersionKey);
+                if (resourceVersion != null) {
+                    LOGGER.fine(() -> "resuming watch on " + kc.getDisplayName() + " from " + resourceVersion);
+                    watcher.watch = client.pods()
+                            .inNamespace(namespace)
+                            .withResourceVersion(resourceVersion)
+                            .watch(watcher);
+                } else {
+                    watcher.watch = client.pods().inNamespace(namespace).watch(watcher);
+                }
                 CloudPodWatcher old = watchers.put(kc.name, watcher);
                 // if another watch slipped in then make sure it stopped
                 if (old != null) {
@@ -231,6 +395,18 @@ public class Reaper extends ComputerListener {
         }
     }
 
+    private static String resourceVersionKey(KubernetesClient client) {
+        return client.getMasterUrl() + "|" + client.getNamespace();
+    }
+
+    /**
+     * Last resource version seen by the watch of the given cloud, if any.
+     */
+    @CheckForNull
+    String getResourceVersion(@NonNull KubernetesCloud kc) throws KubernetesAuthException, IOException {
+        return resourceVersions.get(resourceVersionKey(kc.connect()));
+    }
+
     /**
      * Check if the cloud is watched for Pod events.
      * @param name cloud name
@@ -255,14 +431,8 @@ public class Reaper extends ComputerListener {
         return existing != null && existing.clientValidity == watcher.clientValidity;
     }
 
-    private static Optional<KubernetesSlave> resolveNode(@NonNull Jenkins jenkins, String namespace, String name) {
-        return new ArrayList<>(jenkins.getNodes())
-                .stream()
-                        .filter(KubernetesSlave.class::isInstance)
-                        .map(KubernetesSlave.class::cast)
-                        .filter(ks ->
-                                Objects.equals(ks.getNamespace(), namespace) && Objects.equals(ks.getPodName(), name))
-                        .findFirst();
+    private static Optional<KubernetesSlave> resolveNode(String namespace, String name) {
+        return Optional.ofNullable(KubernetesSlaveIndex.get().getAgent(namespace, name));
     }
 
     /**
@@ -287,6 +457,9 @@ public class Reaper extends ComputerListener {
         @CheckForNull
         private Watch watch;
 
+        @CheckForNull
+        private String resourceVersionKey;
+
         CloudPodWatcher(@NonNull KubernetesCloud cloud) {
             this.cloudName = cloud.name;
             this.clientValidity = KubernetesClientProvider.getValidity(cloud);
@@ -294,14 +467,6 @@ public class Reaper extends ComputerListener {
 
         @Override
         public void eventReceived(Action action, Pod pod) {
-            // don't send bookmark event to listeners as they don't represent change in pod state
-            if (action == Action.BOOKMARK) {
-                // TODO future enhancement might be to keep track of bookmarks for better reconnect behavior. Would
-                //      likely have to track based on cloud address/namespace in case cloud was renamed or namespace
-                //      is changed.
-                return;
-            }
-
             // If there was a non-success http response code from watch request
             // or the api returned a Status object the watch manager notifies with
             // an error action and null resource.
@@ -309,6 +474,18 @@ public class Reaper extends ComputerListener {
                 return;
             }
 
+            if (pod != null && pod.getMetadata() != null && resourceVersionKey != null) {
+                String resourceVersion = pod.getMetadata().getResourceVersion();
+                if (resourceVersion != null) {
+                    Reaper.this.resourceVersions.put(resourceVersionKey, resourceVersion);
+                }
+            }
+
+            // don't send bookmark event to listeners as they don't represent change in pod state
+            if (action == Action.BOOKMARK) {
+                return;
+            }
+
             Jenkins jenkins = Jenkins.getInstanceOrNull();
             if (jenkins == null) {
                 return;
@@ -316,7 +493,7 @@ public class Reaper extends ComputerListener {
 
             String ns = pod.getMetadata().getNamespace();
             String name = pod.getMetadata().getName();
-            Optional<KubernetesSlave> optionalNode = resolveNode(jenkins, ns, name);
+            Optional<KubernetesSlave> optionalNode = resolveNode(ns, name);
             if (!optionalNode.isPresent()) {
                 return;
             }
@@ -363,6 +540,11 @@ public class Reaper extends ComputerListener {
             LOGGER.log(Level.WARNING, e, () -> cloudName + " watcher closed with exception");
             // remove self from watchers list
             Reaper.this.watchers.remove(cloudName, this);
+            if (e.isHttpGone() && resourceVersionKey != null) {
+                // events were missed, the next watch cannot resume: check all agents of the cloud again instead
+                Reaper.this.resourceVersions.remove(resourceVersionKey);
+                Timer.get().submit(() -> reapAgents(cloudName));
+            }
         }
     }
 
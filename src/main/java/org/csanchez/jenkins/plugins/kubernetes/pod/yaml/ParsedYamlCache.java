@@ -0,0 +1,97 @@
+package org.csanchez.jenkins.plugins.kubernetes.pod.yaml;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import jenkins.metrics.api.Metrics;
+import jenkins.util.SystemProperties;
+import org.csanchez.jenkins.plugins.kubernetes.MetricNames;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Caches the result of {@link YamlMergeStrategy#merge(List)} by yaml content, so that agents created from the
+ * same pod template do not parse the same yaml again.
+ * <p>
+ * Only the built-in strategies are cached, as they do not depend on anything else than the yamls.
+ * Callers always get their own copy of the cached pod, which they are free to modify.
+ */
+@Restricted(NoExternalUse.class)
+public final class ParsedYamlCache {
+
+    private static final long MAX_SIZE =
+            SystemProperties.getLong(ParsedYamlCache.class.getName() + ".maxSize", 256L);
+
+    private static final Cache<Key, Pod> CACHE =
+            Caffeine.newBuilder().maximumSize(MAX_SIZE).build();
+
+    private ParsedYamlCache() {}
+
+    /**
+     * Merges the given yamls with the given strategy, reusing a previously parsed result if available.
+     * @param strategy the merge strategy
+     * @param yamls the yamls to merge
+     * @return a new pod, or null if the strategy returns null
+     */
+    @CheckForNull
+    public static Pod merge(@NonNull YamlMergeStrategy strategy, @NonNull List<String> yamls) {
+        if (yamls.isEmpty() || !isCacheable(strategy)) {
+            return strategy.merge(yamls);
+        }
+        Key key = new Key(strategy.getClass(), new ArrayList<>(yamls));
+        Pod cached = CACHE.getIfPresent(key);
+        if (cached != null) {
+            Metrics.metricRegistry().counter(MetricNames.YAML_CACHE_HITS).inc();
+            return copy(cached);
+        }
+        Metrics.metricRegistry().counter(MetricNames.YAML_CACHE_MISSES).inc();
+        Pod pod = strategy.merge(yamls);
+        if (pod != null) {
+            CACHE.put(key, copy(pod));
+        }
+        return pod;
+    }
+
+    private static boolean isCacheable(YamlMergeStrategy strategy) {
+        return strategy.getClass() == Merge.class || strategy.getClass() == Overrides.class;
+    }
+
+    private static Pod copy(Pod pod) {
+        return new PodBuilder(pod).build();
+    }
+
+    private static final class Key {
+        private final Class<? extends YamlMergeStrategy> strategy;
+        private final List<String> yamls;
+        private final int hash;
+
+        Key(Class<? extends YamlMergeStrategy> strategy, List<String> yamls) {
+            this.strategy = strategy;
+            this.yamls = yamls;
+            this.hash = Objects.hash(strategy, yamls);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return hash == key.hash && strategy == key.strategy && yamls.equals(key.yamls);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
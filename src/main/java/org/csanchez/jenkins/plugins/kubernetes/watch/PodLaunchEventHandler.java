@@ -0,0 +1,145 @@
+package org.csanchez.jenkins.plugins.kubernetes.watch;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Computer;
+import hudson.model.TaskListener;
+import hudson.slaves.ComputerListener;
+import io.fabric8.kubernetes.api.model.ObjectMeta;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.client.informers.ResourceEventHandler;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.csanchez.jenkins.plugins.kubernetes.KubernetesComputer;
+import org.csanchez.jenkins.plugins.kubernetes.KubernetesSlave;
+
+/**
+ * Wakes up launchers waiting for a pod whenever the shared namespace informer observes a change to that pod,
+ * or when the corresponding agent comes online.
+ * Registered alongside {@link PodStatusEventHandler} in
+ * {@link org.csanchez.jenkins.plugins.kubernetes.KubernetesCloud#registerPodInformer(KubernetesSlave)}.
+ */
+public class PodLaunchEventHandler implements ResourceEventHandler<Pod> {
+
+    /**
+     * namespace/name -> signal for launchers currently waiting on that pod.
+     */
+    private static final Map<String, Semaphore> WAITERS = new ConcurrentHashMap<>();
+
+    /**
+     * namespace/name -> callback for asynchronous launches of that pod.
+     */
+    private static final Map<String, Runnable> CALLBACKS = new ConcurrentHashMap<>();
+
+    /**
+     * Start tracking events for the given pod.
+     * Earlier events are not replayed, so callers must read the pod state after registering.
+     * @param namespace pod namespace
+     * @param name pod name
+     */
+    public static void register(@NonNull String namespace, @NonNull String name) {
+        WAITERS.putIfAbsent(key(namespace, name), new Semaphore(0));
+    }
+
+    /**
+     * Start tracking events for the given pod, invoking the callback on each of them.
+     * The callback runs on the informer thread, so it must not block.
+     * @param namespace pod namespace
+     * @param name pod name
+     * @param callback invoked for each event
+     */
+    public static void register(@NonNull String namespace, @NonNull String name, @NonNull Runnable callback) {
+        CALLBACKS.put(key(namespace, name), callback);
+    }
+
+    /**
+     * Stop tracking events for the given pod.
+     * @param namespace pod namespace
+     * @param name pod name
+     */
+    public static void unregister(@NonNull String namespace, @NonNull String name) {
+        String key = key(namespace, name);
+        WAITERS.remove(key);
+        CALLBACKS.remove(key);
+    }
+
+    /**
+     * Wait until an event is received for the given pod or the timeout expires.
+     * Events received since the last call are coalesced, so callers must re-read the pod state after returning.
+     * @param namespace pod namespace
+     * @param name pod name
+     * @param timeout maximum time to wait
+     * @param unit unit of the timeout
+     * @return true if an event was received, false if the timeout expired
+     */
+    public static boolean await(@NonNull String namespace, @NonNull String name, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        Semaphore signal = WAITERS.get(key(namespace, name));
+        if (signal == null) {
+            unit.sleep(timeout);
+            return false;
+        }
+        boolean signalled = signal.tryAcquire(timeout, unit);
+        signal.drainPermits();
+        return signalled;
+    }
+
+    static void signal(String namespace, String name) {
+        if (namespace == null || name == null) {
+            return;
+        }
+        String key = key(namespace, name);
+        Semaphore signal = WAITERS.get(key);
+        if (signal != null) {
+            signal.release();
+        }
+        Runnable callback = CALLBACKS.get(key);
+        if (callback != null) {
+            callback.run();
+        }
+    }
+
+    private static String key(String namespace, String name) {
+        return namespace + "/" + name;
+    }
+
+    private static void signal(Pod pod) {
+        ObjectMeta metadata = pod.getMetadata();
+        if (metadata != null) {
+            signal(metadata.getNamespace(), metadata.getName());
+        }
+    }
+
+    @Override
+    public void onAdd(Pod pod) {
+        signal(pod);
+    }
+
+    @Override
+    public void onUpdate(Pod oldPod, Pod newPod) {
+        signal(newPod);
+    }
+
+    @Override
+    public void onDelete(Pod pod, boolean deletedFinalStateUnknown) {
+        signal(pod);
+    }
+
+    /**
+     * Wakes up the launcher as soon as the agent connects back.
+     */
+    @Extension
+    public static class AgentOnlineListener extends ComputerListener {
+        @Override
+        public void onOnline(Computer c, TaskListener listener) {
+            if (c instanceof KubernetesComputer) {
+                KubernetesSlave node = ((KubernetesComputer) c).getNode();
+                if (node != null) {
+                    signal(node.getNamespace(), node.getPodName());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package io.jenkins.plugins.kubernetes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import hudson.model.Label;
+import java.util.List;
+import org.csanchez.jenkins.plugins.kubernetes.KubernetesCloud;
+import org.csanchez.jenkins.plugins.kubernetes.KubernetesProvisioningLimits;
+import org.csanchez.jenkins.plugins.kubernetes.LaunchStatistics;
+import org.csanchez.jenkins.plugins.kubernetes.PodTemplate;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class WeightedCloudRankingTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void weight() {
+        assertEquals(0, WeightedCloudRanking.weight(0, 5, 0, 0), 0);
+        // capacity beyond the workload does not count
+        assertEquals(
+                WeightedCloudRanking.weight(5, 5, 0, 0), WeightedCloudRanking.weight(Integer.MAX_VALUE, 5, 0, 0), 0);
+        assertTrue(WeightedCloudRanking.weight(2, 5, 0, 0) < WeightedCloudRanking.weight(4, 5, 0, 0));
+        assertTrue(WeightedCloudRanking.weight(4, 5, 0.5, 0) < WeightedCloudRanking.weight(4, 5, 0, 0));
+        assertTrue(WeightedCloudRanking.weight(4, 5, 0, 120_000) < WeightedCloudRanking.weight(4, 5, 0, 10_000));
+    }
+
+    @Test
+    public void saturatedCloudComesLast() {
+        KubernetesCloud saturated = new KubernetesCloud("saturated");
+        saturated.setContainerCap(1);
+        PodTemplate template = new PodTemplate("template");
+        saturated.addTemplate(template);
+        KubernetesCloud free = new KubernetesCloud("free");
+        j.jenkins.clouds.add(saturated);
+        j.jenkins.clouds.add(free);
+        assertTrue(KubernetesProvisioningLimits.get().register(saturated, template, 1));
+
+        for (int i = 0; i < 20; i++) {
+            List<KubernetesCloud> ranked = CloudRanking.get().rank(List.of(saturated, free), Label.get("any"), 1);
+            assertEquals(2, ranked.size());
+            assertSame(free, ranked.get(0));
+        }
+    }
+
+    @Test
+    public void failingCloudIsLessLikelyFirst() {
+        KubernetesCloud failing = new KubernetesCloud("failing");
+        KubernetesCloud healthy = new KubernetesCloud("healthy");
+        j.jenkins.clouds.add(failing);
+        j.jenkins.clouds.add(healthy);
+        for (int i = 0; i < 20; i++) {
+            LaunchStatistics.get().recordFailure(failing.name);
+            LaunchStatistics.get().recordSuccess(healthy.name, 1000);
+        }
+
+        int failingFirst = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (CloudRanking.get().rank(List.of(failing, healthy), null, 10).get(0) == failing) {
+                failingFirst++;
+            }
+        }
+        assertTrue("failing cloud came first " + failingFirst + " times", failingFirst < 100);
+    }
+}
@@ -0,0 +1,43 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import static org.junit.Assert.assertEquals;
+
+import hudson.model.Label;
+import hudson.slaves.RetentionStrategy;
+import hudson.slaves.SlaveComputer;
+import java.util.Set;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class DefaultInProvisioningTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void tracksAgentsUntilLaunched() throws Exception {
+        Label label = Label.get("foo");
+        DefaultInProvisioning inProvisioning = DefaultInProvisioning.get();
+        assertEquals(Set.of(), inProvisioning.getInProvisioning(label));
+
+        KubernetesLauncher launcher = new KubernetesLauncher();
+        KubernetesSlave agent = new KubernetesSlave(
+                "agent", new PodTemplate(), "", "kubernetes", "foo", launcher, RetentionStrategy.NOOP);
+        KubernetesSlave other = new KubernetesSlave(
+                "other", new PodTemplate(), "", "kubernetes", "bar", new KubernetesLauncher(), RetentionStrategy.NOOP);
+        r.jenkins.addNode(agent);
+        r.jenkins.addNode(other);
+        assertEquals(Set.of("agent"), inProvisioning.getInProvisioning(label));
+        assertEquals(Set.of("agent"), InProvisioning.getAllInProvisioning(label));
+
+        launcher.onAgentConnected((SlaveComputer) agent.toComputer(), agent);
+        assertEquals(Set.of(), inProvisioning.getInProvisioning(label));
+        inProvisioning.check();
+        assertEquals(Set.of(), inProvisioning.getInProvisioning(label));
+        assertEquals(Set.of("other"), inProvisioning.getInProvisioning(Label.get("bar")));
+
+        r.jenkins.removeNode(other);
+        assertEquals(Set.of(), inProvisioning.getInProvisioning(Label.get("bar")));
+    }
+}
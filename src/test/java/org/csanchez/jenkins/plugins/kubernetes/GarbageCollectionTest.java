@@ -0,0 +1,130 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import static org.csanchez.jenkins.plugins.kubernetes.PodTemplateBuilder.LABEL_KUBERNETES_CONTROLLER;
+import static org.csanchez.jenkins.plugins.kubernetes.PodTemplateUtils.sanitizeLabel;
+import static org.junit.Assert.assertEquals;
+
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.fabric8.kubernetes.api.model.PodListBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.server.mock.KubernetesMockServer;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import jenkins.metrics.api.Metrics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class GarbageCollectionTest {
+
+    private static final int PAGE_SIZE = 500;
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private KubernetesMockServer server;
+    private KubernetesClient client;
+
+    @Before
+    public void setUp() {
+        server = new KubernetesMockServer();
+        server.init(InetAddress.getLoopbackAddress(), 0);
+        client = server.createClient();
+    }
+
+    @After
+    public void tearDown() {
+        server.destroy();
+        client.close();
+    }
+
+    @Test
+    public void deletesOrphansPageByPage() throws Exception {
+        KubernetesCloud cloud = new KubernetesCloud("kubernetes");
+        cloud.setJenkinsUrl("http://jenkins.example.com/");
+        GarbageCollection gc = new GarbageCollection();
+        gc.setTimeout(15);
+        String path = "/api/v1/namespaces/foo/pods?limit=" + PAGE_SIZE;
+        String selector = "&labelSelector="
+                + URLEncoder.encode(
+                        LABEL_KUBERNETES_CONTROLLER + "=" + sanitizeLabel(cloud.getJenkinsUrlOrNull()),
+                        StandardCharsets.UTF_8);
+
+        // 5 orphans over two pages, one of which fails to be deleted
+        List<Pod> first = pods(0, PAGE_SIZE, 3);
+        List<Pod> second = pods(PAGE_SIZE, 100, 2);
+        server.expect()
+                .get()
+                .withPath(path + selector)
+                .andReturn(
+                        HttpURLConnection.HTTP_OK,
+                        new PodListBuilder()
+                                .withNewMetadata()
+                                .withContinue("next")
+                                .endMetadata()
+                                .withItems(first)
+                                .build())
+                .once();
+        server.expect()
+                .get()
+                .withPath(path + "&continue=next" + selector)
+                .andReturn(
+                        HttpURLConnection.HTTP_OK,
+                        new PodListBuilder()
+                                .withNewMetadata()
+                                .endMetadata()
+                                .withItems(second)
+                                .build())
+                .once();
+        for (Pod pod : first.subList(0, 3)) {
+            expectDelete(pod, HttpURLConnection.HTTP_OK);
+        }
+        expectDelete(second.get(0), HttpURLConnection.HTTP_OK);
+        expectDelete(second.get(1), HttpURLConnection.HTTP_INTERNAL_ERROR);
+
+        long scanned = count(MetricNames.GC_PODS_SCANNED);
+        long deleted = count(MetricNames.GC_PODS_DELETED);
+        long failed = count(MetricNames.GC_PODS_DELETE_FAILED);
+        GarbageCollection.PeriodicGarbageCollection.garbageCollect(cloud, gc, client, "foo");
+        assertEquals(PAGE_SIZE + 100, count(MetricNames.GC_PODS_SCANNED) - scanned);
+        assertEquals(4, count(MetricNames.GC_PODS_DELETED) - deleted);
+        assertEquals(1, count(MetricNames.GC_PODS_DELETE_FAILED) - failed);
+    }
+
+    /**
+     * @param orphans the number of pods, at the start of the list, whose last refresh is too old
+     */
+    private static List<Pod> pods(int offset, int count, int orphans) {
+        List<Pod> pods = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String lastRefresh = String.valueOf(i < orphans ? 0L : System.currentTimeMillis());
+            pods.add(new PodBuilder()
+                    .withNewMetadata()
+                    .withName("pod-" + (offset + i))
+                    .withNamespace("foo")
+                    .addToAnnotations(GarbageCollection.ANNOTATION_LAST_REFRESH, lastRefresh)
+                    .endMetadata()
+                    .build());
+        }
+        return pods;
+    }
+
+    private void expectDelete(Pod pod, int code) {
+        server.expect()
+                .delete()
+                .withPath("/api/v1/namespaces/foo/pods/" + pod.getMetadata().getName())
+                .andReturn(code, pod)
+                .once();
+    }
+
+    private static long count(String name) {
+        return Metrics.metricRegistry().counter(name).getCount();
+    }
+}
@@ -3,16 +3,20 @@ package org.csanchez.jenkins.plugins.kubernetes;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.Label;
 import hudson.model.User;
 import hudson.security.ACL;
 import hudson.security.ACLContext;
 import hudson.security.AccessDeniedException3;
+import hudson.slaves.Cloud;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -105,6 +109,30 @@ public class KubernetesCloudTest {
         PodTemplate result = PodTemplateUtils.combine(parent, withNewMavenVersion);
     }
 
+    @Test
+    public void unwrappedTemplateIsReusedUntilParentChanges() {
+        var cloud = new KubernetesCloud("kubernetes");
+        var parent = new PodTemplate();
+        parent.setName("parent");
+        parent.setContainers(List.of(new ContainerTemplate("jnlp", "jnlp:1")));
+        var child = new PodTemplate();
+        child.setName("child");
+        child.setInheritFrom("parent");
+        cloud.setTemplates(List.of(parent, child));
+
+        var unwrapped = cloud.getUnwrappedTemplate(child);
+        assertEquals("jnlp:1", unwrapped.getContainers().get(0).getImage());
+        assertSame(unwrapped, cloud.getUnwrappedTemplate(child));
+
+        var newParent = new PodTemplate();
+        newParent.setName("parent");
+        newParent.setContainers(List.of(new ContainerTemplate("jnlp", "jnlp:2")));
+        cloud.setTemplates(List.of(newParent, child));
+        var reunwrapped = cloud.getUnwrappedTemplate(child);
+        assertNotSame(unwrapped, reunwrapped);
+        assertEquals("jnlp:2", reunwrapped.getContainers().get(0).getImage());
+    }
+
     @Test(expected = IllegalStateException.class)
     public void getJenkinsUrlOrDie_NoJenkinsUrl() {
         JenkinsLocationConfiguration.get().setUrl(null);
@@ -355,6 +383,29 @@ public class KubernetesCloudTest {
         }
     }
 
+    @Test
+    public void provisionSpillsOverTemplates() {
+        var cloud = new KubernetesCloud("kubernetes");
+        cloud.setContainerCap(3);
+        var first = new PodTemplate("first");
+        first.setLabel("spill");
+        first.setInstanceCap(2);
+        var second = new PodTemplate("second");
+        second.setLabel("spill");
+        second.setInstanceCap(2);
+        cloud.addTemplate(first);
+        cloud.addTemplate(second);
+        j.jenkins.clouds.add(cloud);
+
+        var plannedNodes = cloud.provision(new Cloud.CloudState(Label.get("spill"), 0), 5);
+        assertEquals("limited by the cloud, not by the first template", 3, plannedNodes.size());
+        var limits = KubernetesProvisioningLimits.get();
+        assertEquals(2, limits.getPodTemplateCount(first.getId()));
+        assertEquals(1, limits.getPodTemplateCount(second.getId()));
+        assertEquals(3, limits.getGlobalCount(cloud.name));
+        assertEquals(0, cloud.provision(new Cloud.CloudState(Label.get("spill"), 0), 1).size());
+    }
+
     private static void assertAccessDenied(ThrowingRunnable throwingRunnable, String expectedMessage) {
         assertThat(
                 assertThrows(AccessDeniedException3.class, throwingRunnable).getMessage(),
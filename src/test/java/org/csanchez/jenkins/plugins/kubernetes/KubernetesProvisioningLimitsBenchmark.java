@@ -0,0 +1,67 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures {@link KubernetesProvisioningLimits} register/unregister throughput with many clouds and templates,
+ * for an increasing number of concurrent threads.
+ */
+@JmhBenchmark
+public class KubernetesProvisioningLimitsBenchmark {
+
+    private static final int CLOUDS = 20;
+    private static final int TEMPLATES_PER_CLOUD = 50;
+
+    public static class CloudsState extends JmhBenchmarkState {
+        final List<KubernetesCloud> clouds = new ArrayList<>();
+        KubernetesProvisioningLimits limits;
+
+        @Override
+        public void setup() throws Exception {
+            for (int i = 0; i < CLOUDS; i++) {
+                KubernetesCloud cloud = new KubernetesCloud("kubernetes-" + i);
+                for (int j = 0; j < TEMPLATES_PER_CLOUD; j++) {
+                    PodTemplate template = new PodTemplate();
+                    template.setName(cloud.name + "-podTemplate-" + j);
+                    cloud.addTemplate(template);
+                }
+                getJenkins().clouds.add(cloud);
+                clouds.add(cloud);
+            }
+            limits = KubernetesProvisioningLimits.get();
+        }
+    }
+
+    private static void registerAndUnregister(CloudsState state, Blackhole blackhole) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        KubernetesCloud cloud = state.clouds.get(random.nextInt(CLOUDS));
+        PodTemplate template = cloud.getTemplates().get(random.nextInt(TEMPLATES_PER_CLOUD));
+        blackhole.consume(state.limits.register(cloud, template, 1));
+        state.limits.unregister(cloud, template, 1);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void registerUnregister1Thread(CloudsState state, Blackhole blackhole) {
+        registerAndUnregister(state, blackhole);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void registerUnregister4Threads(CloudsState state, Blackhole blackhole) {
+        registerAndUnregister(state, blackhole);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void registerUnregister16Threads(CloudsState state, Blackhole blackhole) {
+        registerAndUnregister(state, blackhole);
+    }
+}
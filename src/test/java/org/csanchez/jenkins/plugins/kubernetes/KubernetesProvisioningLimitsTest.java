@@ -3,13 +3,16 @@ package org.csanchez.jenkins.plugins.kubernetes;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import org.junit.Rule;
 import org.junit.Test;
@@ -91,4 +94,43 @@ public class KubernetesProvisioningLimitsTest {
             }
         }
     }
+
+    @Test
+    public void concurrentRegistrationsNeverExceedLimits() throws Exception {
+        KubernetesCloud cloud = new KubernetesCloud("kubernetes");
+        cloud.setContainerCap(5);
+        PodTemplate small = new PodTemplate();
+        small.setName("small");
+        small.setInstanceCap(2);
+        cloud.addTemplate(small);
+        PodTemplate large = new PodTemplate();
+        large.setName("large");
+        large.setInstanceCap(10);
+        cloud.addTemplate(large);
+        j.jenkins.clouds.add(cloud);
+
+        KubernetesProvisioningLimits limits = KubernetesProvisioningLimits.get();
+        ExecutorService threadPool = Executors.newFixedThreadPool(16);
+        AtomicInteger smallRegistered = new AtomicInteger();
+        AtomicInteger largeRegistered = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int k = 0; k < 200; k++) {
+            boolean useSmall = k % 2 == 0;
+            futures.add(threadPool.submit(() -> {
+                if (limits.register(cloud, useSmall ? small : large, 1)) {
+                    (useSmall ? smallRegistered : largeRegistered).incrementAndGet();
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(20, TimeUnit.SECONDS);
+        }
+        threadPool.shutdown();
+
+        assertEquals(5, smallRegistered.get() + largeRegistered.get());
+        assertTrue(smallRegistered.get() <= 2);
+        assertEquals(5, limits.getGlobalCount(cloud.name));
+        assertEquals(smallRegistered.get(), limits.getPodTemplateCount(small.getId()));
+        assertEquals(largeRegistered.get(), limits.getPodTemplateCount(large.getId()));
+    }
 }
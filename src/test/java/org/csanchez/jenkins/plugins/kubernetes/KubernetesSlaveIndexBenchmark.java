@@ -0,0 +1,70 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import hudson.model.Node;
+import hudson.slaves.RetentionStrategy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures how fast a pod event is dispatched to its agent with 10k agents,
+ * through {@link KubernetesSlaveIndex} and through a scan of all nodes.
+ */
+@JmhBenchmark
+public class KubernetesSlaveIndexBenchmark {
+
+    private static final int NODES = 10_000;
+    private static final String NAMESPACE = "jenkins";
+
+    public static class NodesState extends JmhBenchmarkState {
+        KubernetesSlaveIndex index;
+
+        @Override
+        public void setup() throws Exception {
+            List<Node> nodes = new ArrayList<>(NODES);
+            for (int i = 0; i < NODES; i++) {
+                KubernetesSlave agent = new KubernetesSlave(
+                        podName(i),
+                        new PodTemplate(),
+                        "benchmark",
+                        "kubernetes",
+                        "benchmark",
+                        new KubernetesLauncher(),
+                        RetentionStrategy.NOOP);
+                agent.setNamespace(NAMESPACE);
+                nodes.add(agent);
+            }
+            getJenkins().setNodes(nodes);
+            index = KubernetesSlaveIndex.get();
+        }
+    }
+
+    private static String podName(int i) {
+        return "agent-" + i;
+    }
+
+    private static String randomPod() {
+        return podName(ThreadLocalRandom.current().nextInt(NODES));
+    }
+
+    @Benchmark
+    public void index(NodesState state, Blackhole blackhole) {
+        blackhole.consume(state.index.getAgent(NAMESPACE, randomPod()));
+    }
+
+    @Benchmark
+    public void scan(NodesState state, Blackhole blackhole) {
+        String podName = randomPod();
+        blackhole.consume(new ArrayList<>(state.getJenkins().getNodes())
+                .stream()
+                .filter(KubernetesSlave.class::isInstance)
+                .map(KubernetesSlave.class::cast)
+                .filter(ks -> Objects.equals(ks.getNamespace(), NAMESPACE) && Objects.equals(ks.getPodName(), podName))
+                .findFirst());
+    }
+}
@@ -30,6 +30,7 @@ import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
 import hudson.model.Descriptor;
+import hudson.slaves.RetentionStrategy;
 import io.fabric8.kubernetes.api.model.Pod;
 import io.fabric8.kubernetes.client.dsl.PodResource;
 import java.io.IOException;
@@ -164,6 +165,20 @@ public class KubernetesSlaveTest {
         void test(KubernetesCloud cloud, KubernetesSlave slave, PodResource podResource) throws Exception;
     }
 
+    @Test
+    public void testIndexByPod() throws Exception {
+        KubernetesSlave slave = new KubernetesSlave(
+                "agent", new PodTemplate(), "", "kubernetes", "", new KubernetesLauncher(), RetentionStrategy.NOOP);
+        slave.setNamespace("jenkins");
+        r.jenkins.addNode(slave);
+        KubernetesSlaveIndex index = KubernetesSlaveIndex.get();
+        assertSame(slave, index.getAgent("jenkins", "agent"));
+        assertNull(index.getAgent("other", "agent"));
+        assertNull(index.getAgent("jenkins", "unknown"));
+        r.jenkins.removeNode(slave);
+        assertNull(index.getAgent("jenkins", "agent"));
+    }
+
     @Test
     public void testGetPodRetention() {
         try {
@@ -0,0 +1,35 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class LaunchStatisticsTest {
+
+    @Test
+    public void failuresDecay() {
+        LaunchStatistics.Outcomes outcomes = new LaunchStatistics.Outcomes();
+        long now = 1;
+        assertEquals(0, outcomes.failureRate(now), 0);
+        for (int i = 0; i < 9; i++) {
+            outcomes.record(true, -1, now);
+        }
+        assertEquals(0.9, outcomes.failureRate(now), 0.001);
+        // one hour later, with the default half life of five minutes
+        now += TimeUnit.HOURS.toNanos(1);
+        assertTrue(outcomes.failureRate(now) < 0.01);
+    }
+
+    @Test
+    public void launchTimeIsSmoothed() {
+        LaunchStatistics.Outcomes outcomes = new LaunchStatistics.Outcomes();
+        outcomes.record(false, 8000, 1);
+        assertEquals(8000, outcomes.launchMillis());
+        outcomes.record(true, -1, 2);
+        assertEquals(8000, outcomes.launchMillis());
+        outcomes.record(false, 16000, 3);
+        assertEquals(9000, outcomes.launchMillis());
+    }
+}
@@ -28,4 +28,20 @@ public class MetricNamesTest {
 
         Assert.assertEquals(expected, actual);
     }
+
+    @Test
+    public void metricNameForLaunchStageIsLowercase() {
+        String expected = "kubernetes.cloud.pods.launch.stage.ready";
+        String actual = MetricNames.metricNameForLaunchStage("READY");
+
+        Assert.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void metricNameForBreakerIncludesCloudAndNamespace() {
+        String expected = "kubernetes.cloud.breaker.state.kubernetes.jenkins";
+        String actual = MetricNames.metricNameForBreaker("kubernetes", "jenkins");
+
+        Assert.assertEquals(expected, actual);
+    }
 }
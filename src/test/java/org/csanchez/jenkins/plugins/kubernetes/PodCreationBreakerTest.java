@@ -0,0 +1,127 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.fabric8.kubernetes.api.model.Quantity;
+import io.fabric8.kubernetes.api.model.ResourceQuota;
+import io.fabric8.kubernetes.api.model.ResourceQuotaBuilder;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class PodCreationBreakerTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void opensAfterConsecutiveFailures() {
+        PodCreationBreaker.Breaker breaker = new PodCreationBreaker.Breaker();
+        long now = SECOND;
+        assertFalse(breaker.recordFailure(now));
+        assertFalse(breaker.recordFailure(now));
+        assertTrue(breaker.recordFailure(now));
+        assertEquals(PodCreationBreaker.Breaker.OPEN, breaker.state());
+        assertEquals(0, breaker.permits(now, 5));
+        // failures of pods planned before opening do not extend the backoff
+        assertFalse(breaker.recordFailure(now));
+    }
+
+    @Test
+    public void successResetsFailures() {
+        PodCreationBreaker.Breaker breaker = new PodCreationBreaker.Breaker();
+        long now = SECOND;
+        breaker.recordFailure(now);
+        breaker.recordFailure(now);
+        assertFalse(breaker.recordSuccess());
+        assertFalse(breaker.recordFailure(now));
+        assertEquals(5, breaker.permits(now, 5));
+    }
+
+    @Test
+    public void probesOnceBackoffElapsed() {
+        PodCreationBreaker.Breaker breaker = new PodCreationBreaker.Breaker();
+        long now = SECOND;
+        for (int i = 0; i < 3; i++) {
+            breaker.recordFailure(now);
+        }
+        // initial backoff of 10 seconds, with jitter
+        now += 13 * SECOND;
+        assertEquals(1, breaker.permits(now, 5));
+        assertEquals(PodCreationBreaker.Breaker.HALF_OPEN, breaker.state());
+        assertEquals(0, breaker.permits(now, 5));
+
+        // a failed probe opens the breaker for twice as long
+        assertTrue(breaker.recordFailure(now));
+        assertEquals(0, breaker.permits(now + 13 * SECOND, 5));
+        now += 25 * SECOND;
+        assertEquals(1, breaker.permits(now, 5));
+        assertTrue(breaker.recordSuccess());
+        assertEquals(PodCreationBreaker.Breaker.CLOSED, breaker.state());
+        assertEquals(5, breaker.permits(now, 5));
+    }
+
+    @Test
+    public void unusedProbeIsGivenBack() {
+        PodCreationBreaker.Breaker breaker = new PodCreationBreaker.Breaker();
+        long now = SECOND;
+        for (int i = 0; i < 3; i++) {
+            breaker.recordFailure(now);
+        }
+        now += 13 * SECOND;
+        // nothing wanted, e.g. after the resource quotas admitted no agent: no probe granted
+        assertEquals(0, breaker.permits(now, 0));
+        assertEquals(1, breaker.permits(now, 5));
+        assertEquals(0, breaker.permits(now, 5));
+        // the probe was not planned, the next round may probe
+        breaker.giveBack();
+        assertEquals(1, breaker.permits(now, 5));
+        // giving back does nothing once closed
+        breaker.recordSuccess();
+        breaker.giveBack();
+        assertEquals(5, breaker.permits(now, 5));
+    }
+
+    @Test
+    public void quotaChangeHalfOpens() {
+        PodCreationBreaker.Breaker breaker = new PodCreationBreaker.Breaker();
+        long now = SECOND;
+        for (int i = 0; i < 3; i++) {
+            breaker.recordFailure(now);
+        }
+        breaker.halfOpen(now + SECOND);
+        assertEquals(PodCreationBreaker.Breaker.OPEN, breaker.state());
+        breaker.halfOpen(now + 10 * SECOND);
+        assertEquals(PodCreationBreaker.Breaker.HALF_OPEN, breaker.state());
+        assertEquals(1, breaker.permits(now + 10 * SECOND, 5));
+    }
+
+    @Test
+    public void onlyQuotaChangesAdmittingMoreHalfOpen() {
+        ResourceQuota full = quota("10", "10", "4", "2");
+        // pods created or deleted elsewhere in the namespace, the exhausted resource still is
+        assertFalse(PodCreationBreaker.QuotaEventHandler.mayAdmitMore(full, quota("10", "10", "4", "1")));
+        // the exhausted resource frees up
+        assertTrue(PodCreationBreaker.QuotaEventHandler.mayAdmitMore(full, quota("10", "9", "4", "2")));
+        // the quota is raised
+        assertTrue(PodCreationBreaker.QuotaEventHandler.mayAdmitMore(full, quota("20", "10", "4", "2")));
+        // usage dropping for a resource that was not exhausted
+        ResourceQuota partial = quota("10", "5", "4", "2");
+        assertFalse(PodCreationBreaker.QuotaEventHandler.mayAdmitMore(partial, quota("10", "4", "4", "2")));
+    }
+
+    private static ResourceQuota quota(String pods, String usedPods, String cpu, String usedCpu) {
+        return new ResourceQuotaBuilder()
+                .withNewSpec()
+                .addToHard("pods", new Quantity(pods))
+                .addToHard("requests.cpu", new Quantity(cpu))
+                .endSpec()
+                .withNewStatus()
+                .addToHard("pods", new Quantity(pods))
+                .addToHard("requests.cpu", new Quantity(cpu))
+                .addToUsed("pods", new Quantity(usedPods))
+                .addToUsed("requests.cpu", new Quantity(usedCpu))
+                .endStatus()
+                .build();
+    }
+}
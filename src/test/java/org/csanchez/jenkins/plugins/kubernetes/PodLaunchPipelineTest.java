@@ -0,0 +1,137 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import hudson.model.TaskListener;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.csanchez.jenkins.plugins.kubernetes.watch.PodLaunchEventHandler;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class PodLaunchPipelineTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private final KubernetesLauncher launcher = mock(KubernetesLauncher.class);
+    private final KubernetesComputer computer = mock(KubernetesComputer.class);
+    private final KubernetesSlave node = mock(KubernetesSlave.class);
+    private final KubernetesClient client = mock(KubernetesClient.class);
+    private final TaskListener listener = TaskListener.NULL;
+    private final PodTemplate template = new PodTemplate();
+    private final Pod pod = new PodBuilder()
+            .withNewMetadata()
+            .withNamespace("foo")
+            .withName("agent-pod")
+            .endMetadata()
+            .build();
+
+    @Before
+    public void setUp() throws Exception {
+        KubernetesCloud cloud = mock(KubernetesCloud.class);
+        when(cloud.connect()).thenReturn(client);
+        when(node.getKubernetesCloud()).thenReturn(cloud);
+        when(node.getTemplate()).thenReturn(template);
+        when(node.getNamespace()).thenReturn("foo");
+        when(node.getNodeName()).thenReturn("agent-pod");
+    }
+
+    @Test
+    public void failingStageRunsLaunchFailure() throws Exception {
+        IllegalStateException failure = new IllegalStateException("cannot build pod");
+        when(launcher.buildPod(node, template, client, listener)).thenThrow(failure);
+        assertFailed(start());
+        verify(launcher).onLaunchFailure(node, failure);
+        verify(launcher, never()).createPod(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    public void abortedStageDoesNotRunLaunchFailure() throws Exception {
+        // the node has already been terminated by buildPod
+        when(launcher.buildPod(node, template, client, listener)).thenReturn(null);
+        assertFailed(start());
+        verify(launcher, never()).onLaunchFailure(any(), any());
+        verify(launcher, never()).createPod(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    public void checksNeverOverlapWhileEventsRetrigger() throws Exception {
+        when(launcher.buildPod(node, template, client, listener)).thenReturn(pod);
+        when(launcher.createPod(client, null, node, pod, listener)).thenReturn(pod);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicInteger checks = new AtomicInteger();
+        KubernetesLauncher.AgentConnectWait wait = mock(KubernetesLauncher.AgentConnectWait.class);
+        when(wait.nextCheckDelay()).thenReturn(5L);
+        when(wait.check()).thenAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+            } finally {
+                running.decrementAndGet();
+            }
+            return checks.incrementAndGet() >= 10;
+        });
+        when(launcher.agentConnectWait(null, node, template, "foo", "agent-pod", listener, client))
+                .thenReturn(wait);
+
+        CompletableFuture<Void> launch = start();
+        PodLaunchEventHandler events = new PodLaunchEventHandler();
+        while (!launch.isDone()) {
+            events.onUpdate(pod, pod);
+            Thread.sleep(1);
+        }
+        launch.get();
+        assertEquals(1, maxRunning.get());
+        assertTrue(checks.get() >= 10);
+        verify(launcher).onAgentConnected(computer, node);
+        verify(launcher, never()).onLaunchFailure(any(), any());
+    }
+
+    @Test
+    public void failingCheckRunsLaunchFailure() throws Exception {
+        when(launcher.buildPod(node, template, client, listener)).thenReturn(pod);
+        when(launcher.createPod(client, null, node, pod, listener)).thenReturn(pod);
+        KubernetesLauncher.AgentConnectWait wait = mock(KubernetesLauncher.AgentConnectWait.class);
+        IllegalStateException failure = new IllegalStateException("Pod 'agent-pod' is terminated");
+        when(wait.check()).thenThrow(failure);
+        when(launcher.agentConnectWait(null, node, template, "foo", "agent-pod", listener, client))
+                .thenReturn(wait);
+        assertSame(failure, assertFailed(start()));
+        verify(launcher).onLaunchFailure(eq(node), eq(failure));
+        verify(launcher, never()).onAgentConnected(any(), any());
+    }
+
+    private CompletableFuture<Void> start() {
+        return new PodLaunchPipeline(launcher, computer, node, listener).start();
+    }
+
+    /**
+     * Waits for the launch to complete, including the completion callback.
+     * @return the cause of the failure
+     */
+    private static Throwable assertFailed(CompletableFuture<Void> launch) throws Exception {
+        try {
+            launch.get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+        throw new AssertionError("launch should have failed");
+    }
+}
@@ -1,8 +1,12 @@
 package org.csanchez.jenkins.plugins.kubernetes;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
+import hudson.model.Label;
 import java.io.IOException;
+import java.util.List;
 import org.csanchez.jenkins.plugins.kubernetes.pipeline.PodTemplateMap;
 import org.junit.Before;
 import org.junit.Rule;
@@ -41,6 +45,25 @@ public class PodTemplateMapTest {
         assertEquals(n, this.instance.getTemplates(cloud).size());
     }
 
+    @Test
+    public void cloudLookupsReflectTemplateChanges() {
+        PodTemplate template = buildPodTemplate("dynamic");
+        Label label = Label.get("dynamic");
+        Label expression = j.jenkins.getLabel("dynamic || other");
+        assertNull(cloud.getTemplate(label));
+        instance.addTemplate(cloud, template);
+        assertSame(template, cloud.getTemplate(label));
+        assertSame(template, cloud.getTemplateById(template.getId()));
+        assertEquals(List.of(template), cloud.getTemplatesFor(expression));
+        PodTemplate other = buildPodTemplate("other");
+        cloud.addTemplate(other);
+        assertEquals(List.of(other, template), cloud.getTemplatesFor(expression));
+        instance.removeTemplate(cloud, template);
+        assertNull(cloud.getTemplate(label));
+        assertNull(cloud.getTemplateById(template.getId()));
+        assertEquals(List.of(other), cloud.getTemplatesFor(expression));
+    }
+
     private Thread newThread(int i) {
         String name = "test-" + i;
         return new Thread(
@@ -0,0 +1,64 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import java.util.ArrayList;
+import java.util.List;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+import org.csanchez.jenkins.plugins.kubernetes.model.KeyValueEnvVar;
+import org.csanchez.jenkins.plugins.kubernetes.model.TemplateEnvVar;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares unwrapping an inheritance chain of pod templates from scratch with the memoized unwrap of
+ * {@link KubernetesCloud#getUnwrappedTemplate(PodTemplate)}, for hierarchies of increasing depth.
+ */
+@JmhBenchmark
+public class PodTemplateUnwrapBenchmark {
+
+    public static class HierarchyState extends JmhBenchmarkState {
+        @Param({"1", "2", "5", "10"})
+        int depth;
+
+        KubernetesCloud cloud;
+        List<PodTemplate> templates;
+        PodTemplate leaf;
+
+        @Override
+        public void setup() throws Exception {
+            cloud = new KubernetesCloud("kubernetes");
+            templates = new ArrayList<>();
+            for (int i = 0; i <= depth; i++) {
+                PodTemplate template = new PodTemplate();
+                template.setName("level-" + i);
+                if (i > 0) {
+                    template.setInheritFrom("level-" + (i - 1));
+                }
+                ContainerTemplate container = new ContainerTemplate("container-" + i, "image:" + i);
+                List<TemplateEnvVar> envVars = new ArrayList<>();
+                for (int j = 0; j < 5; j++) {
+                    envVars.add(new KeyValueEnvVar("VAR_" + i + "_" + j, "value"));
+                }
+                container.setEnvVars(envVars);
+                template.setContainers(List.of(container));
+                template.setEnvVars(envVars);
+                template.setYaml("metadata:\n  labels:\n    level-" + i + ": \"true\"\n");
+                templates.add(template);
+            }
+            cloud.setTemplates(templates);
+            leaf = templates.get(depth);
+            getJenkins().clouds.add(cloud);
+        }
+    }
+
+    @Benchmark
+    public void cold(HierarchyState state, Blackhole blackhole) {
+        blackhole.consume(PodTemplateUtils.unwrap(state.leaf, state.templates));
+    }
+
+    @Benchmark
+    public void warm(HierarchyState state, Blackhole blackhole) {
+        blackhole.consume(state.cloud.getUnwrappedTemplate(state.leaf));
+    }
+}
@@ -72,7 +72,9 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import java.util.stream.Collectors;
+import jenkins.metrics.api.Metrics;
 import org.apache.commons.io.IOUtils;
 import org.csanchez.jenkins.plugins.kubernetes.model.KeyValueEnvVar;
 import org.csanchez.jenkins.plugins.kubernetes.model.SecretEnvVar;
@@ -1185,4 +1187,27 @@ public class PodTemplateUtilsTest {
                 List.of("curl", "-k", "--silent", "--output=/dev/null", "https://localhost:8080"),
                 PodTemplateUtils.splitCommandLine("curl -k --silent --output=/dev/null \"https://localhost:8080\""));
     }
+
+    @Test
+    public void yamlsPodIsParsedOnceAndCopied() {
+        // unique content, so that other tests cannot have cached it already
+        String id = UUID.randomUUID().toString();
+        PodTemplate template = new PodTemplate();
+        template.setYamls(List.of("metadata:\n  labels:\n    cached: \"" + id + "\"\n"));
+        long misses = Metrics.metricRegistry()
+                .counter(MetricNames.YAML_CACHE_MISSES)
+                .getCount();
+        long hits = Metrics.metricRegistry().counter(MetricNames.YAML_CACHE_HITS).getCount();
+
+        Pod first = template.getYamlsPod();
+        first.getMetadata().getLabels().put("modified", "true");
+        Pod second = template.getYamlsPod();
+
+        assertEquals(Map.of("cached", id), second.getMetadata().getLabels());
+        assertEquals(
+                misses + 1,
+                Metrics.metricRegistry().counter(MetricNames.YAML_CACHE_MISSES).getCount());
+        assertEquals(
+                hits + 1, Metrics.metricRegistry().counter(MetricNames.YAML_CACHE_HITS).getCount());
+    }
 }
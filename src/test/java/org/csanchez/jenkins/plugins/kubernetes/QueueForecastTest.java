@@ -0,0 +1,58 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class QueueForecastTest {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void forecastFollowsDailyPattern() {
+        QueueForecast.Series series = new QueueForecast.Series();
+        long burst = 1000 * DAY + TimeUnit.HOURS.toMillis(2);
+        for (int i = 0; i < 10; i++) {
+            series.recordArrival(burst);
+        }
+        series.recordDuration(TimeUnit.MINUTES.toMillis(5));
+        long launch = TimeUnit.MINUTES.toMillis(1);
+        // no history for the next day yet
+        assertEquals(0, series.agentsNeeded(burst + QueueForecast.BUCKET_MILLIS, launch));
+        // the bucket before the burst on the next day: 10 arrivals expected over two buckets, each agent busy 6 minutes
+        assertEquals(6, series.agentsNeeded(burst + DAY - QueueForecast.BUCKET_MILLIS, launch));
+        // after the burst, nothing is expected
+        assertEquals(0, series.agentsNeeded(burst + DAY + 2 * QueueForecast.BUCKET_MILLIS, launch));
+    }
+
+    @Test
+    public void historyExpires() {
+        QueueForecast.Series series = new QueueForecast.Series();
+        long burst = 1000 * DAY;
+        series.recordArrival(burst);
+        long launch = TimeUnit.MINUTES.toMillis(1);
+        assertTrue(series.agentsNeeded(burst + DAY, launch) > 0);
+        assertEquals(0, series.agentsNeeded(burst + (QueueForecast.DAYS + 1) * DAY, launch));
+    }
+
+    @Test
+    public void wasteScalesDown() {
+        QueueForecast.Series series = new QueueForecast.Series();
+        for (int i = 0; i < 5; i++) {
+            series.recordOutcome(false);
+        }
+        double reduced = series.getGain();
+        assertTrue(reduced < 0.5);
+        for (int i = 0; i < 50; i++) {
+            series.recordOutcome(true);
+        }
+        assertTrue(series.getGain() > reduced);
+    }
+}
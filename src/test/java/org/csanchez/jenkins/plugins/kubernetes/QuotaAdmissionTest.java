@@ -0,0 +1,109 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import static org.junit.Assert.assertEquals;
+
+import io.fabric8.kubernetes.api.model.LimitRange;
+import io.fabric8.kubernetes.api.model.LimitRangeBuilder;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.fabric8.kubernetes.api.model.Quantity;
+import io.fabric8.kubernetes.api.model.ResourceQuota;
+import io.fabric8.kubernetes.api.model.ResourceQuotaBuilder;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class QuotaAdmissionTest {
+
+    private static final Pod POD = new PodBuilder()
+            .withNewSpec()
+            .addNewContainer()
+            .withName("jnlp")
+            .withNewResources()
+            .addToRequests("cpu", new Quantity("100m"))
+            .addToLimits("memory", new Quantity("256Mi"))
+            .endResources()
+            .endContainer()
+            .addNewContainer()
+            .withName("maven")
+            .endContainer()
+            .addNewInitContainer()
+            .withName("setup")
+            .withNewResources()
+            .addToRequests("cpu", new Quantity("1"))
+            .endResources()
+            .endInitContainer()
+            .endSpec()
+            .build();
+
+    private static final LimitRange LIMIT_RANGE = new LimitRangeBuilder()
+            .withNewSpec()
+            .addNewLimit()
+            .withType("Container")
+            .addToDefaultRequest("cpu", new Quantity("200m"))
+            .addToDefault("memory", new Quantity("512Mi"))
+            .endLimit()
+            .endSpec()
+            .build();
+
+    @Test
+    public void demandAppliesLimitRangeDefaults() {
+        Map<String, BigDecimal> demand = QuotaAdmission.demand(POD, List.of(LIMIT_RANGE));
+        assertEquals(0, BigDecimal.ONE.compareTo(demand.get("pods")));
+        // the init container needs more than the containers together
+        assertEquals(0, BigDecimal.ONE.compareTo(demand.get("requests.cpu")));
+        // 256Mi for jnlp, whose request defaults to its limit, and the default 512Mi for maven
+        BigDecimal memory = BigDecimal.valueOf(768L * 1024 * 1024);
+        assertEquals(0, memory.compareTo(demand.get("requests.memory")));
+        assertEquals(0, memory.compareTo(demand.get("limits.memory")));
+    }
+
+    @Test
+    public void demandWithoutLimitRange() {
+        Map<String, BigDecimal> demand = QuotaAdmission.demand(POD, List.of());
+        assertEquals(0, BigDecimal.valueOf(256L * 1024 * 1024).compareTo(demand.get("requests.memory")));
+        assertEquals(null, demand.get("limits.cpu"));
+    }
+
+    @Test
+    public void fitsRemainingQuota() {
+        ResourceQuota quota = new ResourceQuotaBuilder()
+                .withNewMetadata()
+                .withName("compute")
+                .endMetadata()
+                .withNewSpec()
+                .endSpec()
+                .withNewStatus()
+                .addToHard("requests.cpu", new Quantity("4"))
+                .addToHard("pods", new Quantity("10"))
+                .addToUsed("requests.cpu", new Quantity("1500m"))
+                .addToUsed("pods", new Quantity("3"))
+                .endStatus()
+                .build();
+        Map<String, BigDecimal> demand = QuotaAdmission.demand(POD, List.of(LIMIT_RANGE));
+        StringBuilder limiting = new StringBuilder();
+        assertEquals(2, QuotaAdmission.fit(List.of(quota), demand, Map.of(), limiting));
+        assertEquals("compute requests.cpu", limiting.toString());
+        assertEquals(1, QuotaAdmission.fit(List.of(quota), demand, Map.of("requests.cpu", BigDecimal.ONE), limiting));
+    }
+
+    @Test
+    public void ignoresScopedQuotas() {
+        ResourceQuota quota = new ResourceQuotaBuilder()
+                .withNewMetadata()
+                .withName("best-effort")
+                .endMetadata()
+                .withNewSpec()
+                .withScopes("BestEffort")
+                .endSpec()
+                .withNewStatus()
+                .addToHard("pods", new Quantity("0"))
+                .endStatus()
+                .build();
+        StringBuilder limiting = new StringBuilder();
+        assertEquals(
+                Integer.MAX_VALUE,
+                QuotaAdmission.fit(List.of(quota), QuotaAdmission.demand(POD, List.of()), Map.of(), limiting));
+    }
+}
@@ -0,0 +1,167 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.codahale.metrics.Counter;
+import hudson.model.labels.LabelAtom;
+import hudson.slaves.ComputerLauncher;
+import hudson.slaves.NodeProvisioner;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import jenkins.metrics.api.Metrics;
+import org.csanchez.jenkins.plugins.kubernetes.pipeline.PodTemplateStepExecution;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class WarmPoolTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void definitionKeyIgnoresBuild() {
+        KubernetesCloud cloud = new KubernetesCloud("kubernetes");
+        PodTemplate first = pipelineTemplate("build-1", "job_1-abcde");
+        PodTemplate second = pipelineTemplate("build-2", "job_2-fghjk");
+        assertEquals(WarmPool.definitionKey(cloud, first), WarmPool.definitionKey(cloud, second));
+
+        second.setContainers(List.of(new ContainerTemplate("maven", "maven:3")));
+        assertNotEquals(WarmPool.definitionKey(cloud, first), WarmPool.definitionKey(cloud, second));
+        assertNotEquals(
+                WarmPool.definitionKey(cloud, first),
+                WarmPool.definitionKey(new KubernetesCloud("other"), pipelineTemplate("build-3", "job_3-lmnpq")));
+    }
+
+    @Test
+    public void copyForWarmPool() {
+        PodTemplate template = pipelineTemplate("build-1", "job_1-abcde");
+        PodTemplate copy = template.copyForWarmPool("id", "warm-0123456789ab");
+        assertEquals("id", copy.getId());
+        assertEquals("warm-0123456789ab", copy.getName());
+        assertEquals("warm-0123456789ab", copy.getLabel());
+        assertEquals(2, copy.getMinIdle());
+        assertEquals(1, copy.getAnnotations().size());
+        assertNull(copy.getListenerOrNull());
+        assertEquals(3, template.getAnnotations().size());
+    }
+
+    @Test
+    public void replenishLaunchesUpToMinIdleWithinInstanceCap() {
+        KubernetesCloud cloud = new KubernetesCloud("kubernetes");
+        PodTemplate template = new PodTemplate();
+        template.setName("warm");
+        template.setLabel("warm");
+        template.setMinIdle(3);
+        template.setInstanceCap(2);
+        cloud.addTemplate(template);
+        j.jenkins.clouds.add(cloud);
+
+        Counter launched = Metrics.metricRegistry().counter(MetricNames.WARM_POOL_LAUNCHED);
+        long before = launched.getCount();
+        WarmPool.get().replenish();
+        assertEquals(2, launched.getCount() - before);
+    }
+
+    @Test
+    public void adoptRelabelsIdleWarmAgent() throws Exception {
+        KubernetesCloud cloud = new KubernetesCloud("kubernetes");
+        j.jenkins.clouds.add(cloud);
+        WarmPool pool = WarmPool.get();
+        pool.register(cloud, pipelineTemplate("build-1", "job_1-abcde"));
+        PodTemplate poolTemplate = cloud.getAllTemplates().stream()
+                .filter(t -> t.getName().startsWith("warm-"))
+                .findFirst()
+                .orElseThrow();
+        KubernetesSlave agent = warmAgent("warm-agent", poolTemplate);
+
+        List<NodeProvisioner.PlannedNode> planned = pool.adopt(cloud, pipelineTemplate("build-2", "job_2-fghjk"), 1);
+        assertEquals(1, planned.size());
+        assertSame(agent, planned.get(0).future.get(10, TimeUnit.SECONDS));
+        verify(agent).setLabelString("job_2-fghjk");
+        assertTrue(pool.isWanted("warm-agent"));
+        // already handed over
+        assertEquals(List.of(), pool.adopt(cloud, pipelineTemplate("build-3", "job_3-lmnpq"), 1));
+    }
+
+    @Test
+    public void unwantedWarmAgentsAreReleased() throws Exception {
+        KubernetesCloud cloud = new KubernetesCloud("kubernetes");
+        PodTemplate template = new PodTemplate();
+        template.setName("warm");
+        template.setLabel("warm");
+        template.setMinIdle(1);
+        cloud.addTemplate(template);
+        j.jenkins.clouds.add(cloud);
+        KubernetesSlave kept = warmAgent("warm-a", template);
+        KubernetesSlave released = warmAgent("warm-b", template);
+
+        WarmPool pool = WarmPool.get();
+        pool.replenish();
+        assertTrue(pool.isWanted("warm-a"));
+        assertFalse(pool.isWanted("warm-b"));
+
+        KubernetesComputer keptComputer = (KubernetesComputer) kept.toComputer();
+        ((WarmPool.RetentionStrategyImpl) kept.getRetentionStrategy()).check(keptComputer);
+        verify(keptComputer, never()).setAcceptingTasks(false);
+        KubernetesComputer releasedComputer = (KubernetesComputer) released.toComputer();
+        ((WarmPool.RetentionStrategyImpl) released.getRetentionStrategy()).check(releasedComputer);
+        verify(releasedComputer).setAcceptingTasks(false);
+        verify(released, timeout(10_000)).terminate();
+    }
+
+    @Test
+    public void negativeMinIdle() {
+        PodTemplate template = new PodTemplate();
+        template.setMinIdle(-1);
+        assertEquals(0, template.getMinIdle());
+    }
+
+    /**
+     * Adds an idle, online warm agent of the given template.
+     */
+    private KubernetesSlave warmAgent(String name, PodTemplate template) throws Exception {
+        KubernetesSlave agent = mock(KubernetesSlave.class);
+        when(agent.getNodeName()).thenReturn(name);
+        when(agent.getDisplayName()).thenReturn(name);
+        when(agent.getNumExecutors()).thenReturn(1);
+        when(agent.getTemplateId()).thenReturn(template.getId());
+        when(agent.getLauncher()).thenReturn(mock(ComputerLauncher.class));
+        doReturn(Set.of(LabelAtom.get(template.getLabel()))).when(agent).getAssignedLabels();
+        doReturn(new WarmPool.RetentionStrategyImpl(0)).when(agent).getRetentionStrategy();
+        KubernetesComputer computer = mock(KubernetesComputer.class);
+        when(computer.getName()).thenReturn(name);
+        when(computer.getNode()).thenReturn(agent);
+        when(computer.isOnline()).thenReturn(true);
+        when(computer.isAcceptingTasks()).thenReturn(true);
+        when(computer.isIdle()).thenReturn(true);
+        when(agent.toComputer()).thenReturn(computer);
+        j.jenkins.addNode(agent);
+        return agent;
+    }
+
+    private static PodTemplate pipelineTemplate(String name, String label) {
+        PodTemplate template = new PodTemplate();
+        template.setName(name);
+        template.setLabel(label);
+        template.setMinIdle(2);
+        template.setContainers(List.of(new ContainerTemplate("golang", "golang:1.22")));
+        template.getAnnotations().add(new PodAnnotation("team", "builds"));
+        template.getAnnotations()
+                .add(new PodAnnotation(PodTemplateStepExecution.POD_ANNOTATION_BUILD_URL, "http://jenkins/" + name));
+        template.getAnnotations().add(new PodAnnotation(PodTemplateStepExecution.POD_ANNOTATION_RUN_URL, name));
+        return template;
+    }
+}
@@ -0,0 +1,62 @@
+package org.csanchez.jenkins.plugins.kubernetes.pipeline;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import hudson.EnvVars;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import org.junit.Test;
+
+public class ContainerExecDecoratorEnvironmentTest {
+
+    @Test
+    public void baseEnvironmentExcludesSensitiveVariables() {
+        ContainerExecDecorator decorator = decorator();
+        EnvVars base = decorator.getBaseEnvironment();
+        assertEquals("-Xmx1g", base.get("MAVEN_OPTS"));
+        assertEquals("1234", base.get("BUILD_NUMBER"));
+        assertFalse(base.containsKey("PASSWORD"));
+    }
+
+    @Test
+    public void sourcesFileAndSendsOnlyDelta() {
+        ContainerExecDecorator decorator = decorator();
+        EnvVars vars = new EnvVars(decorator.getBaseEnvironment());
+        vars.put("PASSWORD", "secret");
+        vars.put("WORKSPACE", "/home/jenkins/agent/workspace/job");
+        vars.remove("BUILD_NUMBER");
+
+        String full = setup(decorator, vars, null);
+        String withFile = setup(decorator, vars, "/home/jenkins/agent/workspace/job@tmp/container-env.sh");
+        assertEquals(
+                ". \"/home/jenkins/agent/workspace/job@tmp/container-env.sh\"\n"
+                        + "export PASSWORD='secret'\n"
+                        + "export WORKSPACE='/home/jenkins/agent/workspace/job'\n"
+                        + "unset BUILD_NUMBER\n",
+                withFile);
+        assertTrue(full.contains("export MAVEN_OPTS='-Xmx1g'"));
+        assertFalse(withFile.contains("MAVEN_OPTS"));
+    }
+
+    private static ContainerExecDecorator decorator() {
+        ContainerExecDecorator decorator = new ContainerExecDecorator();
+        decorator.setGlobalVars(new EnvVars("MAVEN_OPTS", "-Xmx1g"));
+        decorator.setRunContextEnvVars(new EnvVars(
+                "BUILD_NUMBER", "1234",
+                "JOB_URL", "https://jenkins.example.com/job/job/",
+                "PASSWORD", "secret"));
+        decorator.setSensitiveVariables(Set.of("PASSWORD"));
+        return decorator;
+    }
+
+    private static String setup(ContainerExecDecorator decorator, EnvVars vars, String file) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes, true, StandardCharsets.UTF_8);
+        decorator.setupEnvironment(vars, file, out, false);
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,108 @@
+package org.csanchez.jenkins.plugins.kubernetes.pipeline;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import hudson.Proc;
+import io.fabric8.kubernetes.client.dsl.ContainerResource;
+import io.fabric8.kubernetes.client.dsl.ExecWatch;
+import io.fabric8.kubernetes.client.dsl.PodResource;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ContainerExecSessionTest {
+
+    private static final String KILL = "pkill -TERM -P \"$0\" 2>/dev/null; kill -TERM \"$0\"";
+
+    private final ByteArrayOutputStream stdin = new ByteArrayOutputStream();
+    private final ContainerResource container = mock(ContainerResource.class);
+    private ContainerExecSession session;
+
+    @Before
+    public void setUp() {
+        ExecWatch watch = mock(ExecWatch.class);
+        when(watch.getInput()).thenReturn(stdin);
+        ExecWatch killWatch = mock(ExecWatch.class);
+        when(killWatch.exitCode()).thenReturn(CompletableFuture.completedFuture(0));
+        when(container.exec(any(String[].class))).thenReturn(killWatch);
+        PodResource pod = mock(PodResource.class);
+        when(pod.inContainer("busybox")).thenReturn(container);
+        session = new ContainerExecSession(watch, pod, "busybox");
+    }
+
+    @Test
+    public void demultiplexesCommandsByMarker() throws Exception {
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        Proc p1 = session.launch(in -> in.println("echo one"), first);
+        Proc p2 = session.launch(in -> in.println("echo two; false"), second);
+        String script = stdin.toString(StandardCharsets.UTF_8);
+        assertThat(script, containsString("echo one"));
+        String prefix = prefix(script);
+
+        shell("noise\n\n" + prefix + "1 START 42\none\n_partial line\n\n" + prefix + "1 EXIT 0\n");
+        assertEquals(0, p1.join());
+        assertEquals("one\n_partial line\n", first.toString(StandardCharsets.UTF_8));
+        assertTrue(p2.isAlive());
+
+        shell("\n" + prefix + "2 START 43\ntwo");
+        shell("\n" + prefix + "2 EXIT 1\n");
+        assertEquals(1, p2.join());
+        assertEquals("two", second.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void killingOnlyKillsTheCommand() throws Exception {
+        Proc p1 = session.launch(in -> in.println("sleep 100"), null);
+        Proc p2 = session.launch(in -> in.println("sleep 100"), null);
+        String prefix = prefix(stdin.toString(StandardCharsets.UTF_8));
+        shell("\n" + prefix + "1 START 42\n");
+        p1.kill();
+        verify(container, timeout(10_000)).exec("sh", "-c", KILL, "42");
+        shell("\n" + prefix + "1 EXIT 143\n");
+        assertEquals(143, p1.join());
+        assertTrue(session.isAlive());
+        assertTrue(p2.isAlive());
+
+        // killed while queued: killed as soon as it starts
+        p2.kill();
+        verify(container, never()).exec("sh", "-c", KILL, "43");
+        shell("\n" + prefix + "2 START 43\n");
+        verify(container, timeout(10_000)).exec("sh", "-c", KILL, "43");
+        shell("\n" + prefix + "2 EXIT 143\n");
+        assertEquals(143, p2.join());
+        assertFalse(session.isBusy());
+    }
+
+    @Test
+    public void closingFailsPendingCommands() throws Exception {
+        Proc p = session.launch(in -> in.println("sleep 100"), null);
+        session.close();
+        assertEquals(-1, p.join());
+        assertFalse(session.isAlive());
+    }
+
+    private static String prefix(String script) {
+        Matcher m = Pattern.compile("'(__KUBERNETES_EXEC_\\w+_)1 START'").matcher(script);
+        assertTrue(m.find());
+        return m.group(1);
+    }
+
+    private void shell(String output) throws Exception {
+        session.decoder.write(output.getBytes(StandardCharsets.UTF_8));
+    }
+}
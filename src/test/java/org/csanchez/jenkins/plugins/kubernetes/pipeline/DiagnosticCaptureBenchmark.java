@@ -0,0 +1,70 @@
+package org.csanchez.jenkins.plugins.kubernetes.pipeline;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares capturing the beginning of a process output in an unbounded buffer, polled for the prompt, with the
+ * fixed size buffer and prompt detector used by {@link ContainerExecDecorator}.
+ * Run with the GC profiler to compare allocation rates.
+ */
+@JmhBenchmark
+public class DiagnosticCaptureBenchmark {
+
+    private static final int CHUNK = 512;
+
+    @State(Scope.Thread)
+    public static class OutputState {
+        /** number of chunks written before the prompt */
+        @Param({"1", "16", "256"})
+        int chunks;
+
+        byte[] chunk;
+        byte[] prompt;
+
+        @Setup
+        public void setup() {
+            chunk = new byte[CHUNK];
+            Arrays.fill(chunk, (byte) 'x');
+            chunk[CHUNK - 1] = '\n';
+            prompt = "C:\\>".getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    @Benchmark
+    public boolean polling(OutputState state) throws Exception {
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        ByteArrayOutputStream dryRun = new ByteArrayOutputStream();
+        boolean found = false;
+        for (int i = 0; i <= state.chunks && !found; i++) {
+            byte[] bytes = i < state.chunks ? state.chunk : state.prompt;
+            stdout.write(bytes);
+            dryRun.write(bytes);
+            // one poll per chunk received
+            found = dryRun.toString(StandardCharsets.UTF_8).contains(">");
+        }
+        return found;
+    }
+
+    @Benchmark
+    public boolean streaming(OutputState state) throws Exception {
+        ContainerExecDecorator.RingBufferOutputStream stdout =
+                new ContainerExecDecorator.RingBufferOutputStream(8 * 1024);
+        ContainerExecDecorator.PromptDetector detector = new ContainerExecDecorator.PromptDetector('>');
+        for (int i = 0; i < state.chunks; i++) {
+            stdout.write(state.chunk);
+            detector.write(state.chunk);
+        }
+        stdout.write(state.prompt);
+        detector.write(state.prompt);
+        detector.await();
+        return true;
+    }
+}
@@ -0,0 +1,61 @@
+package org.csanchez.jenkins.plugins.kubernetes.pipeline;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import org.apache.commons.io.output.TeeOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the stream chain the launched commands go through in {@link ContainerExecDecorator},
+ * for an increasing proportion of masked arguments.
+ */
+@JmhBenchmark
+public class MaskOutputStreamBenchmark {
+
+    private static final int ARGUMENTS = 1000;
+    private static final int ARGUMENT_LENGTH = 64;
+
+    @State(Scope.Thread)
+    public static class CommandState {
+        @Param({"0", "0.1", "0.5", "1"})
+        double density;
+
+        boolean[] masks;
+        byte[] command;
+
+        @Setup
+        public void setup() {
+            Random random = new Random(42);
+            masks = new boolean[ARGUMENTS];
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < ARGUMENTS; i++) {
+                masks[i] = random.nextDouble() < density;
+                sb.append('"');
+                for (int j = 0; j < ARGUMENT_LENGTH; j++) {
+                    sb.append((char) ('a' + random.nextInt(26)));
+                }
+                sb.append("\" ");
+            }
+            command = sb.toString().getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    @Benchmark
+    public int chain(CommandState state) throws Exception {
+        // same layout as ContainerExecDecorator#doExec
+        ByteArrayOutputStream logging = new ByteArrayOutputStream();
+        OutputStream masked = new ContainerExecDecorator.MaskOutputStream(
+                new TeeOutputStream(OutputStream.nullOutputStream(), logging), state.masks);
+        try (OutputStream tee = new TeeOutputStream(OutputStream.nullOutputStream(), masked)) {
+            tee.write(state.command);
+        }
+        return logging.size();
+    }
+}
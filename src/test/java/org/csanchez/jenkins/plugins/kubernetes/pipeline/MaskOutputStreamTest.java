@@ -0,0 +1,52 @@
+package org.csanchez.jenkins.plugins.kubernetes.pipeline;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+public class MaskOutputStreamTest {
+
+    private static final String COMMAND = "\"echo\" \"secret\"  \"visible\" \"other secret\" \"tail\"";
+    private static final boolean[] MASKS = {false, true, false, false, true};
+
+    @Test
+    public void masksFragments() throws Exception {
+        assertEquals("\"echo\" ********  \"visible\" ******** secret\" \"tail\"", mask(COMMAND.length()));
+    }
+
+    @Test
+    public void bulkWritesMatchSingleByteWrites() throws Exception {
+        String expected = mask(1);
+        for (int chunk = 2; chunk <= COMMAND.length(); chunk++) {
+            assertEquals("chunk of " + chunk, expected, mask(chunk));
+        }
+    }
+
+    @Test
+    public void noMasks() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream masked = new ContainerExecDecorator.MaskOutputStream(out, null)) {
+            masked.write(COMMAND.getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(COMMAND, out.toString(StandardCharsets.UTF_8));
+    }
+
+    private static String mask(int chunk) throws Exception {
+        byte[] bytes = COMMAND.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream masked = new ContainerExecDecorator.MaskOutputStream(out, MASKS)) {
+            for (int off = 0; off < bytes.length; off += chunk) {
+                int len = Math.min(chunk, bytes.length - off);
+                if (len == 1) {
+                    masked.write(bytes[off]);
+                } else {
+                    masked.write(bytes, off, len);
+                }
+            }
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,37 @@
+package org.csanchez.jenkins.plugins.kubernetes.pipeline;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+public class RingBufferOutputStreamTest {
+
+    @Test
+    public void keepsEverythingUntilFull() throws Exception {
+        ContainerExecDecorator.RingBufferOutputStream buffer = new ContainerExecDecorator.RingBufferOutputStream(8);
+        buffer.write("abc".getBytes(StandardCharsets.UTF_8));
+        buffer.write('d');
+        assertEquals("abcd", buffer.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void keepsLastBytes() throws Exception {
+        ContainerExecDecorator.RingBufferOutputStream buffer = new ContainerExecDecorator.RingBufferOutputStream(8);
+        buffer.write("abcdef".getBytes(StandardCharsets.UTF_8));
+        buffer.write("ghijk".getBytes(StandardCharsets.UTF_8));
+        assertEquals("defghijk", buffer.toString(StandardCharsets.UTF_8));
+        buffer.write("0123456789".getBytes(StandardCharsets.UTF_8), 1, 9);
+        assertEquals("23456789", buffer.toString(StandardCharsets.UTF_8));
+        buffer.write('x');
+        assertEquals("3456789x", buffer.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void keepsNothingWithoutCapacity() throws Exception {
+        ContainerExecDecorator.RingBufferOutputStream buffer = new ContainerExecDecorator.RingBufferOutputStream(0);
+        buffer.write('a');
+        buffer.write("bcd".getBytes(StandardCharsets.UTF_8));
+        assertEquals("", buffer.toString(StandardCharsets.UTF_8));
+    }
+}
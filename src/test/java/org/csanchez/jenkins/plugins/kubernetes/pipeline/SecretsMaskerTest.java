@@ -0,0 +1,52 @@
+package org.csanchez.jenkins.plugins.kubernetes.pipeline;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.fabric8.kubernetes.api.model.Secret;
+import io.fabric8.kubernetes.api.model.SecretBuilder;
+import org.junit.Test;
+
+public class SecretsMaskerTest {
+
+    private static final String POD_CREATION = "2024-05-01T12:00:00Z";
+
+    @Test
+    public void secretUnchangedSincePodCreation() {
+        Secret secret = new SecretBuilder()
+                .withNewMetadata()
+                .withCreationTimestamp("2024-04-01T12:00:00Z")
+                .addNewManagedField()
+                .withTime("2024-04-02T12:00:00Z")
+                .endManagedField()
+                .endMetadata()
+                .build();
+        assertFalse(SecretsMasker.Factory.modifiedSince(secret, POD_CREATION));
+    }
+
+    @Test
+    public void secretUpdatedSincePodCreation() {
+        Secret secret = new SecretBuilder()
+                .withNewMetadata()
+                .withCreationTimestamp("2024-04-01T12:00:00Z")
+                .addNewManagedField()
+                .withTime("2024-05-02T12:00:00Z")
+                .endManagedField()
+                .endMetadata()
+                .build();
+        assertTrue(SecretsMasker.Factory.modifiedSince(secret, POD_CREATION));
+    }
+
+    @Test
+    public void unknownTimesCountAsModified() {
+        Secret secret = new SecretBuilder()
+                .withNewMetadata()
+                .withCreationTimestamp("2024-04-01T12:00:00Z")
+                .endMetadata()
+                .build();
+        assertTrue(SecretsMasker.Factory.modifiedSince(secret, null));
+        assertTrue(SecretsMasker.Factory.modifiedSince(new Secret(), POD_CREATION));
+        secret.getMetadata().setCreationTimestamp("yesterday");
+        assertTrue(SecretsMasker.Factory.modifiedSince(secret, POD_CREATION));
+    }
+}
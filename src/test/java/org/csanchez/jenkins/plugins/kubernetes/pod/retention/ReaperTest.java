@@ -132,6 +132,44 @@ public class ReaperTest {
         assertEquals("node not removed from jenkins", j.jenkins.getNodes().size(), 1);
     }
 
+    @Test
+    public void testMaybeActivateListsCloudNamespaceOnce() throws IOException, InterruptedException {
+        KubernetesCloud cloud = addCloud("k8s", "foo");
+        String watchPodsPath = "/api/v1/namespaces/foo/pods?allowWatchBookmarks=true&watch=true";
+        server.expect()
+                .withPath(watchPodsPath)
+                .andUpgradeToWebSocket()
+                .open()
+                .done()
+                .always();
+
+        KubernetesSlave podRunning = addNode(cloud, "k8s-node-running", "k8s-node-running");
+        KubernetesSlave podNotRunning = addNode(cloud, "k8s-node-gone", "k8s-node-gone");
+        String listPodsPath = "/api/v1/namespaces/foo/pods?limit=500";
+        server.expect()
+                .withPath(listPodsPath)
+                .andReturn(
+                        HttpURLConnection.HTTP_OK,
+                        new PodListBuilder()
+                                .withNewMetadata()
+                                .endMetadata()
+                                .addToItems(createPod(podRunning))
+                                .build())
+                .once();
+
+        // activate reaper
+        Reaper r = Reaper.getInstance();
+        r.maybeActivate();
+
+        assertEquals("only the node without pod is removed", List.of(podRunning), j.jenkins.getNodes());
+
+        kubeClientRequests()
+                .assertRequestCount(listPodsPath, 1)
+                // no individual lookups for agents in the cloud namespace
+                .assertRequestCount("/api/v1/namespaces/foo/pods/k8s-node-running", 0)
+                .assertRequestCount("/api/v1/namespaces/foo/pods/k8s-node-gone", 0);
+    }
+
     @Test
     public void testWatchFailOnActivate() throws IOException, InterruptedException {
         KubernetesCloud cloud = addCloud("k8s", "foo");
@@ -371,6 +409,33 @@ public class ReaperTest {
         assertShouldNotBeWatching(r, cloud);
     }
 
+    @Test(timeout = 10_000)
+    public void testTrackResourceVersionFromBookmarks() throws Exception {
+        KubernetesCloud cloud = addCloud("k8s", "foo");
+        String watchPodsPath = "/api/v1/namespaces/foo/pods?allowWatchBookmarks=true&watch=true";
+        Pod bookmark = new PodBuilder()
+                .withNewMetadata()
+                .withResourceVersion("42")
+                .endMetadata()
+                .build();
+        server.expect()
+                .withPath(watchPodsPath)
+                .andUpgradeToWebSocket()
+                .open()
+                .waitFor(EVENT_WAIT_PERIOD_MS)
+                .andEmit(new WatchEvent(bookmark, "BOOKMARK"))
+                .done()
+                .always();
+
+        // activate reaper
+        Reaper r = Reaper.getInstance();
+        r.maybeActivate();
+
+        await().until(() -> "42".equals(r.getResourceVersion(cloud)));
+        // bookmarks are not passed to listeners
+        listener.expectNoEvents();
+    }
+
     @Test(timeout = 10_000)
     public void testKeepWatchingOnKubernetesApiServerError() throws InterruptedException {
         KubernetesCloud cloud = addCloud("k8s", "foo");